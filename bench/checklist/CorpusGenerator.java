@@ -0,0 +1,166 @@
+package checklist;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+
+
+/**
+ * Generates a synthetic checklist corpus for benchmarking - main XML file
+ * CheckList.xml with a DTD which includes (via external entities) a given
+ * number of checklist files, each with a given number of instructions of
+ * a given text length. The format is the one documented in CheckListData.
+ * Preset comments, help URLs and elog systems affected repeat the way
+ * they do in the real checklists.
+ *
+ * Usage: CorpusGenerator <directory> <checklists> <instructions> <textLength>
+ *
+ * @author Zdenek Maxa
+ *
+ */
+public final class CorpusGenerator
+{
+    public static final String MAIN_FILE = "CheckList.xml";
+
+    private static final String[] PREFIXES = { "signin-", "DQcheck-",
+        "injection-", "stablebeam-", "startrun-", "other-" };
+
+    private static final String[] COMMENTS = { "", "OK", "checked",
+        "see elog", "not applicable" };
+
+    private static final String[] SYSTEMS = { "DAQ", "TRT", "Pixel", "SCT",
+        "LAr", "Tile", "Muon", "L1", "HLT" };
+
+    private static final String WORDS = "check that the state of the " +
+        "subsystem is ready and verify all the busy sources are masked " +
+        "before the run starts then inform the shift leader ";
+
+
+
+
+    /**
+     * Writes the corpus into dir, returns full path of the main file.
+     */
+    public static String generate(File dir, int checkLists, int instructions,
+                                  int textLength) throws IOException
+    {
+        if(! dir.isDirectory() && ! dir.mkdirs())
+        {
+            throw new IOException("can't create " + dir);
+        }
+
+        Writer dtd = open(new File(dir, "CheckList.dtd"));
+        dtd.write("<!ELEMENT checklists (checklist*)>\n" +
+                  "<!ELEMENT checklist (instruction*, ElogSystemAffected*)>\n" +
+                  "<!ATTLIST checklist title CDATA #REQUIRED>\n" +
+                  "<!ELEMENT instruction (#PCDATA)>\n" +
+                  "<!ATTLIST instruction PresetComment CDATA #IMPLIED\n" +
+                  "                      helpurl CDATA #IMPLIED\n" +
+                  "                      headerOnly CDATA #IMPLIED>\n" +
+                  "<!ELEMENT ElogSystemAffected (#PCDATA)>\n");
+        dtd.close();
+
+        Writer main = open(new File(dir, MAIN_FILE));
+        main.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        main.write("<!DOCTYPE checklists SYSTEM \"CheckList.dtd\" [\n");
+        for(int i = 0; i < checkLists; i++)
+        {
+            main.write("  <!ENTITY cl" + i + " SYSTEM \"" + getFileName(i) +
+                       "\">\n");
+        }
+        main.write("]>\n<checklists>\n");
+        for(int i = 0; i < checkLists; i++)
+        {
+            main.write("  &cl" + i + ";\n");
+            writeCheckList(new File(dir, getFileName(i)), i, instructions,
+                           textLength);
+        }
+        main.write("</checklists>\n");
+        main.close();
+
+        return new File(dir, MAIN_FILE).getPath();
+
+    } // generate() ---------------------------------------------------------
+
+
+
+    private static void writeCheckList(File file, int n, int instructions,
+                                       int textLength) throws IOException
+    {
+        Writer w = open(file);
+        w.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        w.write("<checklist title=\"" + PREFIXES[n % PREFIXES.length] +
+                "SYSTEM" + n + "\">\n");
+        String url = "https://atlasop.cern.ch/twiki/bin/view/Main/System" +
+                     (n % 10);
+        for(int i = 0; i < instructions; i++)
+        {
+            w.write("  <instruction PresetComment=\"" +
+                    COMMENTS[i % COMMENTS.length] + "\" helpurl=\"" + url +
+                    "\"" + (i % 10 == 0 ? " headerOnly=\"true\"" : "") +
+                    ">\n    ");
+            w.write(getText(n * 31 + i, textLength));
+            w.write("\n  </instruction>\n");
+        }
+        w.write("  <ElogSystemAffected>\n    " + SYSTEMS[n % SYSTEMS.length] +
+                "\n  </ElogSystemAffected>\n");
+        w.write("  <ElogSystemAffected>" + SYSTEMS[(n + 1) % SYSTEMS.length] +
+                "</ElogSystemAffected>\n");
+        w.write("</checklist>\n");
+        w.close();
+
+    } // writeCheckList() ---------------------------------------------------
+
+
+
+    private static String getText(int seed, int length)
+    {
+        StringBuilder sb = new StringBuilder(length);
+        int start = seed % WORDS.length();
+        while(sb.length() < length)
+        {
+            int end = Math.min(WORDS.length(), start + length - sb.length());
+            sb.append(WORDS, start, end);
+            start = 0;
+        }
+        return sb.toString().replace("&", "&amp;").trim();
+
+    } // getText() ----------------------------------------------------------
+
+
+
+    private static String getFileName(int n)
+    {
+        return "checklist" + n + ".xml";
+
+    } // getFileName() ------------------------------------------------------
+
+
+
+    private static Writer open(File f) throws IOException
+    {
+        return new OutputStreamWriter(new FileOutputStream(f), "UTF-8");
+
+    } // open() -------------------------------------------------------------
+
+
+
+    public static void main(String[] args) throws IOException
+    {
+        if(args.length != 4)
+        {
+            System.out.println("Usage: CorpusGenerator <directory> " +
+                               "<checklists> <instructions> <textLength>");
+            System.exit(1);
+        }
+        String main = generate(new File(args[0]), Integer.parseInt(args[1]),
+                               Integer.parseInt(args[2]),
+                               Integer.parseInt(args[3]));
+        System.out.println("Corpus written, main file: " + main);
+
+    } // main() -------------------------------------------------------------
+
+} // class CorpusGenerator ==================================================
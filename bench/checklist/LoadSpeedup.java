@@ -0,0 +1,100 @@
+package checklist;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+
+import mylogger.MyLogger;
+
+
+
+/**
+ * Wall-clock speedup of ParallelLoader over the sequential parse of the
+ * main file by a single XMLParser (the path used without --parallel) on
+ * a synthetic corpus (CorpusGenerator). Both paths are warmed up and then
+ * timed alternately, the ratio of the average times is reported. The
+ * number of loaded checklists is compared as a sanity check.
+ *
+ * Usage: LoadSpeedup [directory checklists instructions textLength
+ *                     iterations]
+ *
+ * @author Zdenek Maxa
+ *
+ */
+public final class LoadSpeedup
+{
+    public static void main(String[] args) throws Exception
+    {
+        // no per-checklist logging while measuring
+        MyLogger.initialize(new String[] { "ERROR" });
+
+        String dir = args.length > 0 ? args[0] :
+            System.getProperty("java.io.tmpdir") + File.separator +
+            "checklist-corpus";
+        int checkLists = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int instructions = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+        int textLength = args.length > 3 ? Integer.parseInt(args[3]) : 200;
+        int iterations = args.length > 4 ? Integer.parseInt(args[4]) : 10;
+
+        String mainFile = CorpusGenerator.generate(new File(dir), checkLists,
+                                                   instructions, textLength);
+
+        // warm up
+        for(int i = 0; i < 3; i++)
+        {
+            sequential(mainFile);
+            parallel(mainFile);
+        }
+
+        long sequentialTime = 0;
+        long parallelTime = 0;
+        int sequentialSize = 0;
+        int parallelSize = 0;
+        for(int i = 0; i < iterations; i++)
+        {
+            long t = System.nanoTime();
+            sequentialSize = sequential(mainFile).size();
+            sequentialTime += System.nanoTime() - t;
+
+            t = System.nanoTime();
+            parallelSize = parallel(mainFile).size();
+            parallelTime += System.nanoTime() - t;
+        }
+
+        System.out.println("corpus: " + checkLists + " checklists, " +
+                           instructions + " instructions each, text length " +
+                           textLength);
+        System.out.println("processors:                     " +
+                           Runtime.getRuntime().availableProcessors());
+        System.out.println("sequential load [ms]:           " +
+                           (sequentialTime / iterations / 1000000));
+        System.out.println("parallel load [ms]:             " +
+                           (parallelTime / iterations / 1000000));
+        System.out.println("speedup:                        " +
+                           String.format("%.2f",
+                               (double) sequentialTime / parallelTime));
+        System.out.println("checklists (sequential/parallel): " +
+                           sequentialSize + "/" + parallelSize);
+
+    } // main() -------------------------------------------------------------
+
+
+
+    private static LinkedHashMap<String, CheckListData> sequential(
+                                 String mainFile) throws CheckListException
+    {
+        XMLParser parser = new XMLParser(mainFile);
+        parser.parse();
+        return parser.getCheckListStore();
+
+    } // sequential() -------------------------------------------------------
+
+
+
+    private static LinkedHashMap<String, CheckListData> parallel(
+                                 String mainFile) throws CheckListException
+    {
+        return new ParallelLoader(mainFile).load();
+
+    } // parallel() ---------------------------------------------------------
+
+} // class LoadSpeedup ======================================================
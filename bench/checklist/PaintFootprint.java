@@ -0,0 +1,263 @@
+package checklist;
+
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+
+import javax.swing.JScrollPane;
+import javax.swing.SwingUtilities;
+import javax.swing.table.TableCellRenderer;
+
+import mylogger.MyLogger;
+
+
+
+/**
+ * Allocation and time report of painting a DataTable (headless, into an
+ * offscreen image). A synthetic checklist is displayed in a scroll pane
+ * which is scrolled by a page for each painted frame. Reports bytes
+ * allocated (as measured by the JVM for the event-dispatching thread) per
+ * cell prepared by the cell renderers only and per whole painted frame.
+ * Time to open the table (model, table, row heights of the first view)
+ * is reported as well.
+ *
+ * Usage: PaintFootprint [instructions frames width height]
+ *
+ * @author Zdenek Maxa
+ *
+ */
+public final class PaintFootprint
+{
+    private static final String WORDS = "check that the state of the " +
+        "subsystem is ready and verify all the busy sources are masked " +
+        "before the run starts then inform the shift leader ";
+
+    private static com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private DataTable table = null;
+    private JScrollPane scrollPane = null;
+    private BufferedImage image = null;
+
+    // bytes allocated by the last prepareCells()
+    private long preparedBytes = 0;
+
+
+
+
+    public static void main(String[] args) throws Exception
+    {
+        System.setProperty("java.awt.headless", "true");
+        MyLogger.initialize(new String[] { "ERROR" });
+
+        final int instructions = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        final int frames = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        final int width = args.length > 2 ? Integer.parseInt(args[2]) : 950;
+        final int height = args.length > 3 ? Integer.parseInt(args[3]) : 700;
+
+        final PaintFootprint p = new PaintFootprint();
+        long t = System.nanoTime();
+        SwingUtilities.invokeAndWait(new Runnable()
+        {
+            public void run()
+            {
+                try
+                {
+                    p.setUp(instructions, width, height);
+                }
+                catch(CheckListException cle)
+                {
+                    throw new RuntimeException(cle);
+                }
+            }
+        });
+        // row heights are updated after the table was set up
+        SwingUtilities.invokeAndWait(new Runnable()
+        {
+            public void run()
+            {
+                layout(p.scrollPane);
+            }
+        });
+        System.out.println("time to open [ms]:              " +
+                           ((System.nanoTime() - t) / 1000000));
+        SwingUtilities.invokeAndWait(new Runnable()
+        {
+            public void run()
+            {
+                p.measure(instructions, frames);
+            }
+        });
+
+    } // main() -------------------------------------------------------------
+
+
+
+    private void setUp(int instructions, int width, int height)
+                       throws CheckListException
+    {
+        String title = "signin-PaintFootprint";
+        CheckListData data = new CheckListData(title);
+        for(int i = 0; i < instructions; i++)
+        {
+            int length = 20 + (i * 37) % 300;
+            StringBuilder text = new StringBuilder(length);
+            while(text.length() < length)
+            {
+                text.append(WORDS);
+            }
+            text.setLength(length);
+            data.addInstruction(i + ". " + text, i % 3 == 0 ? "checked" : "",
+                                "http://atlas.cern.ch/help/" + i,
+                                i % 10 == 0);
+        }
+        data.freeze();
+        LinkedHashMap<String, CheckListData> m =
+            new LinkedHashMap<String, CheckListData>();
+        m.put(title, data);
+
+        table = new DataTable(new CheckListTableModel(new CheckListStore(m),
+                                                      title));
+        scrollPane = new JScrollPane(table);
+        scrollPane.setSize(width, height);
+        layout(scrollPane);
+        image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+
+    } // setUp() ------------------------------------------------------------
+
+
+
+    private void measure(int instructions, int frames)
+    {
+        // warm up
+        paintFrames(frames);
+        prepareCells(frames);
+
+        long t = System.nanoTime();
+        long cells = prepareCells(frames);
+        long cellTime = System.nanoTime() - t;
+        long cellBytes = preparedBytes;
+
+        long a = allocated();
+        t = System.nanoTime();
+        paintFrames(frames);
+        long frameTime = System.nanoTime() - t;
+        long frameBytes = allocated() - a;
+
+        System.out.println("table: " + instructions + " instructions, " +
+                           "viewport " + scrollPane.getWidth() + "x" +
+                           scrollPane.getHeight() + ", " + frames + " frames");
+        System.out.println("cells prepared:                 " + cells);
+        System.out.println("allocated per cell [bytes]:     " +
+                           (cellBytes / cells));
+        System.out.println("time per cell [ns] (+scrolling):" +
+                           (cellTime / cells));
+        System.out.println("allocated per frame [bytes]:    " +
+                           (frameBytes / frames));
+        System.out.println("time per frame [us]:            " +
+                           (frameTime / frames / 1000));
+
+    } // measure() ----------------------------------------------------------
+
+
+
+    /**
+     * Prepares renderers of all visible cells the way JTable does when
+     * painting, for each frame scrolled by a page, returns number of cells.
+     * Only bytes allocated while preparing the cells are counted in
+     * preparedBytes (not while scrolling).
+     */
+    private long prepareCells(int frames)
+    {
+        long cells = 0;
+        preparedBytes = 0;
+        for(int f = 0; f < frames; f++)
+        {
+            scrollTo(f);
+            Point top = scrollPane.getViewport().getViewPosition();
+            int first = table.rowAtPoint(top);
+            top.y += scrollPane.getViewport().getHeight() - 1;
+            int last = table.rowAtPoint(top);
+            if(last < 0)
+            {
+                last = table.getRowCount() - 1;
+            }
+            long a = allocated();
+            for(int row = first; row >= 0 && row <= last; row++)
+            {
+                for(int col = 0; col < table.getColumnCount(); col++)
+                {
+                    TableCellRenderer r = table.getCellRenderer(row, col);
+                    table.prepareRenderer(r, row, col);
+                    cells++;
+                }
+            }
+            preparedBytes += allocated() - a;
+        }
+        return cells;
+
+    } // prepareCells() -----------------------------------------------------
+
+
+
+    private void paintFrames(int frames)
+    {
+        Graphics2D g = image.createGraphics();
+        try
+        {
+            for(int f = 0; f < frames; f++)
+            {
+                scrollTo(f);
+                scrollPane.paint(g);
+            }
+        }
+        finally
+        {
+            g.dispose();
+        }
+
+    } // paintFrames() ------------------------------------------------------
+
+
+
+    private void scrollTo(int frame)
+    {
+        int page = scrollPane.getViewport().getHeight();
+        int pages = Math.max(1, (table.getHeight() - page) / page);
+        scrollPane.getViewport().setViewPosition(
+            new Point(0, (frame % pages) * page));
+        layout(scrollPane);
+
+    } // scrollTo() ---------------------------------------------------------
+
+
+
+    private static long allocated()
+    {
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+
+    } // allocated() --------------------------------------------------------
+
+
+
+    /**
+     * Lays out the components (there is no window in headless mode).
+     */
+    private static void layout(Container c)
+    {
+        c.doLayout();
+        for(Component child : c.getComponents())
+        {
+            if(child instanceof Container)
+            {
+                layout((Container) child);
+            }
+        }
+
+    } // layout() -----------------------------------------------------------
+
+} // class PaintFootprint ===================================================
@@ -0,0 +1,110 @@
+package checklist;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.LinkedHashMap;
+
+import mylogger.MyLogger;
+
+
+
+/**
+ * Allocation and heap footprint report of XMLParser on a synthetic corpus
+ * (CorpusGenerator). Reports bytes allocated by parsing the whole corpus
+ * (per parse and per instruction, as measured by the JVM for the parsing
+ * thread), heap retained by the resulting store and parsing time.
+ *
+ * Usage: ParserFootprint [directory checklists instructions textLength
+ *                         iterations]
+ *
+ * @author Zdenek Maxa
+ *
+ */
+public final class ParserFootprint
+{
+    public static void main(String[] args) throws Exception
+    {
+        // no per-checklist logging while measuring
+        MyLogger.initialize(new String[] { "ERROR" });
+
+        String dir = args.length > 0 ? args[0] :
+            System.getProperty("java.io.tmpdir") + File.separator +
+            "checklist-corpus";
+        int checkLists = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int instructions = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+        int textLength = args.length > 3 ? Integer.parseInt(args[3]) : 200;
+        int iterations = args.length > 4 ? Integer.parseInt(args[4]) : 10;
+
+        String mainFile = CorpusGenerator.generate(new File(dir), checkLists,
+                                                   instructions, textLength);
+        long totalInstructions = (long) checkLists * instructions;
+
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean)
+            ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        // warm up
+        for(int i = 0; i < 3; i++)
+        {
+            parse(mainFile);
+        }
+
+        long allocated = 0;
+        long time = 0;
+        for(int i = 0; i < iterations; i++)
+        {
+            long a = threads.getThreadAllocatedBytes(threadId);
+            long t = System.nanoTime();
+            parse(mainFile);
+            time += System.nanoTime() - t;
+            allocated += threads.getThreadAllocatedBytes(threadId) - a;
+        }
+
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long before = usedHeap(memory);
+        LinkedHashMap<String, CheckListData> store = parse(mainFile);
+        long retained = usedHeap(memory) - before;
+
+        System.out.println("corpus: " + checkLists + " checklists, " +
+                           instructions + " instructions each, text length " +
+                           textLength);
+        System.out.println("parse time [ms]:                " +
+                           (time / iterations / 1000000));
+        System.out.println("allocated per parse [bytes]:    " +
+                           (allocated / iterations));
+        System.out.println("allocated per instruction [B]:  " +
+                           (allocated / iterations / totalInstructions));
+        System.out.println("retained store heap [bytes]:    " + retained);
+        System.out.println("retained per instruction [B]:   " +
+                           (retained / totalInstructions));
+        System.out.println("checklists in store:            " + store.size());
+
+    } // main() -------------------------------------------------------------
+
+
+
+    private static LinkedHashMap<String, CheckListData> parse(String mainFile)
+                                          throws CheckListException
+    {
+        XMLParser parser = new XMLParser(mainFile);
+        parser.parse();
+        return parser.getCheckListStore();
+
+    } // parse() ------------------------------------------------------------
+
+
+
+    private static long usedHeap(MemoryMXBean memory) throws Exception
+    {
+        for(int i = 0; i < 3; i++)
+        {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+
+    } // usedHeap() ---------------------------------------------------------
+
+} // class ParserFootprint ==================================================
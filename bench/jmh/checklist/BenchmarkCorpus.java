@@ -0,0 +1,69 @@
+package checklist;
+
+import java.io.File;
+import java.io.IOException;
+
+import mylogger.MyLogger;
+
+
+
+/**
+ * Shared set-up of the JMH benchmarks - synthetic corpora (one directory
+ * per corpus shape, reused between benchmark runs) and quiet logging.
+ *
+ * @author Zdenek Maxa
+ *
+ */
+final class BenchmarkCorpus
+{
+    private static boolean loggingInitialised = false;
+
+
+
+
+    /**
+     * Returns main file of the corpus of given shape, generates it if
+     * it doesn't exist yet.
+     */
+    static String getMainFile(int checkLists, int instructions,
+                              int textLength) throws IOException
+    {
+        quietLogging();
+        File dir = new File(System.getProperty("java.io.tmpdir"),
+                            "checklist-jmh-" + checkLists + "-" +
+                            instructions + "-" + textLength);
+        File main = new File(dir, CorpusGenerator.MAIN_FILE);
+        if(main.exists())
+        {
+            return main.getPath();
+        }
+        return CorpusGenerator.generate(dir, checkLists, instructions,
+                                        textLength);
+
+    } // getMainFile() ------------------------------------------------------
+
+
+
+    /**
+     * Parsers log every checklist title at INFO level, that would be
+     * measured as well.
+     */
+    static synchronized void quietLogging()
+    {
+        if(loggingInitialised)
+        {
+            return;
+        }
+        try
+        {
+            MyLogger.initialize(new String[] { "ERROR" });
+        }
+        catch(Exception ex)
+        {
+            throw new RuntimeException(ex);
+        }
+        loggingInitialised = true;
+
+    } // quietLogging() -----------------------------------------------------
+
+} // class BenchmarkCorpus ==================================================
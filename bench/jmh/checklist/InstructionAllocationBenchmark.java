@@ -0,0 +1,76 @@
+package checklist;
+
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+
+/**
+ * Parsing cost per instruction - one operation is one instruction, so run
+ * with the GC profiler (-prof gc, default of the ant jmh target) the
+ * gc.alloc.rate.norm figure is bytes allocated per instruction.
+ *
+ * @author Zdenek Maxa
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class InstructionAllocationBenchmark
+{
+    // 10 checklists of 100 instructions
+    private static final int INSTRUCTIONS = 1000;
+
+    @Param({ "50", "500" })
+    public int textLength;
+
+    @Param({ "SAX", "STAX" })
+    public String engine;
+
+    private String mainFile = null;
+
+    private ParserEngine parserEngine = null;
+
+
+
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception
+    {
+        mainFile = BenchmarkCorpus.getMainFile(10, INSTRUCTIONS / 10,
+                                               textLength);
+        parserEngine = ParserEngine.forName(engine);
+
+    } // setUp() ------------------------------------------------------------
+
+
+
+    @Benchmark
+    @OperationsPerInvocation(INSTRUCTIONS)
+    public LinkedHashMap<String, CheckListData> parse()
+                                       throws CheckListException
+    {
+        CheckListSource source = parserEngine.createSource(mainFile);
+        source.parse();
+        return source.getCheckListStore();
+
+    } // parse() ------------------------------------------------------------
+
+} // class InstructionAllocationBenchmark ===================================
@@ -0,0 +1,89 @@
+package checklist;
+
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+
+/**
+ * Parse throughput of the whole XML loading pipeline depending on the
+ * number of checklists, instructions per checklist and instruction text
+ * length - sequential parsing by each parser engine and parallel parsing
+ * of the included files (ParallelLoader).
+ *
+ * @author Zdenek Maxa
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ParseBenchmark
+{
+    @Param({ "10", "100" })
+    public int checkLists;
+
+    @Param({ "20", "200" })
+    public int instructions;
+
+    @Param({ "50", "500" })
+    public int textLength;
+
+    @Param({ "SAX", "STAX" })
+    public String engine;
+
+    private String mainFile = null;
+
+    private ParserEngine parserEngine = null;
+
+
+
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception
+    {
+        mainFile = BenchmarkCorpus.getMainFile(checkLists, instructions,
+                                               textLength);
+        parserEngine = ParserEngine.forName(engine);
+        ParserEngine.setDefault(parserEngine);
+
+    } // setUp() ------------------------------------------------------------
+
+
+
+    @Benchmark
+    public LinkedHashMap<String, CheckListData> parseSequential()
+                                       throws CheckListException
+    {
+        CheckListSource source = parserEngine.createSource(mainFile);
+        source.parse();
+        return source.getCheckListStore();
+
+    } // parseSequential() --------------------------------------------------
+
+
+
+    @Benchmark
+    public LinkedHashMap<String, CheckListData> parseParallel()
+                                       throws CheckListException
+    {
+        return new ParallelLoader(mainFile).load();
+
+    } // parseParallel() ----------------------------------------------------
+
+} // class ParseBenchmark ===================================================
@@ -0,0 +1,90 @@
+package checklist;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+
+/**
+ * Store construction without XML parsing - reading the store back from
+ * its binary snapshot (StoreSnapshot) and building the table rows of a
+ * checklist (CheckListTableModel) from the store.
+ *
+ * @author Zdenek Maxa
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class StoreBenchmark
+{
+    @Param({ "10", "100" })
+    public int checkLists;
+
+    @Param({ "20", "200" })
+    public int instructions;
+
+    private StoreSnapshot snapshot = null;
+
+    private CheckListStore store = null;
+
+    private String title = null;
+
+
+
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception
+    {
+        String mainFile = BenchmarkCorpus.getMainFile(checkLists,
+                                                      instructions, 200);
+        File f = File.createTempFile("checklist-jmh", ".snapshot");
+        f.deleteOnExit();
+        snapshot = new StoreSnapshot(f.getPath());
+        snapshot.stamp(mainFile);
+
+        XMLParser parser = new XMLParser(mainFile);
+        parser.parse();
+        store = new CheckListStore(parser.getCheckListStore());
+        title = store.snapshot().getTitles().iterator().next();
+
+        snapshot.write(parser.getCheckListStore(), parser.getSourceFiles());
+
+    } // setUp() ------------------------------------------------------------
+
+
+
+    @Benchmark
+    public LinkedHashMap<String, CheckListData> readSnapshot()
+    {
+        return snapshot.read();
+
+    } // readSnapshot() -----------------------------------------------------
+
+
+
+    @Benchmark
+    public CheckListTableModel prepareTableData() throws CheckListException
+    {
+        return new CheckListTableModel(store, title);
+
+    } // prepareTableData() -------------------------------------------------
+
+} // class StoreBenchmark ===================================================
@@ -0,0 +1,48 @@
+#!/bin/sh
+
+# Local stand-in for the elog command line client (/usr/local/bin/elog),
+# for testing ATLOG submissions without the elog server:
+#   java -jar checklist.jar --elog-executable ./elog-standin.sh ...
+#
+# Each submission (all arguments and the content of the -m message file)
+# is appended to $ELOG_STANDIN_LOG. Behaviour is controlled by environment
+# variables:
+#   ELOG_STANDIN_LOG    file recording submissions (/tmp/elog-standin.log)
+#   ELOG_STANDIN_DELAY  seconds to wait before answering (0)
+#   ELOG_STANDIN_FAIL   if set to 1, the submission fails (exit value 1)
+#   ELOG_STANDIN_NOISE  number of lines written to stderr (0)
+
+
+LOG=${ELOG_STANDIN_LOG:-/tmp/elog-standin.log}
+
+sleep ${ELOG_STANDIN_DELAY:-0}
+
+i=0
+while [ $i -lt ${ELOG_STANDIN_NOISE:-0} ]
+do
+    echo "elog stand-in diagnostic line $i" >&2
+    i=`expr $i + 1`
+done
+
+if [ "x$ELOG_STANDIN_FAIL" = "x1" ]
+then
+    echo "Error transmitting message (elog stand-in failure)" >&2
+    exit 1
+fi
+
+{
+    echo "----- `date '+%Y-%m-%d %H:%M:%S'` pid $$"
+    for arg in "$@"
+    do
+        echo "$arg"
+        if [ "x$previous" = "x-m" ]
+        then
+            cat "$arg"
+            echo
+        fi
+        previous=$arg
+    done
+} >> $LOG
+
+echo "Message successfully transmitted, ID=$$"
+exit 0
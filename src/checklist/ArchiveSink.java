@@ -0,0 +1,121 @@
+package checklist;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+
+import mylogger.MyLogger;
+
+
+
+/**
+ * Appends results to a local text archive, one file per month
+ * (checklist-yyyy-MM.txt). Each result starts with a header line with its
+ * time, checklist name and key (a result delivered twice can be told by
+ * the key). One result at a time.
+ *
+ * @author Zdenek Maxa
+ *
+ */
+final class ArchiveSink implements ResultSink
+{
+    private static MyLogger logger = MyLogger.getLogger(ArchiveSink.class);
+
+    static final String DEFAULT_DIR =
+        System.getProperty("user.home") + File.separator + ".checklist" +
+        File.separator + "archive";
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private String name = null;
+
+    private File dir = null;
+
+    // used by the single delivering thread only
+    private SimpleDateFormat monthFormat = new SimpleDateFormat("yyyy-MM");
+    private SimpleDateFormat timeFormat =
+        new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+
+
+
+
+    public ArchiveSink(String name, String dir)
+    {
+        this.name = name;
+        this.dir = new File(dir);
+
+    } // ArchiveSink() ------------------------------------------------------
+
+
+
+    public String getName()
+    {
+        return name;
+
+    } // getName() ----------------------------------------------------------
+
+
+
+    public int getConcurrency()
+    {
+        // appends to a shared file
+        return 1;
+
+    } // getConcurrency() ---------------------------------------------------
+
+
+
+    public String deliver(ElogOutbox.Entry result)
+    {
+        Date created = new Date(result.created);
+        File file = new File(dir, "checklist-" + monthFormat.format(created) +
+                             ".txt");
+
+        StringBuilder sb = new StringBuilder(result.message.length() + 256);
+        sb.append("==== ").append(timeFormat.format(created)).append(' ');
+        sb.append(result.title).append(" [").append(result.key).append("]\n");
+        if(result.systemAffected != null)
+        {
+            String s = Arrays.toString(result.systemAffected);
+            sb.append("System affected: ");
+            sb.append(s.substring(1, s.length() - 1)).append('\n');
+        }
+        sb.append(result.message);
+        if(! result.message.endsWith("\n"))
+        {
+            sb.append('\n');
+        }
+        sb.append('\n');
+
+        try
+        {
+            if(! dir.isDirectory() && ! dir.mkdirs())
+            {
+                return "can't create archive directory " + dir;
+            }
+            FileOutputStream out = new FileOutputStream(file, true);
+            try
+            {
+                // single write, entries of concurrent instances don't mix
+                out.write(sb.toString().getBytes(UTF8));
+            }
+            finally
+            {
+                out.close();
+            }
+        }
+        catch(IOException ioe)
+        {
+            return "can't write archive " + file + ", reason: " +
+                   ioe.getMessage();
+        }
+        logger.debug("Result of \"" + result.title + "\" archived in " + file);
+        return null;
+
+    } // deliver() ----------------------------------------------------------
+
+} // class ArchiveSink ======================================================
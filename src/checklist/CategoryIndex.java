@@ -0,0 +1,301 @@
+package checklist;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import mylogger.MyLogger;
+
+
+
+/**
+ * Categories of checklists by title prefix, each category is a menu of the
+ * stand-alone MenuBar. Checklists whose title doesn't start with any of
+ * the prefixes are in no category ("other checklists" menu).
+ *
+ * The prefixes are compiled into a trie, the category of a title is found
+ * by walking the title characters through the trie, i.e. the cost doesn't
+ * depend on the number of categories. If several prefixes match, the
+ * longest one wins.
+ *
+ * Categories are read from a text file (--categories option or the file
+ * DEFAULT_FILE_NAME in the checklist path), one category per line:
+ *
+ *   # comment
+ *   signin-                         (menu label is "signin-checklists")
+ *   DQcheck- = DQ checklists        (explicit menu label)
+ *
+ * The menus are in the order of the lines. Without the file, the built-in
+ * DEFAULT_PREFIXES are used.
+ *
+ * @author Zdenek Maxa
+ *
+ */
+final class CategoryIndex
+{
+    private static MyLogger logger = MyLogger.getLogger(CategoryIndex.class);
+
+    // categories file looked up in the checklist path
+    static final String DEFAULT_FILE_NAME = "CheckListCategories.conf";
+
+    // title prefixes used if there is no categories file
+    static final String[] DEFAULT_PREFIXES = { "signin-", "DQcheck-",
+                                               "injection-", "stablebeam-",
+                                               "startrun-" };
+
+    // category of titles not matching any prefix
+    static final int NO_CATEGORY = -1;
+
+    static final String NO_CATEGORY_LABEL = "other checklists";
+
+    private static CategoryIndex defaultIndex = null;
+
+
+    // menu labels, index is category number
+    private ArrayList<String> labels = new ArrayList<String>();
+
+    private ArrayList<String> prefixes = new ArrayList<String>();
+
+    private Node root = new Node();
+
+
+
+
+    /**
+     * Index of the DEFAULT_PREFIXES.
+     */
+    CategoryIndex()
+    {
+        this(DEFAULT_PREFIXES);
+
+    } // CategoryIndex() ----------------------------------------------------
+
+
+
+    /**
+     * Index of the prefixes, menu labels are prefix + "checklists".
+     */
+    CategoryIndex(String[] prefixes)
+    {
+        for(String prefix : prefixes)
+        {
+            addCategory(prefix, null);
+        }
+
+    } // CategoryIndex() ----------------------------------------------------
+
+
+
+    /**
+     * Reads categories from the file (see class description).
+     */
+    static CategoryIndex load(String fileName) throws CheckListException
+    {
+        CategoryIndex index = new CategoryIndex(new String[0]);
+        BufferedReader reader = null;
+        try
+        {
+            reader = new BufferedReader(new InputStreamReader(
+                         new FileInputStream(fileName), "UTF-8"));
+            String line = null;
+            int lineNumber = 0;
+            while((line = reader.readLine()) != null)
+            {
+                lineNumber++;
+                line = line.trim();
+                if(line.length() == 0 || line.startsWith("#"))
+                {
+                    continue;
+                }
+                String prefix = line;
+                String label = null;
+                int eq = line.indexOf('=');
+                if(eq >= 0)
+                {
+                    prefix = line.substring(0, eq).trim();
+                    label = line.substring(eq + 1).trim();
+                }
+                if(prefix.length() == 0 ||
+                   (label != null && label.length() == 0))
+                {
+                    throw new CheckListException("Categories file \"" +
+                              fileName + "\", line " + lineNumber +
+                              ": expected <prefix> [= <menu label>]");
+                }
+                index.addCategory(prefix, label);
+            }
+        }
+        catch(IOException ioe)
+        {
+            throw new CheckListException("Could not read categories file \"" +
+                                         fileName + "\", reason: " +
+                                         ioe.getMessage());
+        }
+        finally
+        {
+            if(reader != null)
+            {
+                try
+                {
+                    reader.close();
+                }
+                catch(IOException ignored)
+                {
+                }
+            }
+        }
+
+        logger.info("Checklist categories read from \"" + fileName + "\": " +
+                    index.prefixes);
+        return index;
+
+    } // load() -------------------------------------------------------------
+
+
+
+    /**
+     * Index used by the MenuBar, set from the command line or from the
+     * categories file in the checklist path, DEFAULT_PREFIXES otherwise.
+     */
+    static synchronized CategoryIndex getDefault()
+    {
+        if(defaultIndex == null)
+        {
+            defaultIndex = new CategoryIndex();
+        }
+        return defaultIndex;
+
+    } // getDefault() -------------------------------------------------------
+
+
+
+    static synchronized void setDefault(CategoryIndex index)
+    {
+        defaultIndex = index;
+
+    } // setDefault() -------------------------------------------------------
+
+
+
+    /**
+     * Adds the category (at the end), label null means prefix + "checklists".
+     * A prefix already present only gets the new label.
+     */
+    private void addCategory(String prefix, String label)
+    {
+        if(label == null)
+        {
+            label = prefix + "checklists";
+        }
+
+        Node node = root;
+        for(int i = 0; i < prefix.length(); i++)
+        {
+            node = node.getOrAddChild(prefix.charAt(i));
+        }
+        if(node.category != NO_CATEGORY)
+        {
+            logger.warn("Category prefix \"" + prefix + "\" defined more " +
+                        "than once, using the last definition.");
+            labels.set(node.category, label);
+            return;
+        }
+        node.category = labels.size();
+        labels.add(label);
+        prefixes.add(prefix);
+
+    } // addCategory() ------------------------------------------------------
+
+
+
+    /**
+     * Category number of the checklist title (the longest matching prefix),
+     * NO_CATEGORY if no prefix matches.
+     */
+    int getCategory(String title)
+    {
+        int category = NO_CATEGORY;
+        Node node = root;
+        for(int i = 0; i < title.length() && node != null; i++)
+        {
+            node = node.getChild(title.charAt(i));
+            if(node != null && node.category != NO_CATEGORY)
+            {
+                category = node.category;
+            }
+        }
+        return category;
+
+    } // getCategory() ------------------------------------------------------
+
+
+
+    int getCategoryCount()
+    {
+        return labels.size();
+
+    } // getCategoryCount() -------------------------------------------------
+
+
+
+    /**
+     * Menu label of the category, NO_CATEGORY_LABEL for NO_CATEGORY.
+     */
+    String getLabel(int category)
+    {
+        return category == NO_CATEGORY ? NO_CATEGORY_LABEL :
+                                         labels.get(category);
+
+    } // getLabel() ---------------------------------------------------------
+
+
+
+    /**
+     * Trie node, children are kept in arrays sorted by character (a node
+     * has only a few children).
+     */
+    private static final class Node
+    {
+        private char[] keys = new char[0];
+
+        private Node[] children = new Node[0];
+
+        // category of the prefix ending at this node
+        private int category = NO_CATEGORY;
+
+
+
+        Node getChild(char c)
+        {
+            int i = Arrays.binarySearch(keys, c);
+            return i >= 0 ? children[i] : null;
+        }
+
+
+        Node getOrAddChild(char c)
+        {
+            int i = Arrays.binarySearch(keys, c);
+            if(i >= 0)
+            {
+                return children[i];
+            }
+            i = -i - 1;
+            char[] k = new char[keys.length + 1];
+            Node[] n = new Node[children.length + 1];
+            System.arraycopy(keys, 0, k, 0, i);
+            System.arraycopy(children, 0, n, 0, i);
+            System.arraycopy(keys, i, k, i + 1, keys.length - i);
+            System.arraycopy(children, i, n, i + 1, children.length - i);
+            k[i] = c;
+            n[i] = new Node();
+            keys = k;
+            children = n;
+            return n[i];
+        }
+
+    } // class Node =========================================================
+
+} // class CategoryIndex ====================================================
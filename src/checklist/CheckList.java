@@ -10,11 +10,15 @@ import org.apache.commons.cli.GnuParser;
 import org.apache.commons.cli.ParseException;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.InputStreamReader;
 import java.io.IOException;
+import java.io.PrintStream;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.Map;
 
 import javax.swing.JOptionPane;
 
@@ -65,10 +69,49 @@ public final class CheckList
 				
 	// flag if CheckList was called as a stand-alone application or from RunCom 
 	private boolean standAlone = false;
+	
+	// if set, checklist files included from the main checklist file are
+	// parsed in parallel (ParallelLoader), see --parallel option
+	private boolean parallel = false;
+	
+	// if set, the parsed store is kept in a binary snapshot which is used
+	// instead of parsing if the XML files haven't changed (StoreSnapshot),
+	// see --no-cache option
+	private boolean useSnapshot = true;
+	
+	// if set (stand-alone mode only), only the index of checklists is built
+	// at start-up and the checklists are parsed when displayed for the
+	// first time, see --lazy option
+	private boolean lazy = false;
+	
+	// index of checklists when loading lazily
+	private CheckListIndex index = null;
+	
+	// if set (stand-alone mode only), modified checklist files are reloaded,
+	// see --watch option
+	private boolean watch = false;
+	
+	// reloader of modified checklist files when watching
+	private CheckListReloader reloader = null;
+	
+	// elog command line client executing ATLOG submissions, may be set
+	// by the checklist.elog system property or --elog-executable option
+	// (e.g. a local stand-in for testing)
+	private static String elogExecutable =
+	    System.getProperty("checklist.elog", "/usr/local/bin/elog");
+	
+	// file with checklist categories (menus), if not set, the categories
+	// file in checkListsPath is used if it exists, see --categories option
+	private String categoriesFile = null;
+	
+	// if set, checklist files of this directory are validated (headless,
+	// no GUI), see --validate option
+	private String validateDir = null;
 
 	// CheckList data store - all checklists, instructions and comments use
 	// LinkedHashMap rather than HashMap which can't guarantee insertion
 	// ordering, main store of data, other classes have reference to this one
+	// (versioned, see CheckListStore, may be updated while the GUI reads it)
 	// key: title of the checklist (as defined in the XML checklist file), 
 	// values: CheckListData instance corresponds to contents of 1 XML
 	// CheckList file
@@ -76,7 +119,7 @@ public final class CheckList
 	// in the class MenuBar - iterates over all keys, and then they are added
 	// as menu items - useful to preserve order as they are defined in the main
 	// CheckList.xml
-	private LinkedHashMap<String, CheckListData> store = null;
+	private CheckListStore store = null;
 
 
 
@@ -108,11 +151,15 @@ public final class CheckList
     
 		try
 		{
+		    // options given by system properties
+		    setDefaults(null);
 		    // should automatically parse only the desired checklist
 		    // in requestedCheckListFileName and no other checklist
 			instance.initialize();
+			// submissions left unsent by previous runs
+			ElogSubmitter.getInstance().replay();
 			CheckListGUI.createAndShowGUI(instance.standAlone,
-					                      instance.store,
+					                      instance.store, null, null,
 					                      instance.deskNameInRunCom,
 					                      instance.checkListFile);
 		}
@@ -130,6 +177,80 @@ public final class CheckList
 
 	
 	
+	/**
+	 * Method which may be called from the RunCom application (once, e.g.
+	 * upon its start-up) to parse in advance the checklists it is going to
+	 * show by showCheckListWindow(). Checklist files should exist in
+	 * (default) checkListPath.
+	 */
+	public static void warmUp(String[] requestedCheckListFileNames)
+	{
+		CheckList instance = new CheckList(false);
+		logger = MyLogger.getLogger(CheckList.class);
+		
+		String[] fullPaths = new String[requestedCheckListFileNames.length];
+		for(int i = 0; i < fullPaths.length; i++)
+		{
+			fullPaths[i] = instance.checkListsPath +
+			               System.getProperty("file.separator") +
+			               requestedCheckListFileNames[i];
+		}
+		CheckListEngine.getInstance().warmUp(fullPaths);
+		
+	} // warmUp() -----------------------------------------------------------
+
+	
+	
+	/**
+	 * Sets the defaults which may be given either by a command line option
+	 * or by a system property (RunCom doesn't pass any command line), the
+	 * option takes precedence. l is null if there is no command line.
+	 * Invalid values of both are reported the same way.
+	 */
+	private static void setDefaults(CommandLine l) throws CheckListException
+	{
+	    String arg = getValue(l, 't', "checklist.elog.transport");
+	    if(arg != null)
+	    {
+	        ElogTransportType.setDefault(ElogTransportType.forName(arg));
+	    }
+	    
+	    arg = getValue(l, 'r', "checklist.sinks");
+	    if(arg != null)
+	    {
+	        ResultSinkType.setDefaults(ResultSinkType.forNames(arg));
+	    }
+	    
+	    arg = getValue(l, 'f', "checklist.result.format");
+	    if(arg != null)
+	    {
+	        ResultFormat.setDefault(ResultFormat.forName(arg));
+	    }
+	    
+	    arg = getValue(l, 'm', "checklist.session.memory");
+	    if(arg != null)
+	    {
+	        SessionStateCache.setDefaultMemoryLimit(
+	            SessionStateCache.parseMemoryLimit(arg));
+	    }
+	    
+	} // setDefaults() ------------------------------------------------------
+	
+	
+	
+	private static String getValue(CommandLine l, char option,
+	                               String property)
+	{
+	    if(l != null && l.hasOption(option))
+	    {
+	        return l.getOptionValue(option);
+	    }
+	    return System.getProperty(property);
+	    
+	} // getValue() ---------------------------------------------------------
+
+
+
 	private void processCommandLineParameters(String[] args)
 	                    throws CheckListException
 	{
@@ -180,6 +301,124 @@ public final class CheckList
 		                               .withDescription(resourceDescr)
 		                               .withLongOpt("path").create('p');
 		o.addOption(resource);
+		
+		// define parallel loading option (-j, --parallel)
+		String parallelDescr = "parse the checklist files included by the " +
+		                       "main checklist file in parallel";
+		Option parallelOption = new Option("j", "parallel", false,
+		                                   parallelDescr);
+		o.addOption(parallelOption);
+		
+		// define option for disabling store snapshot (-n, --no-cache)
+		String noCacheDescr = "always parse the XML checklists, don't use " +
+		                      "(and don't update) the store snapshot " +
+		                      "of previously parsed checklists";
+		Option noCache = new Option("n", "no-cache", false, noCacheDescr);
+		o.addOption(noCache);
+		
+		// define lazy loading option (-l, --lazy)
+		String lazyDescr = "stand-alone mode, only index the checklists " +
+		                   "at start-up, parse each checklist when it is " +
+		                   "displayed for the first time";
+		Option lazyOption = new Option("l", "lazy", false, lazyDescr);
+		o.addOption(lazyOption);
+		
+		// define watch option (-w, --watch)
+		String watchDescr = "stand-alone mode, reload checklist files " +
+		                    "when they are modified";
+		Option watchOption = new Option("w", "watch", false, watchDescr);
+		o.addOption(watchOption);
+		
+		// define parser engine option (-e, --engine <engine>)
+		String engineDescr = "XML parser engine to use: sax (default) " +
+		                     "or stax";
+		Option engine = OptionBuilder.hasArgs(1)
+		                             .withArgName("engine")
+		                             .withDescription(engineDescr)
+		                             .withLongOpt("engine").create('e');
+		o.addOption(engine);
+		
+		// define validate option (-v, --validate <directory>)
+		String validateDescr = "don't start the GUI, parse all XML " +
+		                       "checklist files in <directory>, check them " +
+		                       "and print a report (JSON)";
+		Option validate = OptionBuilder.hasArgs(1)
+		                               .withArgName("directory")
+		                               .withDescription(validateDescr)
+		                               .withLongOpt("validate").create('v');
+		o.addOption(validate);
+		
+		// define categories option (-c, --categories <file>)
+		String categoriesDescr = "stand-alone mode, read checklist " +
+		                         "categories (menus by title prefix) from " +
+		                         "<file>, the default is \"" +
+		                         CategoryIndex.DEFAULT_FILE_NAME + "\" at " +
+		                         "the checklist path if it exists";
+		Option categories = OptionBuilder.hasArgs(1)
+		                                 .withArgName("file")
+		                                 .withDescription(categoriesDescr)
+		                                 .withLongOpt("categories").create('c');
+		o.addOption(categories);
+		
+		// define elog executable option (-x, --elog-executable <file>)
+		String elogDescr = "elog client executable for inserting " +
+		                   "checklist output into ATLOG, the default is " +
+		                   "\"" + elogExecutable + "\"";
+		Option elog = OptionBuilder.hasArgs(1)
+		                           .withArgName("file")
+		                           .withDescription(elogDescr)
+		                           .withLongOpt("elog-executable").create('x');
+		o.addOption(elog);
+		
+		// define elog transport option (-t, --elog-transport <transport>)
+		String transportDescr = "how submissions are sent into ATLOG: " +
+		                        "exec (elog client executable, default) " +
+		                        "or http (elog web protocol, no process " +
+		                        "started)";
+		Option transport = OptionBuilder.hasArgs(1)
+		                                .withArgName("transport")
+		                                .withDescription(transportDescr)
+		                                .withLongOpt("elog-transport")
+		                                .create('t');
+		o.addOption(transport);
+		
+		// define result sinks option (-r, --result-sinks <sinks>)
+		String sinksDescr = "comma separated list of destinations of " +
+		                    "checklist results: elog (default), elog-test, " +
+		                    "archive (~/.checklist/archive), syslog, json " +
+		                    "(~/.checklist/spool)";
+		Option sinks = OptionBuilder.hasArgs(1)
+		                            .withArgName("sinks")
+		                            .withDescription(sinksDescr)
+		                            .withLongOpt("result-sinks")
+		                            .create('r');
+		o.addOption(sinks);
+		
+		// define result format option (-f, --result-format <format>)
+		String formatDescr = "format of the checklist output inserted " +
+		                     "into ATLOG: plain (default, all " +
+		                     "instructions), failures (summary of not " +
+		                     "ticked instructions), html or json";
+		Option format = OptionBuilder.hasArgs(1)
+		                             .withArgName("format")
+		                             .withDescription(formatDescr)
+		                             .withLongOpt("result-format")
+		                             .create('f');
+		o.addOption(format);
+		
+		// define session memory option (-m, --session-memory <kilobytes>)
+		String sessionDescr = "stand-alone mode, memory for keeping ticks " +
+		                      "and comments of checklists switched away " +
+		                      "from, least recently displayed ones are " +
+		                      "saved into ~/.checklist/session when it's " +
+		                      "exceeded (default " +
+		                      SessionStateCache.getDefaultMemoryLimit() + ")";
+		Option session = OptionBuilder.hasArgs(1)
+		                              .withArgName("kilobytes")
+		                              .withDescription(sessionDescr)
+		                              .withLongOpt("session-memory")
+		                              .create('m');
+		o.addOption(session);
 		 
 		
 		// process command line options
@@ -234,6 +473,81 @@ public final class CheckList
 			}			
 			// end of read option
 			
+			// parallel parsing of included checklist files
+			if(l.hasOption('j'))
+			{
+			    parallel = true;
+			}
+			// end of parallel option
+			
+			// don't use store snapshot
+			if(l.hasOption('n'))
+			{
+			    useSnapshot = false;
+			}
+			// end of no-cache option
+			
+			// lazy loading of the checklists
+			if(l.hasOption('l'))
+			{
+			    lazy = true;
+			}
+			// end of lazy option
+			
+			// reload modified checklists
+			if(l.hasOption('w'))
+			{
+			    watch = true;
+			}
+			// end of watch option
+			
+			// parser engine
+			if(l.hasOption('e'))
+			{
+			    String arg = l.getOptionValue('e');
+			    try
+			    {
+			        ParserEngine.setDefault(ParserEngine.forName(arg));
+			    }
+			    catch(CheckListException cle)
+			    {
+			        throw new ParseException(cle.getMessage());
+			    }
+			}
+			// end of engine option
+			
+			// validation of checklist files (logging set up by main())
+			if(l.hasOption('v'))
+			{
+			    validateDir = l.getOptionValue('v');
+			}
+			// end of validate option
+			
+			// checklist categories
+			if(l.hasOption('c'))
+			{
+			    categoriesFile = l.getOptionValue('c');
+			}
+			// end of categories option
+			
+			// elog client executable
+			if(l.hasOption('x'))
+			{
+			    elogExecutable = l.getOptionValue('x');
+			}
+			// end of elog executable option
+			
+			// elog transport, result sinks, result format, session state
+			// memory (also set by system properties)
+			try
+			{
+			    setDefaults(l);
+			}
+			catch(CheckListException cle)
+			{
+			    throw new ParseException(cle.getMessage());
+			}
+			
 			
 		} // try
 		catch(ParseException pe)
@@ -275,9 +589,42 @@ public final class CheckList
 	 */
 	protected static void submitIntoATLog(String message, String activeCheckList,
 	                                      String[] systemAffected)
+	{
+	    // executed in the background, the GUI doesn't wait for elog,
+	    // progress is shown in a small non-modal window
+	    ElogStatusWindow.install();
+	    ElogSubmitter.Outcome outcome = ElogSubmitter.getInstance().submit(
+	                            message, activeCheckList, systemAffected);
+	    if(outcome == ElogSubmitter.Outcome.RETRY)
+	    {
+	        String m = "Too many ATLOG submissions pending, the checklist " +
+	                   "output is queued for retry and will be inserted " +
+	                   "into ATLOG later.";
+	        JOptionPane.showMessageDialog(null, m, "CheckList elog",
+	                                      JOptionPane.WARNING_MESSAGE);
+	    }
+	    else if(outcome == ElogSubmitter.Outcome.REJECTED)
+	    {
+	        String m = "Too many ATLOG submissions pending, the checklist " +
+	                   "output was not inserted into ATLOG (the outbox " +
+	                   "journal is not available to retry it later).";
+	        JOptionPane.showMessageDialog(null, m, "CheckList elog error",
+	                                      JOptionPane.ERROR_MESSAGE);
+	    }
+
+	} // submitIntoATLog() --------------------------------------------------
+	
+	
+	
+	/**
+	 * ATLOG (elog) attributes of the submission (the same for all
+	 * transports), in the order they are given to elog. Called by the
+	 * elog sink thread (looking up the local host address may take time).
+	 */
+	static LinkedHashMap<String, String> createElogAttributes(
+	                                         String activeCheckList,
+	                                         String[] systemAffected)
 	{		
-		String elogValid = "valid=valid";
-		String elogUser = "User=reljicd";
 		String hostAddress = "unknown";
 		
 		try
@@ -289,109 +636,85 @@ public final class CheckList
 			String m = "The default host address of localhost was not found.";
 			logger.error(m);
 		}
-				
-	    String elogRemIp = "Rem_IP=" + hostAddress;
-        String elogAuthor = "Author=Checklist Entry";
-        String elogSystem = "Message Type=Default Message Type";
-        String elogStatus = "Status=closed";
-        String elogSystemAffected = "System Affected=Other";
-        String elogSubject = "Subject=" + activeCheckList;
-
-        // command must by supplied in form of array - String doesn't work
-        String[] command = {
-                "/usr/local/bin/elog",
-                "-h", "pc-atlas-www.cern.ch",
-                "-p", "8100", // production elog
-                // "-p", "8096", // testing elog
-                "-l", "ATLAS", // production elog
-                // "-l", "ATLOG_TEST", // testing elog
-                "-u", "reljicd", "trrean18",
-                "-a", elogValid,
-                "-a", elogUser,
-                "-a", elogRemIp,
-                "-a", elogAuthor,
-                "-a", elogSystem,
-                "-a", elogStatus,        
-                "-a", elogSubject };
-        // SystemAffected and the message will be added later
+		
+		LinkedHashMap<String, String> attributes =
+		    new LinkedHashMap<String, String>();
+		attributes.put("valid", "valid");
+		attributes.put("User", ElogServer.USER);
+		attributes.put("Rem_IP", hostAddress);
+		attributes.put("Author", "Checklist Entry");
+		attributes.put("Message Type", "Default Message Type");
+		attributes.put("Status", "closed");
+		attributes.put("Subject", activeCheckList);
         
         // if there are any systemAffected (coming from XML checklist, use them)
-        // otherwise default system affected value other is used automatically:
-        // String elogSystemAffected = "System Affected=Other";
+        // otherwise default system affected value other is used automatically
+        String elogSystemAffected = "Other";
         if(systemAffected != null)
         {
-            elogSystemAffected = "System Affected=";
+            StringBuilder sb = new StringBuilder();
             for(int i = 0; i < systemAffected.length; i++)
             {
-                elogSystemAffected += systemAffected[i];
-                // add elog "System Affected" parameter separator if there are
-                // more system affected items and don't add it to the last one
-                if(systemAffected.length > 1 && i < systemAffected.length - 1)
+                // elog "System Affected" parameter separator between items
+                if(i > 0)
                 {
-                    elogSystemAffected += " | ";
+                    sb.append(" | ");
                 }
+                sb.append(systemAffected[i]);
             }
+            elogSystemAffected = sb.toString();
         }
-
-        // final command array size:
-        // all items from command + 3 (-a "System Affected=some_system(s) msg")
-        int finalCommandSize = command.length + 2 + 1;
-        String[] commandFinal = new String[finalCommandSize];
-        System.arraycopy(command, 0, commandFinal, 0, command.length);
+        attributes.put("System Affected", elogSystemAffected);
         
-        commandFinal[finalCommandSize - 3] = "-a";
-        commandFinal[finalCommandSize - 2] = elogSystemAffected;
-        commandFinal[finalCommandSize - 1] = message;
-        
-        logger.warn("Going to execute ATLOG (elog) inserting command ...");
-        String commandDebug = "";
-        for(int i = 0; i < commandFinal.length; i++)
+        return attributes;
+
+	} // createElogAttributes() ---------------------------------------------
+	
+	
+	
+	/**
+	 * ATLOG (elog) inserting command (elog command line client), see
+	 * submitIntoATLog(). The message is read by elog from messageFile
+	 * (long messages don't fit into the command line).
+	 */
+	static String[] createElogCommand(ElogServer server, String messageFile,
+	                                  String activeCheckList,
+	                                  String[] systemAffected)
+	{
+        // command must by supplied in form of array - String doesn't work
+        ArrayList<String> command = new ArrayList<String>();
+        command.add(elogExecutable);
+        command.add("-h");
+        command.add(server.host);
+        command.add("-p");
+        command.add(String.valueOf(server.port));
+        command.add("-l");
+        command.add(server.logbook);
+        command.add("-u");
+        command.add(ElogServer.USER);
+        command.add(ElogServer.PASSWORD);
+        for(Map.Entry<String, String> a :
+            createElogAttributes(activeCheckList, systemAffected).entrySet())
         {
-            commandDebug += "\"" + commandFinal[i] + "\"" + " ";
+            command.add("-a");
+            command.add(a.getKey() + "=" + a.getValue());
         }
-        logger.debug("ATLOG (elog) command: \"" + commandDebug + "\"");
+        command.add("-m");
+        command.add(messageFile);
         
-        
-        try
+        if(logger.isDebugEnabled())
         {
-            String ls_str = "";
-            Process ls_proc = Runtime.getRuntime().exec(commandFinal); // must be array
+            StringBuilder commandDebug = new StringBuilder(256);
+            for(String c : command)
+            {
+                commandDebug.append('"').append(c).append("\" ");
+            }
+            logger.debug("ATLOG (elog) command: \"" + commandDebug + "\"");
+        }
         
-			// get the command output
-			InputStreamReader isr = new InputStreamReader(ls_proc.getInputStream());
-	        BufferedReader ls_in = new BufferedReader(isr);
-	        
-	        logger.warn("Getting elog inserting command output ...");
-	        try
-	        {
-	        	while((ls_str = ls_in.readLine()) != null)
-	        	{
-	        		logger.warn(ls_str);
-	            }
-	        }
-	        catch(IOException ioe)
-	        {
-	        	logger.error("Error getting elog command output, reason: " +
-	        			     ioe.getMessage());
-	        }
-	        finally
-	        {
-	        	ls_in.close();
-	        	isr.close();
-	        }
-	        
-	        logger.warn("Executing elog inserting command finished.");
-		}
-	    catch(IOException ioe)
-	    {
-	    	String m = "Error executing elog inserting command, reason: " +
-	    	            ioe.getMessage();
-	    	logger.error(m);	    	
-			JOptionPane.showMessageDialog(null, m, "CheckList elog error",
-					                      JOptionPane.ERROR_MESSAGE);    
-	    }
+        return command.toArray(new String[command.size()]);
 
-	} // submitIntoATLog() --------------------------------------------------
+	} // createElogCommand() ------------------------------------------------
 		
 	
 	
@@ -408,14 +731,133 @@ public final class CheckList
 		String fullPath = checkListsPath + System.getProperty("file.separator") +
 		                  checkListFile;
 		
-		XMLParser parser = new XMLParser(fullPath);
-		parser.parse(); // throws CheckListException
-		store = parser.getCheckListStore();		
+		if(! standAlone)
+		{
+		    // invoked from RunCom, shared engine caches parsed checklists
+		    CheckListEngine engine = CheckListEngine.getInstance();
+		    store = new CheckListStore(engine.load(fullPath)); // throws CheckListException
+		    logger.debug("CheckList engine " + engine.getStatistics());
+		    return;
+		}
+		
+		loadCategories();
+		
+		if(lazy)
+		{
+		    // menu is built from the index, checklists are loaded on demand
+		    index = new CheckListIndex(fullPath);
+		    store = new CheckListStore();
+		    index.build(store); // throws CheckListException
+		    return;
+		}
+		
+		StoreSnapshot snapshot = null;
+		if(useSnapshot)
+		{
+		    String snapshotFile = StoreSnapshot.getDefaultFileName(fullPath);
+		    snapshot = new StoreSnapshot(snapshotFile);
+		    // null if not available or stale
+		    LinkedHashMap<String, CheckListData> checkLists = snapshot.read();
+		    if(checkLists != null)
+		    {
+		        store = new CheckListStore(checkLists);
+		        return;
+		    }
+		    // files are described before they are parsed
+		    snapshot.stamp(fullPath);
+		}
+		
+		LinkedHashMap<String, CheckListData> checkLists = null;
+		ArrayList<String> sourceFiles = null;
+		if(parallel)
+		{
+		    ParallelLoader loader = new ParallelLoader(fullPath);
+		    checkLists = loader.load(); // throws CheckListException
+		    sourceFiles = loader.getSourceFiles();
+		}
+		else
+		{
+		    CheckListSource parser =
+		        ParserEngine.getDefault().createSource(fullPath);
+		    parser.parse(); // throws CheckListException
+		    checkLists = parser.getCheckListStore();
+		    sourceFiles = parser.getSourceFiles();
+		}
+		store = new CheckListStore(checkLists);
+		
+		if(snapshot != null)
+		{
+		    snapshot.write(checkLists, sourceFiles);
+		}
 		
 	} // initialize() -------------------------------------------------------
 	
 	
 	
+	/**
+	 * Sets the categories used by the menu bar from the categories file
+	 * (given or the default one if it exists), built-in categories are
+	 * used otherwise.
+	 */
+	private void loadCategories() throws CheckListException
+	{
+	    String fileName = categoriesFile;
+	    if(fileName == null)
+	    {
+	        File f = new File(checkListsPath, CategoryIndex.DEFAULT_FILE_NAME);
+	        if(! f.isFile())
+	        {
+	            logger.debug("No categories file, using built-in categories.");
+	            return;
+	        }
+	        fileName = f.getPath();
+	    }
+	    CategoryIndex.setDefault(CategoryIndex.load(fileName));
+	    
+	} // loadCategories() ---------------------------------------------------
+	
+	
+	
+	/**
+	 * True if the option (short or long form) is among the command line
+	 * arguments, used before the arguments are processed.
+	 */
+	private static boolean hasOption(String[] args, String shortOpt,
+	                                 String longOpt)
+	{
+	    for(String a : args)
+	    {
+	        if(a.equals(shortOpt) || a.equals(longOpt))
+	        {
+	            return true;
+	        }
+	    }
+	    return false;
+	    
+	} // hasOption() --------------------------------------------------------
+	
+	
+	
+	/**
+	 * Only fatal messages are logged, also the logging initialisation
+	 * message is not (it has lower severity).
+	 */
+	private static void silenceLogging()
+	{
+	    try
+	    {
+	        MyLogger.initialize(new String[] { "FATAL" });
+	    }
+	    catch(Exception ex)
+	    {
+	        System.err.println("Could not initialise logging: " +
+	                           ex.getMessage());
+	    }
+	    
+	} // silenceLogging() ---------------------------------------------------
+	
+	
+	
 	/**
 	 * @param args
 	 */
@@ -425,6 +867,19 @@ public final class CheckList
 		// create instance of CheckList, true - stand alone application
 		// i.e. it's not called from within the RunCom application		
 		CheckList instance = new CheckList(true);
+		
+		// the validation report (JSON) is the only output on stdout, it
+		// has to be set up before the options are processed - the first
+		// logger used initialises logging to the current System.out
+		PrintStream stdout = System.out;
+		if(hasOption(args, "-v", "--validate"))
+		{
+		    System.setOut(System.err);
+		    if(! hasOption(args, "-d", "--debug"))
+		    {
+		        silenceLogging();
+		    }
+		}
 
 		try
 		{
@@ -433,10 +888,26 @@ public final class CheckList
 		catch(CheckListException cle)
 		{
 			// cle.printStackTrace();
-			System.out.println(cle.getMessage());
+			System.err.println(cle.getMessage());
 			System.exit(1);
 		}
 		
+		if(instance.validateDir != null)
+		{
+		    CheckListValidator validator =
+		        new CheckListValidator(instance.validateDir);
+		    try
+		    {
+		        int failures = validator.validate(stdout);
+		        System.exit(failures == 0 ? 0 : 1);
+		    }
+		    catch(CheckListException cle)
+		    {
+		        System.err.println(cle.getMessage());
+		        System.exit(2);
+		    }
+		}
+		
 		try
 		{
 			instance.initialize();
@@ -448,16 +919,38 @@ public final class CheckList
 			logger.error("Could not start CheckList, exit.");
 			System.exit(1);
 		}
+		
+		// submissions left unsent by previous runs
+		ElogSubmitter.getInstance().replay();
 
 		
 		// use checkListFile to display checklist (if it is the main
 		// checklist CheckList.xml (default value, no --show <file> was
 		// specified, then the CheckList window will be empty and user can
 		// select from menu which checklist to bring up		
+        if(instance.watch)
+        {
+            String fullPath = instance.checkListsPath +
+                              System.getProperty("file.separator") +
+                              instance.checkListFile;
+            instance.reloader = new CheckListReloader(fullPath, instance.store,
+                                                      instance.index);
+            try
+            {
+                instance.reloader.start();
+            }
+            catch(CheckListException cle)
+            {
+                logger.error(cle.getMessage());
+                instance.reloader = null;
+            }
+        }
+		
         try
         {
             CheckListGUI.createAndShowGUI(instance.standAlone,
-            		                      instance.store, null, null);
+            		                      instance.store, instance.index,
+            		                      instance.reloader, null, null);
         }
         catch(CheckListException cle)
         {
@@ -1,6 +1,7 @@
 package checklist;
 
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 
 
 /**
@@ -30,26 +31,52 @@ import java.util.ArrayList;
  * 
  * headerOnly default value is false - instruction is not by default just 
  * header which doesn't have to be fulfilled
+ * 
+ * The instructions are kept in parallel arrays (one element per
+ * instruction) and a BitSet of headerOnly flags rather than as one object
+ * per instruction. Parsers add the instructions and elog systems and then
+ * freeze() the checklist, it can't be modified afterwards. The arrays
+ * returned by the getters are not copied, they must not be modified, the
+ * headerOnly flags are only available per instruction (isHeaderOnly()).
  *    
  * @author Zdenek Maxa
  *
  */
 public final class CheckListData
 {
-    // title (name) of the checklist
+	// initial capacity of the instruction arrays while adding
+	private static final int INITIAL_CAPACITY = 16;
+	
+	private static final String[] NO_SYSTEMS = new String[0];
+	
+	
+	// title (name) of the checklist
 	private String title = null;
 	
-	// iterating returns items in the insertion order (ArrayList feature)
-	private ArrayList<Instruction> instructions = null;
-	private ArrayList<String> elogAffectedSystems = null;
+	// number of instructions, the arrays are trimmed to this size by freeze()
+	private int size = 0;
+	
+	// instruction i is texts[i], comments[i], helpUrls[i], headerOnly.get(i)
+	private String[] texts = null;
+	private String[] comments = null;
+	private String[] helpUrls = null;
+	private BitSet headerOnly = null;
+	
+	// in the insertion order, returned as it is by getElogAffectedSystem()
+	private String[] elogAffectedSystems = NO_SYSTEMS;
+	
+	// set by freeze(), no instructions / systems can be added afterwards
+	private boolean frozen = false;
 	
 	
 	
 	public CheckListData(String title)
 	{
 		this.title = title;
-		this.instructions = new ArrayList<Instruction>();
-		this.elogAffectedSystems = new ArrayList<String>();
+		this.texts = new String[INITIAL_CAPACITY];
+		this.comments = new String[INITIAL_CAPACITY];
+		this.helpUrls = new String[INITIAL_CAPACITY];
+		this.headerOnly = new BitSet();
 						
 	} // CheckListData() ----------------------------------------------------
 	
@@ -63,120 +90,173 @@ public final class CheckListData
 	
 	
 	
-	public void addInstruction(Instruction i)
+	public void addInstruction(String text, String comment, String helpUrl,
+	                           boolean isHeaderOnly)
 	{
-	    this.instructions.add(i);
-
+	    checkNotFrozen();
+	    if(size == texts.length)
+	    {
+	        int capacity = size * 2;
+	        texts = Arrays.copyOf(texts, capacity);
+	        comments = Arrays.copyOf(comments, capacity);
+	        helpUrls = Arrays.copyOf(helpUrls, capacity);
+	    }
+	    texts[size] = text;
+	    comments[size] = comment;
+	    helpUrls[size] = helpUrl;
+	    headerOnly.set(size, isHeaderOnly);
+	    size++;
+	
 	} // addInstruction() ---------------------------------------------------
 	
 	
 	
-	public ArrayList<Instruction> getInstructions()
+	public void addElogAffectedSystem(String newSystemAffected)
 	{
-	    return this.instructions;
+	    checkNotFrozen();
+	    int n = elogAffectedSystems.length;
+	    elogAffectedSystems = Arrays.copyOf(elogAffectedSystems, n + 1);
+	    elogAffectedSystems[n] = newSystemAffected;
 	    
-	} // getInstructions() --------------------------------------------------
-
+	} // elogAffectedSystems ------------------------------------------------
 	
 	
-	public void addElogAffectedSystem(String newSystemAffected)
+	
+	/**
+	 * Trims the arrays to the number of instructions, the checklist can't
+	 * be modified afterwards.
+	 */
+	public void freeze()
 	{
-	    this.elogAffectedSystems.add(newSystemAffected);
+	    if(frozen)
+	    {
+	        return;
+	    }
+	    texts = Arrays.copyOf(texts, size);
+	    comments = Arrays.copyOf(comments, size);
+	    helpUrls = Arrays.copyOf(helpUrls, size);
+	    frozen = true;
 	    
-	} // elogAffectedSystems ------------------------------------------------
+	} // freeze() -----------------------------------------------------------
 	
 	
 	
-	public String[] getElogAffectedSystem()
+	private void checkNotFrozen()
 	{
+	    if(frozen)
+	    {
+	        throw new IllegalStateException("Checklist \"" + title + "\" " +
+	                                        "is frozen, can't be modified.");
+	    }
 	    
-	    String[] r = null;
-	    if(! this.elogAffectedSystems.isEmpty())
+	} // checkNotFrozen() ---------------------------------------------------
+	
+	
+	
+	public String getText(int i)
+	{
+	    return texts[checkIndex(i)];
+	}
+	
+	
+	public String getComment(int i)
+	{
+	    return comments[checkIndex(i)];
+	}
+	
+	
+	public String getHelpUrl(int i)
+	{
+	    return helpUrls[checkIndex(i)];
+	}
+	
+	
+	/**
+	 * Instruction text is meant as only header in the table, it will
+	 * appear checked by default.
+	 */
+	public boolean isHeaderOnly(int i)
+	{
+	    return headerOnly.get(checkIndex(i));
+	}
+	
+	
+	
+	private int checkIndex(int i)
+	{
+	    // arrays may be longer than size before freeze()
+	    if(i < 0 || i >= size)
 	    {
-	        r = new String[this.elogAffectedSystems.size()];
-	        r = (String[]) this.elogAffectedSystems.toArray(r);    
+	        throw new IndexOutOfBoundsException("Instruction index: " + i +
+	                                            " size: " + size);
 	    }
-	    return r;
+	    return i;
+	    
+	} // checkIndex() -------------------------------------------------------
+	
+	
+	
+	/**
+	 * Returns null if there are no elog systems. The returned array is
+	 * shared, must not be modified.
+	 */
+	public String[] getElogAffectedSystem()
+	{
+	    return elogAffectedSystems.length == 0 ? null : elogAffectedSystems;
 	    
 	} // getElogAffectedSystem() --------------------------------------------
 	
 	
 	
+	/**
+	 * True if the other checklist has the same title, instructions
+	 * (texts, comments, help URLs, headerOnly flags) and elog systems.
+	 */
+	public boolean hasSameContent(CheckListData other)
+	{
+	    if(other == this)
+	    {
+	        return true;
+	    }
+	    if(other == null || ! title.equals(other.title) ||
+	       size != other.size || ! headerOnly.equals(other.headerOnly) ||
+	       ! Arrays.equals(elogAffectedSystems, other.elogAffectedSystems))
+	    {
+	        return false;
+	    }
+	    // arrays may be longer than size before freeze()
+	    for(int i = 0; i < size; i++)
+	    {
+	        if(! equal(texts[i], other.texts[i]) ||
+	           ! equal(comments[i], other.comments[i]) ||
+	           ! equal(helpUrls[i], other.helpUrls[i]))
+	        {
+	            return false;
+	        }
+	    }
+	    return true;
+	    
+	} // hasSameContent() ---------------------------------------------------
+	
+	
+	
+	private static boolean equal(String a, String b)
+	{
+	    return a == null ? b == null : a.equals(b);
+	}
+	
+	
+	
 	/**
 	 * Size means number of instructions in this checklist data instance.
 	 * @return
 	 */
 	public int size()
 	{
-	    return this.instructions.size();
+	    return this.size;
 	    
 	} // size() -------------------------------------------------------------
 	
 	
-
+	
 } // CheckListData ==========================================================
-
-
-
-/**
- * Structure of the <instruction> element.
- */
-final class Instruction
-{
-    // preset instruction comment
-    private String comment = null;
-    // help URL link
-    private String helpUrl = null;
-    // indicates if the instruction text is meant as only header in the table,
-    // it will appear checked by default
-    private boolean headerOnly = false;
-    // the text of the instruction
-    private String text = null;
-    
-    
-    public String getComment()
-    {
-        return comment;
-    }
-    
-    public void setComment(String comment)
-    {
-        this.comment = comment;
-    }
-    
-    public String getHelpUrl()
-    {
-        return helpUrl;
-    }
-    
-    
-    public void setHelpUrl(String helpUrl)
-    {
-        this.helpUrl = helpUrl;
-    }
-    
-    
-    public boolean isHeaderOnly()
-    {
-        return headerOnly;
-    }
-    
-    
-    public void setHeaderOnly(boolean headerOnly)
-    {
-        this.headerOnly = headerOnly;
-    }
-    
-    
-    public String getText()
-    {
-        return text;
-    }
-    
-    
-    public void setText(String text)
-    {
-        this.text = text;
-    }
-
-} // class Instruction ======================================================
\ No newline at end of file
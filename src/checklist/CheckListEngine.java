@@ -0,0 +1,378 @@
+package checklist;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+
+import org.xml.sax.SAXException;
+
+import mylogger.MyLogger;
+
+
+
+/**
+ * Process-wide CheckList engine used when CheckList is invoked from RunCom.
+ * RunCom opens checklist windows many times per shift, each of which used
+ * to parse the requested XML checklist file again. The engine keeps a pool
+ * of SAX parsers and a LRU cache of parsed checklist files (key is the file
+ * name, entry is valid as long as size and modification time of the file
+ * and of all files it includes via external entities are the same) so
+ * that repeated invocations don't have to read and parse the file.
+ *
+ * RunCom may warm the engine up (CheckList.warmUp()) with the checklists
+ * it is going to show.
+ *
+ * @author Zdenek Maxa
+ *
+ */
+public final class CheckListEngine
+{
+    private static MyLogger logger = MyLogger.getLogger(CheckListEngine.class);
+
+    private static final int DEFAULT_CACHE_SIZE = 64;
+
+    private static final int MAX_POOLED_PARSERS = 4;
+
+    // coarsest resolution of file modification times (FAT: 2 s)
+    private static final long MTIME_RESOLUTION = 2000;
+
+    private static CheckListEngine instance = new CheckListEngine();
+
+
+    // cache of parsed checklist files, in access order (LRU)
+    private LinkedHashMap<String, CacheEntry> cache = null;
+
+    private int cacheSize = DEFAULT_CACHE_SIZE;
+
+    // SAX parsers ready to be reused
+    private LinkedList<SAXParser> parserPool = null;
+
+    private AtomicLong hits = new AtomicLong();
+    private AtomicLong misses = new AtomicLong();
+    private AtomicLong evictions = new AtomicLong();
+
+
+
+
+    @SuppressWarnings("serial")
+    private CheckListEngine()
+    {
+        parserPool = new LinkedList<SAXParser>();
+        cache = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true)
+        {
+            protected boolean removeEldestEntry(Map.Entry<String,
+                                                CacheEntry> eldest)
+            {
+                if(size() > cacheSize)
+                {
+                    evictions.incrementAndGet();
+                    logger.debug("Checklist \"" + eldest.getKey() + "\" " +
+                                 "evicted from the engine cache.");
+                    return true;
+                }
+                return false;
+            }
+        };
+
+    } // CheckListEngine() --------------------------------------------------
+
+
+
+    public static CheckListEngine getInstance()
+    {
+        return instance;
+
+    } // getInstance() ------------------------------------------------------
+
+
+
+    /**
+     * Parses (if not already cached) given XML checklist files.
+     * Failing files are logged and skipped.
+     */
+    public void warmUp(String[] xmlFileNames)
+    {
+        for(String f : xmlFileNames)
+        {
+            try
+            {
+                load(f);
+            }
+            catch(CheckListException cle)
+            {
+                logger.warn("Warming up \"" + f + "\" failed, reason: " +
+                            cle.getMessage());
+            }
+        }
+        logger.info("CheckList engine warmed up, " + getStatistics());
+
+    } // warmUp() -----------------------------------------------------------
+
+
+
+    /**
+     * Returns checklist store of the XML file xmlFileName, from the cache
+     * if neither the file nor the files it includes have been modified
+     * since it was parsed. The returned store is a new instance, the
+     * checklist data in it are shared.
+     */
+    public LinkedHashMap<String, CheckListData> load(String xmlFileName)
+                                   throws CheckListException
+    {
+        CacheEntry cached = null;
+        synchronized(cache)
+        {
+            cached = cache.get(xmlFileName);
+        }
+        // the files are checked without holding the lock
+        if(cached != null && cached.verified && cached.isUnchanged())
+        {
+            hits.incrementAndGet();
+            logger.debug("Engine cache hit: \"" + xmlFileName + "\"");
+            return new LinkedHashMap<String, CheckListData>(cached.store);
+        }
+
+        misses.incrementAndGet();
+        logger.debug("Engine cache miss: \"" + xmlFileName + "\"");
+
+        // files are described before parsing - the files of the previous
+        // parsing if there was one, the file itself otherwise
+        long start = System.currentTimeMillis();
+        List<String> known = cached != null ? Arrays.asList(cached.files) :
+                             Collections.singletonList(xmlFileName);
+        CacheEntry before = new CacheEntry(known);
+
+        CheckListSource parser = null;
+        if(ParserEngine.getDefault() == ParserEngine.SAX)
+        {
+            SAXParser saxParser = borrowParser();
+            parser = new XMLParser(xmlFileName, saxParser);
+            try
+            {
+                parser.parse(); // throws CheckListException
+            }
+            finally
+            {
+                returnParser(saxParser);
+            }
+        }
+        else
+        {
+            // other engines have their own (shared) factories
+            parser = ParserEngine.getDefault().createSource(xmlFileName);
+            parser.parse(); // throws CheckListException
+        }
+
+        CacheEntry entry = new CacheEntry(parser.getSourceFiles());
+        entry.store = parser.getCheckListStore();
+        entry.verified = entry.isUnmodifiedSince(before, start);
+        if(! entry.verified)
+        {
+            // possibly modified while being parsed, parsed again next time,
+            // the entry is kept only for its list of files
+            logger.debug("\"" + xmlFileName + "\" or a file it includes " +
+                         "modified while parsed, not cached.");
+        }
+        synchronized(cache)
+        {
+            cache.put(xmlFileName, entry);
+        }
+
+        return new LinkedHashMap<String, CheckListData>(entry.store);
+
+    } // load() -------------------------------------------------------------
+
+
+
+    private SAXParser borrowParser() throws CheckListException
+    {
+        synchronized(parserPool)
+        {
+            if(! parserPool.isEmpty())
+            {
+                return parserPool.removeFirst();
+            }
+        }
+
+        try
+        {
+            return XMLParser.createSAXParser();
+        }
+        catch(ParserConfigurationException pce)
+        {
+            String m = "Parser initialisation failed: " + pce.getMessage();
+            throw new CheckListException(m);
+        }
+        catch(SAXException se)
+        {
+            String m = "Parser initialisation failed: " + se.getMessage();
+            throw new CheckListException(m);
+        }
+
+    } // borrowParser() -----------------------------------------------------
+
+
+
+    private void returnParser(SAXParser saxParser)
+    {
+        // the parser may be in any state after a failed parsing
+        try
+        {
+            saxParser.reset();
+        }
+        catch(UnsupportedOperationException uoe)
+        {
+            return;
+        }
+
+        synchronized(parserPool)
+        {
+            if(parserPool.size() < MAX_POOLED_PARSERS)
+            {
+                parserPool.addFirst(saxParser);
+            }
+        }
+
+    } // returnParser() -----------------------------------------------------
+
+
+
+    public void setCacheSize(int cacheSize)
+    {
+        synchronized(cache)
+        {
+            this.cacheSize = cacheSize;
+        }
+
+    } // setCacheSize() -----------------------------------------------------
+
+
+
+    public void clear()
+    {
+        synchronized(cache)
+        {
+            cache.clear();
+        }
+
+    } // clear() ------------------------------------------------------------
+
+
+
+    public long getHits()
+    {
+        return hits.get();
+    }
+
+
+    public long getMisses()
+    {
+        return misses.get();
+    }
+
+
+    public long getEvictions()
+    {
+        return evictions.get();
+    }
+
+
+
+    public String getStatistics()
+    {
+        int size = 0;
+        synchronized(cache)
+        {
+            size = cache.size();
+        }
+        return "cached checklist files: " + size + " hits: " + getHits() +
+               " misses: " + getMisses() + " evictions: " + getEvictions() +
+               ", " + EntityCache.getInstance().getStatistics();
+
+    } // getStatistics() ----------------------------------------------------
+
+
+
+    /**
+     * Parsed checklist file and size and modification time of the files
+     * it was parsed from (the file itself first). The store of an entry
+     * which is not verified is not used (see isUnmodifiedSince()).
+     */
+    private static final class CacheEntry
+    {
+        String[] files = null;
+        long[] sizes = null;
+        long[] lastModified = null;
+        LinkedHashMap<String, CheckListData> store = null;
+        boolean verified = false;
+
+
+        CacheEntry(List<String> sourceFiles)
+        {
+            int n = sourceFiles.size();
+            files = sourceFiles.toArray(new String[n]);
+            sizes = new long[n];
+            lastModified = new long[n];
+            for(int i = 0; i < n; i++)
+            {
+                File f = new File(files[i]);
+                sizes[i] = f.length();
+                lastModified[i] = f.lastModified();
+            }
+        }
+
+
+        boolean isUnchanged()
+        {
+            for(int i = 0; i < files.length; i++)
+            {
+                File f = new File(files[i]);
+                if(f.lastModified() != lastModified[i] ||
+                   f.length() != sizes[i])
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+
+
+        /**
+         * True if none of the files has been modified since before was
+         * taken, files not described by before (first parsing, newly
+         * included) must not have been modified since start.
+         */
+        boolean isUnmodifiedSince(CacheEntry before, long start)
+        {
+            List<String> beforeFiles = Arrays.asList(before.files);
+            for(int i = 0; i < files.length; i++)
+            {
+                int j = beforeFiles.indexOf(files[i]);
+                if(j == -1)
+                {
+                    if(lastModified[i] > start - MTIME_RESOLUTION)
+                    {
+                        return false;
+                    }
+                }
+                else if(lastModified[i] != before.lastModified[j] ||
+                        sizes[i] != before.sizes[j])
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+    } // class CacheEntry ===================================================
+
+} // class CheckListEngine ==================================================
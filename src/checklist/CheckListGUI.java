@@ -1,11 +1,15 @@
 package checklist;
 
-import java.util.LinkedHashMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Set;
 
 import java.awt.event.ActionListener;
 import java.awt.event.ActionEvent;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
 import java.awt.FlowLayout;
 import java.awt.Toolkit;
 import java.awt.Dimension;
@@ -17,9 +21,14 @@ import javax.swing.JMenuBar;
 import javax.swing.JMenuItem;
 import javax.swing.JPanel;
 import javax.swing.JButton;
+import javax.swing.JLabel;
+import javax.swing.JPopupMenu;
+import javax.swing.JTextField;
 import javax.swing.JScrollPane;
 import javax.swing.BoxLayout;
 import javax.swing.SwingUtilities;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 
 import mylogger.MyLogger;
 
@@ -36,7 +45,10 @@ import mylogger.MyLogger;
  *
  */
 @SuppressWarnings("serial")
-public final class CheckListGUI extends JFrame implements ActionListener
+public final class CheckListGUI extends JFrame
+                                implements ActionListener,
+                                           CheckListReloadListener,
+                                           CheckListSwitcherListener
 {
 	private static MyLogger logger = MyLogger.getLogger(CheckListGUI.class);
 	
@@ -45,8 +57,15 @@ public final class CheckListGUI extends JFrame implements ActionListener
 	// reference to the GUI data table (to be able to change it on-the-fly)
 	private DataTable table = null;
 	
+	// prepares the table contents of the selected checklist in background
+	private CheckListSwitcher switcher = null;
+	
 	// data store reference
-	private LinkedHashMap<String, CheckListData> store = null;
+	private CheckListStore store = null;
+	
+	// index of checklists if they are loaded on demand (stand-alone mode
+	// with --lazy), null otherwise
+	private CheckListIndex index = null;
 	
 	// title (name as defined in the XML as title attribute) of the active
 	// checklist
@@ -60,17 +79,36 @@ public final class CheckListGUI extends JFrame implements ActionListener
 	
 	private boolean isStandAlone = false;
 	
+	// milliseconds to wait for ATLOG submissions when exiting
+	private static final long SUBMISSION_DRAIN_TIMEOUT = 300000;
+	
+	// maximum number of quick-find hits offered
+	private static final int MAX_SEARCH_HITS = 15;
+	
+	// index of instructions for the quick-find box (stand-alone mode)
+	private CheckListSearchIndex searchIndex = null;
+	
+	private JTextField searchField = null;
+	
+	private JPopupMenu searchPopup = null;
+	
+	// hits currently offered in searchPopup
+	private ArrayList<CheckListSearchIndex.Hit> searchHits = null;
+	
 
 	
 	
 	
 	private CheckListGUI(boolean standAlone,
-			             LinkedHashMap<String, CheckListData> store,
+			             CheckListStore store,
+			             CheckListIndex index,
+			             CheckListReloader reloader,
 			             String deskNameInRunCom, String checkListFile)
 	{
 		super();
 		
 		this.store = store;
+		this.index = index;
 		this.deskNameInRunCom = deskNameInRunCom;
 		this.isStandAlone = standAlone;
 		this.activeCheckListFileName = checkListFile;
@@ -80,22 +118,41 @@ public final class CheckListGUI extends JFrame implements ActionListener
 		this.addWindowListener(new GUIWindowAdapter(this));
 		
         // stand-alone application has menubar listing all checklists
-		this.setJMenuBar(new MenuBar(this.store, this));
+		// (all known titles if loading lazily, not just loaded ones)
+		CheckListStore.Generation generation = store.snapshot();
+		Set<String> titles = index != null ? index.getTitles() :
+		                                     generation.getTitles();
+		MenuBar menuBar = new MenuBar(titles, this);
+		this.setJMenuBar(menuBar);
+		if(standAlone)
+		{
+		    store.addListener(menuBar);
+		}
 
 		// if there is only one checklist in the store, take its
 		// title and fill in activeCheckListName variable. one checklist
 		// in the store is when CheckList was run with -s <checklist> or
 		// when invoked from RunCom to show a specific checklist, otherwise
 		// active checklist is yet to be selected by the user
-		if(store.keySet().size() == 1)
+		if(generation.size() == 1)
 		{
-		    String t = store.keySet().iterator().next();
+		    String t = generation.getTitles().iterator().next();
 		    logger.info("Only one checklist present in the store, title: \"" +
 		                t + "\"");
 		    this.activeCheckListTitle = t;
 		}
 		
+		if(standAlone)
+		{
+		    createSearchIndex();
+		}
+		
 		createGUI();
+		
+		if(reloader != null)
+		{
+		    reloader.setListener(this);
+		}
         
 	} // CheckListGUI() -----------------------------------------------------
 
@@ -108,11 +165,27 @@ public final class CheckListGUI extends JFrame implements ActionListener
 		JPanel panel = new JPanel();
 		panel.setLayout(new BoxLayout(panel, BoxLayout.Y_AXIS));
 		
+		if(searchIndex != null)
+		{
+		    panel.add(createSearchPanel());
+		}
+		
 		try
 		{
+			// stand-alone mode, ticks and comments of checklists switched
+			// away from are kept
+			SessionStateCache sessions = null;
+			if(this.isStandAlone)
+			{
+			    sessions = new SessionStateCache(SessionStateCache.DEFAULT_DIR,
+			                       SessionStateCache.getDefaultMemoryLimit());
+			}
 			CheckListTableModel model = new CheckListTableModel(this.store,
-			                                  this.activeCheckListTitle);
+			                                  this.activeCheckListTitle,
+			                                  sessions);
 			this.table = new DataTable(model);
+			this.switcher = new CheckListSwitcher(model, this.store,
+			                                      this.index, this);
 	        JScrollPane scrollPane = new JScrollPane(this.table);
 	        panel.add(scrollPane);
 		}
@@ -131,13 +204,11 @@ public final class CheckListGUI extends JFrame implements ActionListener
 		
 		JButton okButton = new JButton("OK");
 		okButton.setActionCommand("OK");
-		okButton.addActionListener(new ButtonListener(this.table,
-		                                              this.store, this));
+		okButton.addActionListener(new ButtonListener(this.table, this));
 		
 		JButton closeButton = new JButton("Close");
 		closeButton.setActionCommand("Close");
-		closeButton.addActionListener(new ButtonListener(this.table,
-		                                                 this.store, this));
+		closeButton.addActionListener(new ButtonListener(this.table, this));
 
 		buttonPanel.add(okButton);
 		buttonPanel.add(closeButton);
@@ -163,6 +234,159 @@ public final class CheckListGUI extends JFrame implements ActionListener
 	
 	
 	
+	/**
+	 * The search index is updated with every store generation, the initial
+	 * index is built in the background not to delay showing the window.
+	 */
+	private void createSearchIndex()
+	{
+	    searchIndex = new CheckListSearchIndex();
+	    store.addListener(searchIndex);
+	    Thread t = new Thread(new Runnable()
+	    {
+	        public void run()
+	        {
+	            if(index != null)
+	            {
+	                // not loaded checklists are found by title at least
+	                searchIndex.indexTitles(index.getTitles());
+	            }
+	            searchIndex.indexAll(store.snapshot());
+	        }
+	    }, "CheckListSearchIndex");
+	    t.setDaemon(true);
+	    t.start();
+	    
+	} // createSearchIndex() ------------------------------------------------
+	
+	
+	
+	private JPanel createSearchPanel()
+	{
+	    JPanel searchPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+	    searchField = new JTextField(30);
+	    searchField.setToolTipText("find checklists and instructions " +
+	                               "containing words starting with ...");
+	    searchPopup = new JPopupMenu();
+	    // typing continues in the search field
+	    searchPopup.setFocusable(false);
+	    
+	    searchField.getDocument().addDocumentListener(new DocumentListener()
+	    {
+	        public void insertUpdate(DocumentEvent e)
+	        {
+	            searchTextChanged();
+	        }
+	        public void removeUpdate(DocumentEvent e)
+	        {
+	            searchTextChanged();
+	        }
+	        public void changedUpdate(DocumentEvent e)
+	        {
+	        }
+	    });
+	    searchField.addKeyListener(new KeyAdapter()
+	    {
+	        public void keyPressed(KeyEvent e)
+	        {
+	            if(e.getKeyCode() == KeyEvent.VK_ENTER &&
+	               searchHits != null && ! searchHits.isEmpty())
+	            {
+	                showSearchHit(searchHits.get(0));
+	            }
+	            else if(e.getKeyCode() == KeyEvent.VK_ESCAPE)
+	            {
+	                searchPopup.setVisible(false);
+	            }
+	        }
+	    });
+	    
+	    searchPanel.add(new JLabel("find:"));
+	    searchPanel.add(searchField);
+	    return searchPanel;
+	    
+	} // createSearchPanel() ------------------------------------------------
+	
+	
+	
+	/**
+	 * Offers hits of the text in the search field in the popup menu.
+	 */
+	private void searchTextChanged()
+	{
+	    searchPopup.setVisible(false);
+	    searchPopup.removeAll();
+	    searchHits = searchIndex.search(searchField.getText(), MAX_SEARCH_HITS);
+	    if(searchHits.isEmpty())
+	    {
+	        return;
+	    }
+	    
+	    CheckListStore.Generation generation = store.snapshot();
+	    for(final CheckListSearchIndex.Hit hit : searchHits)
+	    {
+	        String label = hit.title;
+	        CheckListData data = generation.get(hit.title);
+	        if(hit.row != CheckListSearchIndex.TITLE_ROW && data != null &&
+	           hit.row < data.size())
+	        {
+	            String text = data.getText(hit.row).trim();
+	            if(text.length() > 60)
+	            {
+	                text = text.substring(0, 60) + " ...";
+	            }
+	            label += " #" + (hit.row + 1) + ": " + text;
+	        }
+	        JMenuItem item = new JMenuItem(label);
+	        item.addActionListener(new ActionListener()
+	        {
+	            public void actionPerformed(ActionEvent e)
+	            {
+	                showSearchHit(hit);
+	            }
+	        });
+	        searchPopup.add(item);
+	    }
+	    searchPopup.show(searchField, 0, searchField.getHeight());
+	    
+	} // searchTextChanged() ------------------------------------------------
+	
+	
+	
+	/**
+	 * Displays the checklist of the hit and selects the instruction row.
+	 */
+	private void showSearchHit(CheckListSearchIndex.Hit hit)
+	{
+	    searchPopup.setVisible(false);
+	    Runnable showRow = null;
+	    if(hit.row != CheckListSearchIndex.TITLE_ROW)
+	    {
+	        final int row = hit.row;
+	        showRow = new Runnable()
+	        {
+	            public void run()
+	            {
+	                table.showRow(row);
+	            }
+	        };
+	    }
+	    if(! hit.title.equals(this.activeCheckListTitle) ||
+	       switcher.isSwitching())
+	    {
+	        // the row is shown once the table displays the hit's checklist
+	        this.activeCheckListTitle = hit.title;
+	        switcher.switchTo(hit.title, showRow);
+	    }
+	    else if(showRow != null)
+	    {
+	        showRow.run();
+	    }
+	    
+	} // showSearchHit() ----------------------------------------------------
+	
+	
+	
 	/**
 	 * Gets called when a menu item is selected.
 	 */
@@ -191,10 +415,14 @@ public final class CheckListGUI extends JFrame implements ActionListener
 	 * Call from outside to create GUI instance (always a new one ...)
 	 * @param standAlone
 	 * @param store
+	 * @param index - checklist index if loading lazily, null otherwise
+	 * @param reloader - reloader of modified checklists or null
 	 * @throws CheckListException
 	 */
 	protected static void createAndShowGUI(final boolean standAlone,
-	                   final LinkedHashMap<String, CheckListData> store,
+	                   final CheckListStore store,
+	                   final CheckListIndex index,
+	                   final CheckListReloader reloader,
 	                   final String deskNameInRunCom,
 	                   final String checkListFile)
 	                   throws CheckListException
@@ -207,8 +435,8 @@ public final class CheckListGUI extends JFrame implements ActionListener
             {
                 logger.debug("Calling GUI constructor from " +
                              "event-dispatching thread now ...");
-                new CheckListGUI(standAlone, store, deskNameInRunCom,
-                                checkListFile);
+                new CheckListGUI(standAlone, store, index, reloader,
+                                 deskNameInRunCom, checkListFile);
                 logger.debug("GUI window created, end of event-dispatching thread.");
             }
         });
@@ -226,7 +454,7 @@ public final class CheckListGUI extends JFrame implements ActionListener
 		if(isStandAlone)
 		{
 			logger.warn("Closing the CheckList stand-alone application.");
-			System.exit(0);
+			exitWhenSubmitted();
 		}
 		else
 		{
@@ -237,28 +465,111 @@ public final class CheckListGUI extends JFrame implements ActionListener
 	} // closeCheckList() ---------------------------------------------------
 	
 	
+	
+	/**
+	 * Exits the application once ATLOG submissions still in progress are
+	 * finished (waits at most SUBMISSION_DRAIN_TIMEOUT), the window is
+	 * already closed.
+	 */
+	private static void exitWhenSubmitted()
+	{
+	    final ElogSubmitter submitter = ElogSubmitter.getInstance();
+	    if(submitter.getPending() == 0)
+	    {
+	        System.exit(0);
+	    }
+	    
+	    logger.warn("Waiting for " + submitter.getPending() + " ATLOG " +
+	                "submission(s) to finish before exiting ...");
+	    Thread t = new Thread(new Runnable()
+	    {
+	        public void run()
+	        {
+	            try
+	            {
+	                if(! submitter.awaitIdle(SUBMISSION_DRAIN_TIMEOUT))
+	                {
+	                    logger.error("ATLOG submissions not finished, " +
+	                                 submitter.getStatistics());
+	                }
+	            }
+	            catch(InterruptedException ie)
+	            {
+	                logger.error("Waiting for ATLOG submissions interrupted.");
+	            }
+	            System.exit(0);
+	        }
+	    }, "ElogSubmitterDrain");
+	    t.start();
+	    
+	} // exitWhenSubmitted() ------------------------------------------------
+	
+	
 
 	/**
-	 * Called when another checklist is required to be displayed in the table
+	 * Called when another checklist is required to be displayed in the table,
+	 * the table contents is prepared in background (a newer selection
+	 * cancels this one), checkListShown() is called when the table shows it.
 	 * @param checkListNameToShow
 	 */
 	private void changeDisplayedCheckList(String checkListNameToShow)
 	{
-		try
-		{
-		    CheckListTableModel model = (CheckListTableModel) table.getModel();
-		    model.updateTableContents(checkListNameToShow);
-		    this.setTitle(checkListNameToShow);
-		}
-		catch(CheckListException cle)
-		{
-			logger.debug(cle.getMessage(), cle);
-			logger.error(cle.getMessage());
-			JOptionPane.showMessageDialog(this, cle.getMessage(), "CheckList",
-					                      JOptionPane.ERROR_MESSAGE);
-		}
+	    if(switcher != null)
+	    {
+	        switcher.switchTo(checkListNameToShow, null);
+	    }
 		
 	} // changeDisplayedCheckList() -----------------------------------------
+	
+	
+	
+	/**
+	 * Called by the switcher when the table shows the selected checklist.
+	 */
+	public void checkListShown(String title)
+	{
+	    this.setTitle(title);
+	    
+	} // checkListShown() ---------------------------------------------------
+	
+	
+	
+	/**
+	 * Called by the switcher when the selected checklist couldn't be
+	 * displayed (the table keeps the previous one).
+	 */
+	public void checkListSwitchFailed(String title, CheckListException cle)
+	{
+		logger.debug(cle.getMessage(), cle);
+		logger.error(cle.getMessage());
+		JOptionPane.showMessageDialog(this, cle.getMessage(), "CheckList",
+				                      JOptionPane.ERROR_MESSAGE);
+		
+	} // checkListSwitchFailed() --------------------------------------------
+
+	
+	
+	/**
+	 * Called (on the event-dispatching thread) when checklists were
+	 * reloaded from modified files, the displayed one is updated.
+	 */
+	public void checkListsReloaded(Set<String> titles)
+	{
+	    if(this.store == null || ! titles.contains(this.activeCheckListTitle))
+	    {
+	        return;
+	    }
+	    
+	    logger.info("Displayed checklist \"" + this.activeCheckListTitle +
+	                "\" was reloaded, updating.");
+	    // comment being edited has to get into the model first to be kept
+	    if(table.isEditing())
+	    {
+	        table.getCellEditor().stopCellEditing();
+	    }
+	    this.changeDisplayedCheckList(this.activeCheckListTitle);
+	    
+	} // checkListsReloaded() -----------------------------------------------
 
 
 	
@@ -301,31 +612,39 @@ public final class CheckListGUI extends JFrame implements ActionListener
 
 /**
  * Class MenuBar - menu bar for a stand alone CheckList application.
- * There three menus offering checklists according to category:
- * 1) desk checklists 2) shifter checklists and 3) other checklists
- * desk and shifter checklists are distinguished by
- * "signin-" or "DQcheck-" checklists title prefix.
- * @return
+ * Checklists are offered in menus according to category (title prefix,
+ * see CategoryIndex), checklists in no category are in the last menu
+ * ("other checklists").
+ * Checklists added to the store later are added to the menus (the menu
+ * bar listens to the store), each item is added on its own without
+ * rebuilding the menus. Checklists are never removed from the store.
  */
 @SuppressWarnings("serial")
-class MenuBar extends JMenuBar
+class MenuBar extends JMenuBar implements CheckListStoreListener
 {
 	
 	// reference to the GUI window which acts as listener for menu items (its
 	// actionPerformed() method is called when a menu item is selected)
 	private CheckListGUI menuBarListener = null;
 	
+	private CategoryIndex categories = null;
+	
+	// menu of each category, the last one is for checklists in no category
+	private JMenu[] categoryMenus = null;
+	
+	// menu items of the checklists, key: checklist title
+	private HashMap<String, JMenuItem> items = new HashMap<String, JMenuItem>();
+	
 	
 
-	public MenuBar(LinkedHashMap<String, CheckListData> store,
-			       CheckListGUI menuBarListener)
+	public MenuBar(Set<String> titles, CheckListGUI menuBarListener)
 	{
 		this.menuBarListener = menuBarListener;
 		
 		// stand alone application has all checklists choices in menubar 
 		if(this.menuBarListener.isStandAlone())
 		{
-		    createCheckListMenuBar(store);
+		    createCheckListMenuBar(titles);
 		}
 		
         // add debug menu bar item, regardless whether running stand-along or not
@@ -342,67 +661,83 @@ class MenuBar extends JMenuBar
 	
 	
 	
-	private void createCheckListMenuBar(LinkedHashMap<String, CheckListData> store)
+	private void createCheckListMenuBar(Set<String> titles)
 	{
+	    categories = CategoryIndex.getDefault();
 	    
-	    JMenuItem menuItem = null;
-	    
-        JMenu menusignIn = new JMenu("signin-checklists");
-        JMenu menuDQCheck = new JMenu("DQcheck-checklists");
-        JMenu menuInjection = new JMenu("injection-checklists");
-        JMenu menuStableBeam = new JMenu("stablebeam-checklists");
-        JMenu menuStartRun = new JMenu("startrun-checklists");
-        
-        JMenu menuOther = new JMenu("other checklists");
-        
+	    int count = categories.getCategoryCount();
+	    categoryMenus = new JMenu[count + 1];
+	    for(int i = 0; i < count; i++)
+	    {
+	        categoryMenus[i] = new JMenu(categories.getLabel(i));
+	    }
+	    categoryMenus[count] =
+	        new JMenu(categories.getLabel(CategoryIndex.NO_CATEGORY));
         
         // here the insertion order into store matters (if menu items
         // are to appear in the same order as defined in the main checklist)
-        for(String key : store.keySet())
+        for(String title : titles)
         {
-            // key - title of the checkList, key into HashMap store
-            menuItem = new JMenuItem(key);
-            menuItem.setActionCommand(key);
-            menuItem.addActionListener(this.menuBarListener);
-            
-            // sorting to three subsections of checklists according to checklist
-            // title prefix
-            if(key.startsWith("signin-"))
-            {
-                menusignIn.add(menuItem);
-            }
-            else if(key.startsWith("DQcheck-"))
-            {
-                menuDQCheck.add(menuItem);
-            }            
-            else if(key.startsWith("injection-"))
-            {
-                menuInjection.add(menuItem);
-            }
-            else if(key.startsWith("stablebeam-"))
-            {
-                menuStableBeam.add(menuItem);
-            }
-            else if(key.startsWith("startrun-"))
-            {
-                menuStartRun.add(menuItem);
-            }
-            else
-            {
-                menuOther.add(menuItem);
-            }
-        } // for - iterating over all checklists
+            addCheckList(title);
+        }
 
-        this.add(menusignIn);
-        this.add(menuDQCheck);
-        this.add(menuInjection);
-        this.add(menuStableBeam);
-        this.add(menuStartRun);
-        
-        this.add(menuOther);
+        for(JMenu menu : categoryMenus)
+        {
+            this.add(menu);
+        }
 
 	} // createCheckListMenuBar() -------------------------------------------
 	
+	
+	
+	/**
+	 * Adds menu item of the checklist (at the end of its category menu)
+	 * unless it's already offered.
+	 */
+	void addCheckList(String title)
+	{
+	    if(categoryMenus == null || items.containsKey(title))
+	    {
+	        return;
+	    }
+	    
+	    // title of the checkList, key into the store
+	    JMenuItem menuItem = new JMenuItem(title);
+	    menuItem.setActionCommand(title);
+	    menuItem.addActionListener(this.menuBarListener);
+	    items.put(title, menuItem);
+	    
+	    int category = categories.getCategory(title);
+	    if(category == CategoryIndex.NO_CATEGORY)
+	    {
+	        category = categoryMenus.length - 1;
+	    }
+	    categoryMenus[category].add(menuItem);
+	    
+	} // addCheckList() -----------------------------------------------------
+	
+	
+	
+	/**
+	 * Called on the thread publishing the store generation, new checklists
+	 * are added to the menus on the event-dispatching thread.
+	 */
+	public void checkListsPublished(CheckListStore.Generation generation,
+	                                final Set<String> titles)
+	{
+	    SwingUtilities.invokeLater(new Runnable()
+	    {
+	        public void run()
+	        {
+	            for(String title : titles)
+	            {
+	                addCheckList(title);
+	            }
+	        }
+	    });
+	    
+	} // checkListsPublished() ----------------------------------------------
+	
 } // class MenuBar ==========================================================
 
 
@@ -439,28 +774,19 @@ class ButtonListener implements ActionListener
 {
 	private static MyLogger logger = MyLogger.getLogger(ButtonListener.class);
 	
-	// operating systems dependent line separator
-	private static final String LS = System.getProperty("line.separator");
-	
 	// reference to the data table
 	private DataTable table = null;
 	
-	// data store reference
-	private LinkedHashMap<String, CheckListData> store = null;
-	
 	// reference to the GUI
 	private CheckListGUI gui = null;
 	
 	
 	
 	
-	public ButtonListener(DataTable table,
-			              LinkedHashMap<String, CheckListData> store,
-			              CheckListGUI gui)
+	public ButtonListener(DataTable table, CheckListGUI gui)
 	{
 		super();
 		this.table = table;
-		this.store = store;
 		this.gui = gui;
 		
 	} // ButtonListener() ---------------------------------------------------
@@ -474,8 +800,13 @@ class ButtonListener implements ActionListener
 		             gui.getActiveCheckListTitle() + "\" file name: \"" +
 		             gui.getActiveCheckListFileName() + "\"");
 		
+		// the checklist data the displayed rows were created from (the
+		// store may have a newer version of the checklist meanwhile)
+		CheckListTableModel model = (CheckListTableModel) table.getModel();
+		CheckListData currentData = model.getActiveCheckListData();
+		
 		// too paranoid ...
-		if(! store.containsKey(gui.getActiveCheckListTitle()))
+		if(currentData == null)
 		{
 			logger.error("Requested checklist \"" +
 			              gui.getActiveCheckListTitle() + "\" " +
@@ -483,8 +814,6 @@ class ButtonListener implements ActionListener
 			return;
 		}
 		
-		CheckListData currentData = store.get(gui.getActiveCheckListTitle());
-		
 		if(currentData.size() > 0)
 		{
 		    processCompletedCheckList(currentData);
@@ -539,33 +868,15 @@ class ButtonListener implements ActionListener
         
         // first confirmation dialog confirmed - OK was pressed 
         
-        // construct message for ATLOG ELog: loop over all instructions
-        // and get checklist checkbox status and comments
-        StringBuffer msg = new StringBuffer(LS); // final message for elog
-        int untickedCheckBoxCounter = 0;
-        for(int i = 0; i < currentData.size(); i++)
-        {
-            // loop over all instructions
-            Boolean checkBoxValue = (Boolean) table.getValueAt(i, 1);
-            if(checkBoxValue.booleanValue())
-            {
-                // this checklist instruction check box is ticked
-                msg.append("OK: " + LS +
-                           table.getValueAt(i, 0).toString() +
-                           LS + "COMMENT: " +
-                           table.getValueAt(i, 2).toString());
-            }
-            else
-            {
-                // this checklist instruction check box is not ticked
-                msg.append("FAILED: " + LS +
-                           table.getValueAt(i, 0).toString() +
-                           LS + "COMMENT: "  +
-                           table.getValueAt(i, 2).toString());
-                untickedCheckBoxCounter++;
-            }
-            msg.append(LS + LS);
-        } // for loop all instructions
+        // construct message for ATLOG ELog from a snapshot of the
+        // checklist checkbox status and comments of all instructions
+        CheckListTableModel model = (CheckListTableModel) table.getModel();
+        CheckListResult result = CheckListResult.snapshot(
+                                     currentData.getTitle(),
+                                     currentData.getElogAffectedSystem(),
+                                     model.getRows());
+        String msg = ResultFormat.getDefault().render(result);
+        int untickedCheckBoxCounter = result.getFailedCount();
         
         
         if(untickedCheckBoxCounter == 0)
@@ -605,9 +916,8 @@ class ButtonListener implements ActionListener
             if(atlog == JOptionPane.YES_OPTION)
             {
                 // insert log into ATLOG
-                CheckList.submitIntoATLog(msg.toString(),
-                                          gui.getActiveCheckListTitle(),
-                                          currentData.getElogAffectedSystem());
+                CheckList.submitIntoATLog(msg, result.getTitle(),
+                                          result.getElogAffectedSystem());
             }
              
             // finally, closing the application / window
@@ -629,9 +939,8 @@ class ButtonListener implements ActionListener
             if(incomplete == JOptionPane.YES_OPTION)
             {
                 // insert log into ATLOG
-                CheckList.submitIntoATLog(msg.toString(),
-                                          gui.getActiveCheckListTitle(),
-                                          currentData.getElogAffectedSystem());
+                CheckList.submitIntoATLog(msg, result.getTitle(),
+                                          result.getElogAffectedSystem());
             }
              
             // finally, closing the application / window
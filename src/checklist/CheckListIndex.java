@@ -0,0 +1,344 @@
+package checklist;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Set;
+
+import mylogger.MyLogger;
+
+
+
+/**
+ * Index of checklists of the main XML checklist file (CheckList.xml) for
+ * lazy loading in the stand-alone mode. Building the index doesn't parse
+ * the included checklist files, only their text is scanned for the
+ * <checklist title="..."> start tags, the index records for each title
+ * the file the checklist comes from. The stand-alone menu is built from
+ * the index titles.
+ *
+ * The checklist data are parsed on demand (load()) when the checklist is
+ * displayed for the first time, the whole file containing the checklist
+ * is parsed (without the DTD of the main file, the parsers don't depend
+ * on it) and all its checklists are put into the store, i.e. they are
+ * kept and never parsed again.
+ *
+ * Checklists defined directly in the main file are parsed when building
+ * the index (the main file is parsed anyway, included files are skipped).
+ *
+ * @author Zdenek Maxa
+ *
+ */
+final class CheckListIndex
+{
+    private static MyLogger logger = MyLogger.getLogger(CheckListIndex.class);
+
+    // main XML file
+    private String xmlFileName = null;
+
+    // key: checklist title, insertion order as in the main file (same
+    // as if the main file was parsed by XMLParser)
+    private LinkedHashMap<String, IndexEntry> entries = null;
+
+    // files of the main file (see getSourceFiles())
+    private ArrayList<String> sourceFiles = null;
+
+
+
+
+    public CheckListIndex(String xmlFileName)
+    {
+        this.xmlFileName = xmlFileName;
+        this.entries = new LinkedHashMap<String, IndexEntry>();
+
+    } // CheckListIndex() ---------------------------------------------------
+
+
+
+    /**
+     * Builds the index, checklists defined directly in the main file are
+     * put into store.
+     */
+    public void build(CheckListStore store) throws CheckListException
+    {
+        store.putAll(scan());
+
+    } // build() ------------------------------------------------------------
+
+
+
+    /**
+     * Builds the index, returns checklists defined directly in the main
+     * file. Used also by CheckListReloader to find where the loaded
+     * checklists come from.
+     */
+    LinkedHashMap<String, CheckListData> scan() throws CheckListException
+    {
+        long start = System.currentTimeMillis();
+
+        ArrayList<LoadUnit> units = new ArrayList<LoadUnit>();
+        XMLParser mainParser = new XMLParser(xmlFileName);
+        mainParser.collectIncludedFiles(units);
+        mainParser.parse(); // throws CheckListException
+        LinkedHashMap<String, CheckListData> inline =
+            mainParser.getCheckListStore();
+        LinkedHashMap<String, CheckListData> loaded =
+            new LinkedHashMap<String, CheckListData>();
+        sourceFiles = mainParser.getSourceFiles();
+
+        for(LoadUnit u : units)
+        {
+            if(u.getFileName() != null)
+            {
+                scanFile(u.getFileName());
+            }
+            else
+            {
+                String title = u.getInlineTitle();
+                entries.put(title, new IndexEntry(xmlFileName));
+                loaded.put(title, inline.get(title));
+            }
+        }
+        logger.info("Checklist index (" + entries.size() + " checklists) " +
+                    "built in " + (System.currentTimeMillis() - start) + " ms");
+        return loaded;
+
+    } // scan() -------------------------------------------------------------
+
+
+
+    public Set<String> getTitles()
+    {
+        return entries.keySet();
+
+    } // getTitles() --------------------------------------------------------
+
+
+
+    /**
+     * File the checklist comes from (the last one defining the title in
+     * the order of the main file) or null if the title is not indexed.
+     */
+    public String getFileName(String title)
+    {
+        IndexEntry entry = entries.get(title);
+        return entry == null ? null : entry.fileName;
+
+    } // getFileName() ------------------------------------------------------
+
+
+
+    /**
+     * Returns names of all files of the main file - the main file itself,
+     * DTD and included checklist files.
+     */
+    public ArrayList<String> getSourceFiles()
+    {
+        return sourceFiles;
+
+    } // getSourceFiles() ---------------------------------------------------
+
+
+
+    /**
+     * Parses the checklist title unless it's already in the store. All
+     * checklists from the same file are put into the store.
+     */
+    public void load(String title, CheckListStore store)
+                     throws CheckListException
+    {
+        if(store.snapshot().containsKey(title))
+        {
+            return;
+        }
+
+        IndexEntry entry = entries.get(title);
+        if(entry == null)
+        {
+            // not known, table model reports it
+            return;
+        }
+
+        logger.info("Loading checklist \"" + title + "\" from \"" +
+                    entry.fileName + "\" ...");
+        CheckListSource parser =
+            ParserEngine.getDefault().createSource(entry.fileName);
+        parser.parse(); // throws CheckListException
+        LinkedHashMap<String, CheckListData> parsed = parser.getCheckListStore();
+        LinkedHashMap<String, CheckListData> loaded =
+            new LinkedHashMap<String, CheckListData>();
+        for(String t : parsed.keySet())
+        {
+            // a title defined in another file later in the main file takes
+            // precedence (as in the store of the sequential parsing)
+            IndexEntry e = entries.get(t);
+            if(e != null && e.fileName.equals(entry.fileName))
+            {
+                loaded.put(t, parsed.get(t));
+            }
+        }
+        store.putAll(loaded);
+
+        if(! store.snapshot().containsKey(title))
+        {
+            String m = "Checklist \"" + title + "\" not found in \"" +
+                       entry.fileName + "\"";
+            throw new CheckListException(m);
+        }
+
+    } // load() -------------------------------------------------------------
+
+
+
+    /**
+     * Looks up all checklist start tags in the file and records their
+     * titles. Comments are skipped.
+     */
+    private void scanFile(String fileName) throws CheckListException
+    {
+        String content = null;
+        try
+        {
+            content = readFile(fileName);
+        }
+        catch(IOException ioe)
+        {
+            String m = "I/O error while indexing \"" + fileName + "\", " +
+                       "reason: " + ioe.getMessage();
+            throw new CheckListException(m);
+        }
+
+        int pos = 0;
+        while(true)
+        {
+            int tag = content.indexOf("<checklist", pos);
+            int comment = content.indexOf("<!--", pos);
+            if(tag == -1)
+            {
+                break;
+            }
+            if(comment != -1 && comment < tag)
+            {
+                int end = content.indexOf("-->", comment + 4);
+                pos = end == -1 ? content.length() : end + 3;
+                continue;
+            }
+            pos = tag + "<checklist".length();
+            // must be the checklist element, not e.g. <checklists>
+            if(pos >= content.length() ||
+               ! Character.isWhitespace(content.charAt(pos)))
+            {
+                continue;
+            }
+            int tagEnd = content.indexOf('>', pos);
+            String title = getTitleAttribute(content, pos,
+                               tagEnd == -1 ? content.length() : tagEnd);
+            if(title != null)
+            {
+                entries.put(title, new IndexEntry(fileName));
+                logger.debug("Indexed checklist \"" + title + "\" file: \"" +
+                             fileName + "\"");
+            }
+        }
+
+    } // scanFile() ---------------------------------------------------------
+
+
+
+    private static String getTitleAttribute(String content, int from, int to)
+    {
+        String tag = content.substring(from, to);
+        int i = tag.indexOf("title");
+        while(i != -1)
+        {
+            int j = i + "title".length();
+            while(j < tag.length() && Character.isWhitespace(tag.charAt(j)))
+            {
+                j++;
+            }
+            if(Character.isWhitespace(tag.charAt(i - 1)) &&
+               j < tag.length() && tag.charAt(j) == '=')
+            {
+                j++;
+                while(j < tag.length() &&
+                      Character.isWhitespace(tag.charAt(j)))
+                {
+                    j++;
+                }
+                if(j < tag.length())
+                {
+                    char quote = tag.charAt(j);
+                    int end = tag.indexOf(quote, j + 1);
+                    if(end != -1)
+                    {
+                        return unescape(tag.substring(j + 1, end));
+                    }
+                }
+                return null;
+            }
+            i = tag.indexOf("title", i + 1);
+        }
+        return null;
+
+    } // getTitleAttribute() ------------------------------------------------
+
+
+
+    private static String unescape(String s)
+    {
+        if(s.indexOf('&') == -1)
+        {
+            return s;
+        }
+        return s.replace("&lt;", "<").replace("&gt;", ">")
+                .replace("&quot;", "\"").replace("&apos;", "'")
+                .replace("&amp;", "&");
+
+    } // unescape() ---------------------------------------------------------
+
+
+
+    private static String readFile(String fileName) throws IOException
+    {
+        File f = new File(fileName);
+        StringBuilder sb = new StringBuilder((int) f.length());
+        Reader in = new InputStreamReader(new FileInputStream(f), "UTF-8");
+        try
+        {
+            char[] buf = new char[8192];
+            int n = 0;
+            while((n = in.read(buf)) != -1)
+            {
+                sb.append(buf, 0, n);
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+        return sb.toString();
+
+    } // readFile() ---------------------------------------------------------
+
+
+
+    /**
+     * Where a checklist comes from - the file it's defined in.
+     */
+    private static final class IndexEntry
+    {
+        String fileName = null;
+
+
+        IndexEntry(String fileName)
+        {
+            this.fileName = fileName;
+        }
+
+    } // class IndexEntry ===================================================
+
+} // class CheckListIndex ===================================================
@@ -0,0 +1,346 @@
+package checklist;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.SwingUtilities;
+
+import mylogger.MyLogger;
+
+
+
+/**
+ * Watches the directory with XML checklist files and reloads a checklist
+ * file when it is modified (stand-alone mode with --watch). Only the
+ * checklist files included by the main file are reloaded, other files in
+ * the directory are ignored. Only the changed file is parsed, its
+ * checklists which come from that file (CheckListIndex - a title defined
+ * again in a file later in the main file takes precedence), are present
+ * in the store and whose content changed are replaced (published as a new
+ * store generation from the reloading thread) and the listener
+ * (CheckListGUI) is notified on the event-dispatching thread.
+ *
+ * Editors usually write a file several times when saving it, the reload
+ * is done only after the file has not been modified for DEBOUNCE_DELAY.
+ *
+ * Changes to the main XML file (e.g. a new checklist included) are not
+ * reloaded, that requires restarting the application.
+ *
+ * @author Zdenek Maxa
+ *
+ */
+final class CheckListReloader
+{
+    private static MyLogger logger = MyLogger.getLogger(CheckListReloader.class);
+
+    // milliseconds since the last modification of a file before reloading
+    private static final long DEBOUNCE_DELAY = 500;
+
+    // main XML file
+    private String xmlFileName = null;
+
+    // data store reference
+    private CheckListStore store = null;
+
+    // where the checklists come from, null if not built yet
+    private CheckListIndex index = null;
+
+    // checklist files included by the main file, absolute paths
+    private HashSet<String> watchedFiles = null;
+
+    // key: checklist title, value: absolute path of the file it comes from
+    private HashMap<String, String> origins = null;
+
+    private CheckListReloadListener listener = null;
+
+    private WatchService watchService = null;
+
+    // delays (debounces) and performs reloading
+    private ScheduledExecutorService executor = null;
+
+    // scheduled reloads, key: full file name
+    private HashMap<String, ScheduledFuture<?>> pending = null;
+
+
+
+
+    /**
+     * @param index - index of the main file (lazy loading) or null, it's
+     *                built when starting otherwise
+     */
+    public CheckListReloader(String xmlFileName, CheckListStore store,
+                             CheckListIndex index)
+    {
+        this.xmlFileName = xmlFileName;
+        this.store = store;
+        this.index = index;
+        this.pending = new HashMap<String, ScheduledFuture<?>>();
+
+    } // CheckListReloader() ------------------------------------------------
+
+
+
+    public void setListener(CheckListReloadListener listener)
+    {
+        this.listener = listener;
+
+    } // setListener() ------------------------------------------------------
+
+
+
+    /**
+     * Starts watching the directory of the main XML checklist file.
+     */
+    public void start() throws CheckListException
+    {
+        if(index == null)
+        {
+            // included files are only scanned for titles, not parsed
+            index = new CheckListIndex(xmlFileName);
+            index.scan(); // throws CheckListException
+        }
+        watchedFiles = new HashSet<String>();
+        for(String f : index.getSourceFiles())
+        {
+            watchedFiles.add(getPath(f));
+        }
+        origins = new HashMap<String, String>();
+        for(String title : index.getTitles())
+        {
+            origins.put(title, getPath(index.getFileName(title)));
+        }
+
+        File dir = new File(xmlFileName).getAbsoluteFile().getParentFile();
+        try
+        {
+            watchService = FileSystems.getDefault().newWatchService();
+            dir.toPath().register(watchService,
+                                  StandardWatchEventKinds.ENTRY_CREATE,
+                                  StandardWatchEventKinds.ENTRY_MODIFY);
+        }
+        catch(IOException ioe)
+        {
+            String m = "Could not watch directory \"" + dir + "\", " +
+                       "reason: " + ioe.getMessage();
+            throw new CheckListException(m);
+        }
+
+        ThreadFactory daemons = new ThreadFactory()
+        {
+            public Thread newThread(Runnable r)
+            {
+                Thread t = new Thread(r, "CheckListReloader");
+                t.setDaemon(true);
+                return t;
+            }
+        };
+        executor = Executors.newSingleThreadScheduledExecutor(daemons);
+
+        Thread watcher = daemons.newThread(new Runnable()
+        {
+            public void run()
+            {
+                watch();
+            }
+        });
+        watcher.start();
+
+        logger.info("Watching \"" + dir + "\" for modified checklist files.");
+
+    } // start() ------------------------------------------------------------
+
+
+
+    private void watch()
+    {
+        while(true)
+        {
+            WatchKey key = null;
+            try
+            {
+                key = watchService.take();
+            }
+            catch(InterruptedException ie)
+            {
+                return;
+            }
+
+            Path dir = (Path) key.watchable();
+            for(WatchEvent<?> event : key.pollEvents())
+            {
+                if(event.kind() == StandardWatchEventKinds.OVERFLOW)
+                {
+                    continue;
+                }
+                Path name = (Path) event.context();
+                String fileName = getPath(dir.resolve(name).toString());
+                if(watchedFiles.contains(fileName))
+                {
+                    fileModified(fileName);
+                }
+            }
+
+            if(! key.reset())
+            {
+                logger.error("Watched checklist directory is no longer " +
+                             "accessible, reloading stopped.");
+                return;
+            }
+        }
+
+    } // watch() ------------------------------------------------------------
+
+
+
+    /**
+     * (Re)schedules reloading of the file, a burst of modifications results
+     * in a single reload.
+     */
+    private void fileModified(final String fileName)
+    {
+        if(fileName.equals(getPath(xmlFileName)))
+        {
+            logger.warn("Main checklist file \"" + fileName + "\" modified, " +
+                        "restart CheckList to see the changes.");
+            return;
+        }
+        if(! origins.containsValue(fileName))
+        {
+            // DTD or a file no loaded checklist comes from
+            logger.warn("File \"" + fileName + "\" modified, no checklist " +
+                        "comes from it, restart CheckList to see the changes.");
+            return;
+        }
+
+        synchronized(pending)
+        {
+            ScheduledFuture<?> previous = pending.get(fileName);
+            if(previous != null)
+            {
+                previous.cancel(false);
+            }
+            Runnable reload = new Runnable()
+            {
+                public void run()
+                {
+                    synchronized(pending)
+                    {
+                        pending.remove(fileName);
+                    }
+                    reload(fileName);
+                }
+            };
+            pending.put(fileName, executor.schedule(reload, DEBOUNCE_DELAY,
+                                                    TimeUnit.MILLISECONDS));
+        }
+
+    } // fileModified() -----------------------------------------------------
+
+
+
+    private void reload(String fileName)
+    {
+        logger.info("Checklist file \"" + fileName + "\" modified, " +
+                    "reloading ...");
+
+        CheckListSource parser = ParserEngine.getDefault().createSource(fileName);
+        try
+        {
+            parser.parse();
+        }
+        catch(CheckListException cle)
+        {
+            // e.g. file saved in the middle of editing, keep the old data
+            logger.error("Reloading \"" + fileName + "\" failed, keeping " +
+                         "previous version, reason: " + cle.getMessage());
+            return;
+        }
+
+        // a checklist of the same title coming from another file is not
+        // replaced by this one
+        LinkedHashMap<String, CheckListData> own =
+            new LinkedHashMap<String, CheckListData>();
+        for(Map.Entry<String, CheckListData> e :
+            parser.getCheckListStore().entrySet())
+        {
+            String origin = origins.get(e.getKey());
+            if(fileName.equals(origin))
+            {
+                own.put(e.getKey(), e.getValue());
+            }
+            else if(origin != null)
+            {
+                logger.warn("Checklist \"" + e.getKey() + "\" in \"" +
+                            fileName + "\" not reloaded, it comes from \"" +
+                            origin + "\"");
+            }
+        }
+
+        // only replace checklists which are loaded, others are either not
+        // in the menu or will be parsed on demand
+        // checklists with unchanged content are not replaced
+        final Set<String> reloaded = store.replaceExisting(own);
+        if(reloaded.isEmpty())
+        {
+            logger.info("No loaded checklist changed in \"" + fileName + "\"");
+        }
+        else
+        {
+            logger.info("Reloaded checklists: " + reloaded);
+        }
+        if(listener == null || reloaded.isEmpty())
+        {
+            return;
+        }
+
+        SwingUtilities.invokeLater(new Runnable()
+        {
+            public void run()
+            {
+                listener.checkListsReloaded(reloaded);
+            }
+        });
+
+    } // reload() -----------------------------------------------------------
+
+
+
+    /**
+     * Absolute normalized path, file names of the parsers and of the watch
+     * service are compared in this form.
+     */
+    private static String getPath(String fileName)
+    {
+        return new File(fileName).getAbsoluteFile().toPath().normalize()
+                   .toString();
+
+    } // getPath() ----------------------------------------------------------
+
+} // class CheckListReloader ================================================
+
+
+
+/**
+ * Notified on the event-dispatching thread about reloaded checklists.
+ */
+interface CheckListReloadListener
+{
+    void checkListsReloaded(Set<String> titles);
+
+} // interface CheckListReloadListener ======================================
@@ -0,0 +1,358 @@
+package checklist;
+
+
+
+/**
+ * Immutable snapshot of a completed checklist (instructions, checkbox
+ * values and comments as entered by the user), taken on the
+ * event-dispatching thread from the table rows and rendered by
+ * ResultFormat (on any thread).
+ *
+ * Total length of the texts is counted when the snapshot is taken, so
+ * that the rendered output is written into a single buffer of the right
+ * size.
+ *
+ * @author Zdenek Maxa
+ *
+ */
+final class CheckListResult
+{
+    private final String title;
+
+    private final String[] systemAffected;
+
+    private final String[] instructions;
+    private final boolean[] ticked;
+    private final String[] comments;
+    private final boolean[] headerOnly;
+
+    // number of instructions not ticked
+    private final int failedCount;
+
+    // sum of lengths of all instructions and comments
+    private final int textLength;
+
+
+
+
+    private CheckListResult(String title, String[] systemAffected,
+                            CheckListRows rows)
+    {
+        int n = rows.size();
+        this.title = title;
+        this.systemAffected = systemAffected;
+        this.instructions = new String[n];
+        this.ticked = new boolean[n];
+        this.comments = new String[n];
+        this.headerOnly = new boolean[n];
+
+        int failed = 0;
+        int length = 0;
+        for(int i = 0; i < n; i++)
+        {
+            instructions[i] = rows.getInstruction(i);
+            ticked[i] = rows.isChecked(i);
+            comments[i] = rows.getComment(i) != null ? rows.getComment(i) : "";
+            headerOnly[i] = rows.isHeaderOnly(i);
+            if(! ticked[i])
+            {
+                failed++;
+            }
+            length += instructions[i].length() + comments[i].length();
+        }
+        this.failedCount = failed;
+        this.textLength = length;
+
+    } // CheckListResult() --------------------------------------------------
+
+
+
+    /**
+     * Snapshot of the rows (CheckListTableModel.getRows()), must be
+     * called on the event-dispatching thread.
+     */
+    static CheckListResult snapshot(String title, String[] systemAffected,
+                                    CheckListRows rows)
+    {
+        return new CheckListResult(title, systemAffected, rows);
+
+    } // snapshot() ---------------------------------------------------------
+
+
+
+    String getTitle()
+    {
+        return title;
+    }
+
+
+    String[] getElogAffectedSystem()
+    {
+        return systemAffected;
+    }
+
+
+    int size()
+    {
+        return instructions.length;
+    }
+
+
+    String getInstruction(int i)
+    {
+        return instructions[i];
+    }
+
+
+    boolean isTicked(int i)
+    {
+        return ticked[i];
+    }
+
+
+    String getComment(int i)
+    {
+        return comments[i];
+    }
+
+
+    boolean isHeaderOnly(int i)
+    {
+        return headerOnly[i];
+    }
+
+
+    int getFailedCount()
+    {
+        return failedCount;
+    }
+
+
+    boolean isCompleted()
+    {
+        return failedCount == 0;
+    }
+
+
+    int getTextLength()
+    {
+        return textLength;
+    }
+
+} // class CheckListResult ==================================================
+
+
+
+/**
+ * Formats of the rendered checklist result, the one used for the ATLOG
+ * message is set from the command line (--result-format) or the
+ * checklist.result.format system property. Each format writes into a
+ * single buffer sized from the result's text length and number of
+ * instructions (estimate()), the rendering time is linear in the size of
+ * the output.
+ */
+enum ResultFormat
+{
+    // all instructions with OK: / FAILED: and comments (the original
+    // ATLOG message format)
+    PLAIN
+    {
+        int estimate(CheckListResult r)
+        {
+            return r.getTextLength() + r.size() * 32 + 8;
+        }
+
+        void render(CheckListResult r, StringBuilder sb)
+        {
+            sb.append(LS);
+            for(int i = 0; i < r.size(); i++)
+            {
+                sb.append(r.isTicked(i) ? "OK: " : "FAILED: ").append(LS);
+                sb.append(r.getInstruction(i)).append(LS);
+                sb.append("COMMENT: ").append(r.getComment(i));
+                sb.append(LS).append(LS);
+            }
+        }
+    },
+
+    // only the instructions which were not ticked (and their comments)
+    FAILURES
+    {
+        int estimate(CheckListResult r)
+        {
+            // instructions are mostly ticked
+            return r.getTextLength() / 8 + r.getFailedCount() * 32 + 128;
+        }
+
+        void render(CheckListResult r, StringBuilder sb)
+        {
+            if(r.isCompleted())
+            {
+                sb.append("All ").append(r.size());
+                sb.append(" instructions confirmed.").append(LS);
+                return;
+            }
+            sb.append(r.getFailedCount()).append(" of ").append(r.size());
+            sb.append(" instructions not confirmed:").append(LS);
+            for(int i = 0; i < r.size(); i++)
+            {
+                if(r.isTicked(i))
+                {
+                    continue;
+                }
+                sb.append("FAILED: ").append(r.getInstruction(i));
+                if(r.getComment(i).length() > 0)
+                {
+                    sb.append(LS).append("COMMENT: ").append(r.getComment(i));
+                }
+                sb.append(LS);
+            }
+        }
+    },
+
+    // table of all instructions, header instructions in bold
+    HTML
+    {
+        int estimate(CheckListResult r)
+        {
+            // some room for escaped characters
+            return r.getTextLength() + r.getTextLength() / 16 +
+                   r.size() * 64 + 128;
+        }
+
+        void render(CheckListResult r, StringBuilder sb)
+        {
+            sb.append("<h3>");
+            escapeHtml(sb, r.getTitle());
+            sb.append("</h3>\n<table>\n");
+            for(int i = 0; i < r.size(); i++)
+            {
+                sb.append(r.isTicked(i) ? "<tr><td>OK</td><td>" :
+                                          "<tr><td><b>FAILED</b></td><td>");
+                if(r.isHeaderOnly(i))
+                {
+                    sb.append("<b>");
+                    escapeHtml(sb, r.getInstruction(i));
+                    sb.append("</b>");
+                }
+                else
+                {
+                    escapeHtml(sb, r.getInstruction(i));
+                }
+                sb.append("</td><td>");
+                escapeHtml(sb, r.getComment(i));
+                sb.append("</td></tr>\n");
+            }
+            sb.append("</table>\n");
+        }
+    },
+
+    // {"checklist", "completed", "failed", "instructions": [{"text",
+    //  "ok", "header", "comment"}]}
+    JSON
+    {
+        int estimate(CheckListResult r)
+        {
+            return r.getTextLength() + r.getTextLength() / 16 +
+                   r.size() * 64 + 128;
+        }
+
+        void render(CheckListResult r, StringBuilder sb)
+        {
+            sb.append("{\"checklist\": ");
+            Json.quote(sb, r.getTitle());
+            sb.append(", \"completed\": ").append(r.isCompleted());
+            sb.append(", \"failed\": ").append(r.getFailedCount());
+            sb.append(",\n \"instructions\": [");
+            for(int i = 0; i < r.size(); i++)
+            {
+                sb.append(i > 0 ? ",\n  " : "\n  ").append("{\"text\": ");
+                Json.quote(sb, r.getInstruction(i));
+                sb.append(", \"ok\": ").append(r.isTicked(i));
+                sb.append(", \"header\": ").append(r.isHeaderOnly(i));
+                sb.append(", \"comment\": ");
+                Json.quote(sb, r.getComment(i));
+                sb.append('}');
+            }
+            sb.append("]}\n");
+        }
+    };
+
+
+    // operating systems dependent line separator
+    private static final String LS = System.getProperty("line.separator");
+
+    private static ResultFormat defaultFormat = PLAIN;
+
+
+
+    /**
+     * Expected length of the rendered result (initial buffer size).
+     */
+    abstract int estimate(CheckListResult r);
+
+
+    abstract void render(CheckListResult r, StringBuilder sb);
+
+
+
+    String render(CheckListResult r)
+    {
+        StringBuilder sb = new StringBuilder(estimate(r));
+        render(r, sb);
+        return sb.toString();
+
+    } // render() -----------------------------------------------------------
+
+
+
+    private static void escapeHtml(StringBuilder sb, String s)
+    {
+        for(int i = 0; i < s.length(); i++)
+        {
+            char c = s.charAt(i);
+            switch(c)
+            {
+                case '<': sb.append("&lt;"); break;
+                case '>': sb.append("&gt;"); break;
+                case '&': sb.append("&amp;"); break;
+                case '"': sb.append("&quot;"); break;
+                case '\n': sb.append("<br>"); break;
+                default: sb.append(c);
+            }
+        }
+
+    } // escapeHtml() -------------------------------------------------------
+
+
+
+    static ResultFormat getDefault()
+    {
+        return defaultFormat;
+    }
+
+
+    static void setDefault(ResultFormat format)
+    {
+        defaultFormat = format;
+    }
+
+
+
+    /**
+     * Format by its (case insensitive) name as given on the command line.
+     */
+    static ResultFormat forName(String name) throws CheckListException
+    {
+        for(ResultFormat f : values())
+        {
+            if(f.name().equalsIgnoreCase(name))
+            {
+                return f;
+            }
+        }
+        throw new CheckListException("Unknown result format: \"" + name + "\"");
+
+    } // forName() ----------------------------------------------------------
+
+} // enum ResultFormat ======================================================
@@ -0,0 +1,622 @@
+package checklist;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import mylogger.MyLogger;
+
+
+
+/**
+ * Inverted index of words of checklist titles, instruction texts and preset
+ * comments for the quick-find box of CheckListGUI. Words are lower-cased
+ * runs of letters and digits. An instruction matches a query if every query
+ * word is a prefix of a word of the instruction text, its comment or the
+ * checklist title, a checklist (TITLE_ROW hit) matches if every query word
+ * is a prefix of a word of its title. Hits are ranked by where the words
+ * were found (title > instruction text > comment), then by the store order.
+ *
+ * Each checklist title and instruction has a slot number, posting lists
+ * hold slots (and weights) in int arrays and a query is evaluated over
+ * reused per-slot arrays, no objects are created per posting.
+ *
+ * The index listens to the store and re-indexes checklists as they are
+ * loaded or reloaded, only the changed checklists are re-indexed (their
+ * postings are dropped, they keep their slots if the instructions fit,
+ * get new slots otherwise). The slots are renumbered (compact()) when the
+ * unused slots outnumber the used ones. Titles of checklists not loaded
+ * yet (--lazy) may be indexed on their own.
+ *
+ * @author Zdenek Maxa
+ *
+ */
+final class CheckListSearchIndex implements CheckListStoreListener
+{
+    private static MyLogger logger = MyLogger.getLogger(CheckListSearchIndex.class);
+
+    private static final int TITLE_WEIGHT = 4;
+    private static final int TEXT_WEIGHT = 2;
+    private static final int COMMENT_WEIGHT = 1;
+
+    // posting is slot << WEIGHT_BITS | weight
+    private static final int WEIGHT_BITS = 3;
+    private static final int WEIGHT_MASK = (1 << WEIGHT_BITS) - 1;
+
+    // row of the checklist title
+    static final int TITLE_ROW = -1;
+
+
+    // word -> postings, the same lists sorted by word for prefix lookups
+    private HashMap<String, IntList> postings = new HashMap<String, IntList>();
+    private TreeMap<String, IntList> sortedPostings =
+        new TreeMap<String, IntList>();
+
+    // checklist (document) ids in the order the checklists were first
+    // indexed, i.e. the store order
+    private HashMap<String, Integer> docIds = new HashMap<String, Integer>();
+    private ArrayList<String> docTitles = new ArrayList<String>();
+    // words indexed for the document (to remove its postings on reload)
+    private ArrayList<Set<String>> docWords = new ArrayList<Set<String>>();
+    // first slot (title) and number of instructions of the document
+    private IntList docBase = new IntList();
+    private IntList docRows = new IntList();
+
+    // document and row of each slot, slots of re-indexed documents which
+    // didn't fit stay unused until compacted
+    private IntList slotDoc = new IntList();
+    private IntList slotRow = new IntList();
+    private int unusedSlots = 0;
+
+    // per-query scratch arrays, indexed by slot / document, valid where
+    // the stamp equals the current word stamp
+    private int[] slotStamp = new int[0];
+    private int[] slotBest = new int[0];
+    private int[] docStamp = new int[0];
+    private int[] docBest = new int[0];
+    private int stamp = 0;
+
+
+
+
+    /**
+     * Indexes all checklists of the store generation.
+     */
+    synchronized void indexAll(CheckListStore.Generation generation)
+    {
+        long start = System.nanoTime();
+        for(CheckListData data : generation.getCheckLists().values())
+        {
+            index(data);
+        }
+        logger.info("Search index of " + generation.size() + " checklists " +
+                    "built in " + (System.nanoTime() - start) / 1000000 + " ms");
+
+    } // indexAll() ---------------------------------------------------------
+
+
+
+    /**
+     * Indexes titles of checklists which are not loaded yet.
+     */
+    synchronized void indexTitles(Set<String> titles)
+    {
+        for(String title : titles)
+        {
+            if(! docIds.containsKey(title))
+            {
+                index(new CheckListData(title));
+            }
+        }
+
+    } // indexTitles() ------------------------------------------------------
+
+
+
+    public void checkListsPublished(CheckListStore.Generation generation,
+                                    Set<String> titles)
+    {
+        synchronized(this)
+        {
+            for(String title : titles)
+            {
+                index(generation.get(title));
+            }
+        }
+        logger.debug("Search index updated: " + titles);
+
+    } // checkListsPublished() ----------------------------------------------
+
+
+
+    private void index(CheckListData data)
+    {
+        String title = data.getTitle();
+        Integer id = docIds.get(title);
+        int doc = 0;
+        if(id == null)
+        {
+            doc = docTitles.size();
+            docIds.put(title, doc);
+            docTitles.add(title);
+            docWords.add(null);
+            docBase.add(0);
+            docRows.add(0);
+        }
+        else
+        {
+            doc = id.intValue();
+            remove(doc);
+        }
+
+        int base = 0;
+        if(id != null && data.size() <= docRows.get(doc))
+        {
+            // instructions fit into the current slots
+            base = docBase.get(doc);
+            unusedSlots += docRows.get(doc) - data.size();
+        }
+        else
+        {
+            if(id != null)
+            {
+                unusedSlots += 1 + docRows.get(doc);
+            }
+            base = slotDoc.size();
+            for(int row = TITLE_ROW; row < data.size(); row++)
+            {
+                slotDoc.add(doc);
+                slotRow.add(row);
+            }
+        }
+        docBase.set(doc, base);
+        docRows.set(doc, data.size());
+
+        Set<String> words = new HashSet<String>();
+        addWords(title, base, TITLE_WEIGHT, words);
+        for(int i = 0; i < data.size(); i++)
+        {
+            int slot = base + 1 + i;
+            addWords(data.getText(i), slot, TEXT_WEIGHT, words);
+            addWords(data.getComment(i), slot, COMMENT_WEIGHT, words);
+        }
+        docWords.set(doc, words);
+
+        if(unusedSlots > slotDoc.size() - unusedSlots)
+        {
+            compact();
+        }
+
+    } // index() ------------------------------------------------------------
+
+
+
+    /**
+     * Renumbers the slots of all documents to be contiguous (in the
+     * document order), drops the unused ones.
+     */
+    private void compact()
+    {
+        int[] newSlots = new int[slotDoc.size()];
+        IntList newSlotDoc = new IntList();
+        IntList newSlotRow = new IntList();
+        for(int doc = 0; doc < docTitles.size(); doc++)
+        {
+            int base = docBase.get(doc);
+            docBase.set(doc, newSlotDoc.size());
+            for(int row = TITLE_ROW; row < docRows.get(doc); row++)
+            {
+                newSlots[base + 1 + row] = newSlotDoc.size();
+                newSlotDoc.add(doc);
+                newSlotRow.add(row);
+            }
+        }
+        for(IntList list : postings.values())
+        {
+            for(int i = 0; i < list.size(); i++)
+            {
+                int slot = list.get(i) >>> WEIGHT_BITS;
+                int weight = list.get(i) & WEIGHT_MASK;
+                list.set(i, newSlots[slot] << WEIGHT_BITS | weight);
+            }
+        }
+        logger.debug("Search index compacted, slots: " + slotDoc.size() +
+                     " -> " + newSlotDoc.size());
+        slotDoc = newSlotDoc;
+        slotRow = newSlotRow;
+        unusedSlots = 0;
+
+        // scratch arrays are allocated again for the current number of slots
+        slotStamp = new int[0];
+        slotBest = new int[0];
+
+    } // compact() ----------------------------------------------------------
+
+
+
+    /**
+     * Drops postings of the document (its current slots).
+     */
+    private void remove(int doc)
+    {
+        int from = docBase.get(doc);
+        int to = from + 1 + docRows.get(doc);
+        for(String word : docWords.get(doc))
+        {
+            IntList list = postings.get(word);
+            list.removeSlots(from, to);
+            if(list.size() == 0)
+            {
+                postings.remove(word);
+                sortedPostings.remove(word);
+            }
+        }
+
+    } // remove() -----------------------------------------------------------
+
+
+
+    private void addWords(String s, int slot, int weight, Set<String> words)
+    {
+        if(s == null)
+        {
+            return;
+        }
+        for(String word : tokenize(s))
+        {
+            IntList list = postings.get(word);
+            if(list == null)
+            {
+                list = new IntList();
+                postings.put(word, list);
+                sortedPostings.put(word, list);
+            }
+            // the same word repeated in the slot is indexed once
+            int n = list.size();
+            if(n > 0 && list.get(n - 1) >>> WEIGHT_BITS == slot)
+            {
+                int w = Math.max(list.get(n - 1) & WEIGHT_MASK, weight);
+                list.set(n - 1, slot << WEIGHT_BITS | w);
+                continue;
+            }
+            list.add(slot << WEIGHT_BITS | weight);
+            words.add(word);
+        }
+
+    } // addWords() ---------------------------------------------------------
+
+
+
+    /**
+     * Returns at most maxHits hits of the query, best first.
+     */
+    synchronized ArrayList<Hit> search(String query, int maxHits)
+    {
+        ArrayList<String> words = tokenize(query);
+        ArrayList<Hit> hits = new ArrayList<Hit>();
+        if(words.isEmpty() || maxHits <= 0)
+        {
+            return hits;
+        }
+        ensureScratchCapacity();
+
+        // candidate slots and their scores, narrowed by every word
+        IntList candidates = new IntList();
+        IntList scores = new IntList();
+
+        for(int w = 0; w < words.size(); w++)
+        {
+            IntList touched = markWord(words.get(w));
+            if(w == 0)
+            {
+                collectCandidates(touched, candidates, scores);
+            }
+            else
+            {
+                narrowCandidates(candidates, scores);
+            }
+            if(candidates.size() == 0)
+            {
+                return hits;
+            }
+        }
+
+        // best maxHits candidates, the worst of them at the queue head
+        final Comparator<Hit> order = new Comparator<Hit>()
+        {
+            public int compare(Hit a, Hit b)
+            {
+                if(a.score != b.score)
+                {
+                    return b.score - a.score;
+                }
+                if(a.doc != b.doc)
+                {
+                    return a.doc - b.doc;
+                }
+                return a.row - b.row;
+            }
+        };
+        PriorityQueue<Hit> best = new PriorityQueue<Hit>(maxHits,
+                                      Collections.reverseOrder(order));
+        for(int i = 0; i < candidates.size(); i++)
+        {
+            int slot = candidates.get(i);
+            int score = scores.get(i);
+            int doc = slotDoc.get(slot);
+            int row = slotRow.get(slot);
+            if(best.size() == maxHits)
+            {
+                Hit worst = best.peek();
+                if(score < worst.score || (score == worst.score &&
+                   (doc > worst.doc || (doc == worst.doc && row > worst.row))))
+                {
+                    continue;
+                }
+                best.poll();
+            }
+            best.add(new Hit(docTitles.get(doc), doc, row, score));
+        }
+
+        hits.addAll(best);
+        Collections.sort(hits, order);
+        return hits;
+
+    } // search() -----------------------------------------------------------
+
+
+
+    /**
+     * Records (under a new stamp) the best weight of the slots and
+     * documents (title) matched by the word, returns the matched slots.
+     */
+    private IntList markWord(String word)
+    {
+        stamp++;
+        IntList touched = new IntList();
+        SortedMap<String, IntList> range =
+            sortedPostings.subMap(word, word + Character.MAX_VALUE);
+        for(IntList list : range.values())
+        {
+            for(int i = 0; i < list.size(); i++)
+            {
+                int slot = list.get(i) >>> WEIGHT_BITS;
+                int weight = list.get(i) & WEIGHT_MASK;
+                if(slotStamp[slot] != stamp)
+                {
+                    slotStamp[slot] = stamp;
+                    slotBest[slot] = weight;
+                    touched.add(slot);
+                }
+                else if(weight > slotBest[slot])
+                {
+                    slotBest[slot] = weight;
+                }
+                if(slotRow.get(slot) == TITLE_ROW)
+                {
+                    int doc = slotDoc.get(slot);
+                    docStamp[doc] = stamp;
+                    docBest[doc] = slotBest[slot];
+                }
+            }
+        }
+        return touched;
+
+    } // markWord() ---------------------------------------------------------
+
+
+
+    /**
+     * Candidates of the first word - matched slots and all instructions
+     * of the checklists whose title matched.
+     */
+    private void collectCandidates(IntList touched, IntList candidates,
+                                   IntList scores)
+    {
+        for(int i = 0; i < touched.size(); i++)
+        {
+            int slot = touched.get(i);
+            candidates.add(slot);
+            scores.add(getWordScore(slot));
+            if(slotRow.get(slot) == TITLE_ROW)
+            {
+                int doc = slotDoc.get(slot);
+                for(int s = slot + 1; s <= slot + docRows.get(doc); s++)
+                {
+                    if(slotStamp[s] != stamp)
+                    {
+                        candidates.add(s);
+                        scores.add(docBest[doc]);
+                    }
+                }
+            }
+        }
+
+    } // collectCandidates() ------------------------------------------------
+
+
+
+    /**
+     * Keeps candidates matched by the current word, adds its score.
+     */
+    private void narrowCandidates(IntList candidates, IntList scores)
+    {
+        int kept = 0;
+        for(int i = 0; i < candidates.size(); i++)
+        {
+            int slot = candidates.get(i);
+            int score = getWordScore(slot);
+            if(score > 0)
+            {
+                candidates.set(kept, slot);
+                scores.set(kept, scores.get(i) + score);
+                kept++;
+            }
+        }
+        candidates.truncate(kept);
+        scores.truncate(kept);
+
+    } // narrowCandidates() -------------------------------------------------
+
+
+
+    /**
+     * Score of the slot for the current word - the best of its own weight
+     * and its checklist title weight, 0 if not matched.
+     */
+    private int getWordScore(int slot)
+    {
+        int score = slotStamp[slot] == stamp ? slotBest[slot] : 0;
+        int doc = slotDoc.get(slot);
+        if(docStamp[doc] == stamp && docBest[doc] > score)
+        {
+            score = docBest[doc];
+        }
+        return score;
+
+    } // getWordScore() -----------------------------------------------------
+
+
+
+    private void ensureScratchCapacity()
+    {
+        if(slotStamp.length < slotDoc.size())
+        {
+            int n = slotDoc.size() + slotDoc.size() / 2;
+            slotStamp = new int[n];
+            slotBest = new int[n];
+            stamp = 0;
+            Arrays.fill(docStamp, 0);
+        }
+        if(docStamp.length < docTitles.size())
+        {
+            int n = docTitles.size() + docTitles.size() / 2;
+            docStamp = new int[n];
+            docBest = new int[n];
+            stamp = 0;
+            Arrays.fill(slotStamp, 0);
+        }
+
+    } // ensureScratchCapacity() --------------------------------------------
+
+
+
+    /**
+     * Lower-cased runs of letters and digits.
+     */
+    static ArrayList<String> tokenize(String s)
+    {
+        ArrayList<String> words = new ArrayList<String>();
+        int start = -1;
+        for(int i = 0; i <= s.length(); i++)
+        {
+            boolean inWord = i < s.length() &&
+                             Character.isLetterOrDigit(s.charAt(i));
+            if(inWord && start == -1)
+            {
+                start = i;
+            }
+            else if(! inWord && start != -1)
+            {
+                words.add(s.substring(start, i).toLowerCase());
+                start = -1;
+            }
+        }
+        return words;
+
+    } // tokenize() ---------------------------------------------------------
+
+
+
+    /**
+     * Growable array of ints.
+     */
+    private static final class IntList
+    {
+        private int[] values = new int[4];
+        private int size = 0;
+
+
+        int size()
+        {
+            return size;
+        }
+
+
+        int get(int i)
+        {
+            return values[i];
+        }
+
+
+        void set(int i, int value)
+        {
+            values[i] = value;
+        }
+
+
+        void add(int value)
+        {
+            if(size == values.length)
+            {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+
+        void truncate(int newSize)
+        {
+            size = newSize;
+        }
+
+
+        // removes postings of slots from (inclusive) to (exclusive)
+        void removeSlots(int from, int to)
+        {
+            int kept = 0;
+            for(int i = 0; i < size; i++)
+            {
+                int slot = values[i] >>> WEIGHT_BITS;
+                if(slot < from || slot >= to)
+                {
+                    values[kept++] = values[i];
+                }
+            }
+            size = kept;
+        }
+
+    } // class IntList ======================================================
+
+
+
+    /**
+     * Search result - checklist title and instruction (row) index, TITLE_ROW
+     * if the checklist matched by its title.
+     */
+    static final class Hit
+    {
+        String title = null;
+        int doc = 0;
+        int row = TITLE_ROW;
+        int score = 0;
+
+
+        Hit(String title, int doc, int row, int score)
+        {
+            this.title = title;
+            this.doc = doc;
+            this.row = row;
+            this.score = score;
+        }
+
+    } // class Hit ==========================================================
+
+} // class CheckListSearchIndex =============================================
@@ -0,0 +1,102 @@
+package checklist;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+
+
+
+/**
+ * Source of checklists - parses an XML checklist file (and the files it
+ * includes) into a store of CheckListData. Implemented by XMLParser (SAX)
+ * and StAXParser (StAX), the implementation used is selected by
+ * ParserEngine.
+ *
+ * @author Zdenek Maxa
+ *
+ */
+interface CheckListSource
+{
+    void parse() throws CheckListException;
+
+    /**
+     * Store of the parsed checklists, key is checklist title, order is
+     * the order of checklists in the XML file.
+     */
+    LinkedHashMap<String, CheckListData> getCheckListStore();
+
+    /**
+     * Names of all files the store was built from.
+     */
+    ArrayList<String> getSourceFiles();
+
+    /**
+     * Titles of checklists defined more than once, the later definition
+     * replaced the earlier one in the store.
+     */
+    ArrayList<String> getDuplicateTitles();
+
+} // interface CheckListSource ==============================================
+
+
+
+/**
+ * Available parser engines, the one used by default is set from the
+ * command line (--engine).
+ */
+enum ParserEngine
+{
+    SAX
+    {
+        CheckListSource createSource(String xmlFileName)
+        {
+            return new XMLParser(xmlFileName);
+        }
+    },
+
+    STAX
+    {
+        CheckListSource createSource(String xmlFileName)
+        {
+            return new StAXParser(xmlFileName);
+        }
+    };
+
+
+    private static ParserEngine defaultEngine = SAX;
+
+
+
+    abstract CheckListSource createSource(String xmlFileName);
+
+
+
+    static ParserEngine getDefault()
+    {
+        return defaultEngine;
+    }
+
+
+    static void setDefault(ParserEngine engine)
+    {
+        defaultEngine = engine;
+    }
+
+
+
+    /**
+     * Engine by its (case insensitive) name as given on the command line.
+     */
+    static ParserEngine forName(String name) throws CheckListException
+    {
+        for(ParserEngine e : values())
+        {
+            if(e.name().equalsIgnoreCase(name))
+            {
+                return e;
+            }
+        }
+        throw new CheckListException("Unknown parser engine: \"" + name + "\"");
+
+    } // forName() ----------------------------------------------------------
+
+} // enum ParserEngine ======================================================
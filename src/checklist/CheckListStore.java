@@ -0,0 +1,262 @@
+package checklist;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+
+import mylogger.MyLogger;
+
+
+
+/**
+ * Store of all loaded checklists, shared by CheckList, CheckListGUI (menu,
+ * buttons), CheckListTableModel, CheckListIndex and CheckListReloader.
+ *
+ * The checklists are kept in generations - immutable maps (key is checklist
+ * title, insertion order as in the main XML checklist file) with a version
+ * number. Readers take the current generation (snapshot()) without locking
+ * and see a consistent set of checklists however long they use it. Writers
+ * (background loading, reloading) copy the current map, modify the copy and
+ * publish it as the next generation, writers are serialised, readers are
+ * never blocked.
+ *
+ * Listeners are notified on the thread publishing the generation, in the
+ * order of the generation versions - the notification lock is taken before
+ * the write lock is released, i.e. the next writer waits until the
+ * previous generation has been delivered.
+ *
+ * @author Zdenek Maxa
+ *
+ */
+public final class CheckListStore
+{
+    private static MyLogger logger = MyLogger.getLogger(CheckListStore.class);
+
+
+    // published generation, replaced as a whole by writers
+    private volatile Generation current = null;
+
+    // serialises writers (copy - modify - publish)
+    private Object writeLock = new Object();
+
+    // serialises notifications of the listeners in the version order
+    private ReentrantLock notifyLock = new ReentrantLock();
+
+    private CopyOnWriteArrayList<CheckListStoreListener> listeners =
+        new CopyOnWriteArrayList<CheckListStoreListener>();
+
+
+
+
+    public CheckListStore()
+    {
+        this(new LinkedHashMap<String, CheckListData>());
+
+    } // CheckListStore() ---------------------------------------------------
+
+
+
+    /**
+     * Store with the checklists (copied) as the first generation.
+     */
+    public CheckListStore(Map<String, CheckListData> checkLists)
+    {
+        current = new Generation(0,
+                      new LinkedHashMap<String, CheckListData>(checkLists));
+
+    } // CheckListStore() ---------------------------------------------------
+
+
+
+    /**
+     * Current generation, doesn't change when the store is updated.
+     */
+    public Generation snapshot()
+    {
+        return current;
+
+    } // snapshot() ---------------------------------------------------------
+
+
+
+    void addListener(CheckListStoreListener listener)
+    {
+        listeners.add(listener);
+
+    } // addListener() ------------------------------------------------------
+
+
+
+    void removeListener(CheckListStoreListener listener)
+    {
+        listeners.remove(listener);
+
+    } // removeListener() ---------------------------------------------------
+
+
+
+    /**
+     * Publishes a new generation with the checklists added (new titles
+     * are appended, existing ones replaced in place).
+     */
+    public Generation putAll(Map<String, CheckListData> checkLists)
+    {
+        return publish(checkLists, false);
+
+    } // putAll() -----------------------------------------------------------
+
+
+
+    /**
+     * Publishes a new generation in which those of the checklists whose
+     * titles are already in the store are replaced, others and those with
+     * unchanged content are ignored. Returns titles which were replaced,
+     * no generation is published if there are none.
+     */
+    public Set<String> replaceExisting(Map<String, CheckListData> checkLists)
+    {
+        Generation g = publish(checkLists, true);
+        return g != null ? g.changed : Collections.<String>emptySet();
+
+    } // replaceExisting() --------------------------------------------------
+
+
+
+    private Generation publish(Map<String, CheckListData> checkLists,
+                               boolean existingOnly)
+    {
+        Generation next = null;
+        synchronized(writeLock)
+        {
+            Generation previous = current;
+            LinkedHashMap<String, CheckListData> copy =
+                new LinkedHashMap<String, CheckListData>(previous.checkLists);
+            Set<String> changed = new LinkedHashSet<String>();
+            for(Map.Entry<String, CheckListData> e : checkLists.entrySet())
+            {
+                if(existingOnly && ! copy.containsKey(e.getKey()))
+                {
+                    continue;
+                }
+                if(existingOnly &&
+                   e.getValue().hasSameContent(copy.get(e.getKey())))
+                {
+                    continue; // e.g. reloaded file saved without changes
+                }
+                copy.put(e.getKey(), e.getValue());
+                changed.add(e.getKey());
+            }
+            if(changed.isEmpty())
+            {
+                return null;
+            }
+            next = new Generation(previous.version + 1, copy);
+            next.changed = Collections.unmodifiableSet(changed);
+            current = next;
+            // the next writer can't notify before this one
+            notifyLock.lock();
+        }
+
+        try
+        {
+            logger.debug("Store generation " + next.version + " published, " +
+                         "changed checklists: " + next.changed);
+            for(CheckListStoreListener l : listeners)
+            {
+                l.checkListsPublished(next, next.changed);
+            }
+        }
+        finally
+        {
+            notifyLock.unlock();
+        }
+        return next;
+
+    } // publish() ----------------------------------------------------------
+
+
+
+    /**
+     * One immutable version of the store content.
+     */
+    public static final class Generation
+    {
+        private long version = 0;
+
+        private Map<String, CheckListData> checkLists = null;
+
+        // titles added or replaced by this generation
+        private Set<String> changed = Collections.<String>emptySet();
+
+
+
+        private Generation(long version,
+                           LinkedHashMap<String, CheckListData> checkLists)
+        {
+            this.version = version;
+            this.checkLists = Collections.unmodifiableMap(checkLists);
+        }
+
+
+        public long getVersion()
+        {
+            return version;
+        }
+
+
+        public CheckListData get(String title)
+        {
+            return checkLists.get(title);
+        }
+
+
+        public boolean containsKey(String title)
+        {
+            return checkLists.containsKey(title);
+        }
+
+
+        /**
+         * Titles in the insertion order, not modifiable.
+         */
+        public Set<String> getTitles()
+        {
+            return checkLists.keySet();
+        }
+
+
+        /**
+         * All checklists (key is title) in the insertion order,
+         * not modifiable.
+         */
+        public Map<String, CheckListData> getCheckLists()
+        {
+            return checkLists;
+        }
+
+
+        public int size()
+        {
+            return checkLists.size();
+        }
+
+    } // class Generation ===================================================
+
+} // class CheckListStore ===================================================
+
+
+
+/**
+ * Notified about every published generation of the store (on the thread
+ * which published it) with the titles added or replaced.
+ */
+interface CheckListStoreListener
+{
+    void checkListsPublished(CheckListStore.Generation generation,
+                             Set<String> titles);
+
+} // interface CheckListStoreListener =======================================
@@ -0,0 +1,238 @@
+package checklist;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+
+import javax.swing.SwingWorker;
+
+import mylogger.MyLogger;
+
+
+
+/**
+ * Switches the checklist displayed in the table. The table contents is
+ * prepared by a background worker (loading the checklist first if it's
+ * loaded on demand), so that the menu doesn't block on large checklists.
+ * A newer selection cancels the preparation in progress and only the
+ * result of the latest selection is put into the table.
+ *
+ * Switch latency (selection until the table contents was replaced) is
+ * recorded, see getStatistics().
+ *
+ * All methods are called on the event-dispatching thread.
+ *
+ * @author Zdenek Maxa
+ *
+ */
+final class CheckListSwitcher
+{
+    private static MyLogger logger = MyLogger.getLogger(CheckListSwitcher.class);
+
+    private CheckListTableModel model = null;
+
+    private CheckListStore store = null;
+
+    // index of checklists loaded on demand, null if all are loaded
+    private CheckListIndex index = null;
+
+    private CheckListSwitcherListener listener = null;
+
+    // the latest switch, null if none is in progress
+    private Switch current = null;
+
+    // number of the latest switch, results of older ones are dropped
+    private long sequence = 0;
+
+    private long switched = 0;
+    private long cancelled = 0;
+
+    // nanoseconds, of finished switches
+    private long totalLatency = 0;
+    private long maxLatency = 0;
+    private long lastLatency = 0;
+
+
+
+
+    public CheckListSwitcher(CheckListTableModel model, CheckListStore store,
+                             CheckListIndex index,
+                             CheckListSwitcherListener listener)
+    {
+        this.model = model;
+        this.store = store;
+        this.index = index;
+        this.listener = listener;
+
+    } // CheckListSwitcher() ------------------------------------------------
+
+
+
+    /**
+     * Starts displaying the checklist, whenShown (may be null) is run once
+     * the table shows it (not if this switch is superseded or failed).
+     */
+    public void switchTo(String title, Runnable whenShown)
+    {
+        if(current != null)
+        {
+            // the result would be dropped anyway, stop the preparation
+            current.cancel(true);
+            cancelled++;
+            logger.debug("Displaying checklist \"" + current.title +
+                         "\" cancelled by a newer selection.");
+        }
+        current = new Switch(title, ++sequence, whenShown);
+        current.execute();
+
+    } // switchTo() ---------------------------------------------------------
+
+
+
+    /**
+     * True while a switch is in progress (the table may show the
+     * previously selected checklist).
+     */
+    public boolean isSwitching()
+    {
+        return current != null;
+
+    } // isSwitching() ------------------------------------------------------
+
+
+
+    public String getStatistics()
+    {
+        long mean = switched > 0 ? totalLatency / switched : 0;
+        return "checklist switches: " + switched + " cancelled: " +
+               cancelled + " latency [ms] last: " + (lastLatency / 1000000) +
+               " mean: " + (mean / 1000000) + " max: " +
+               (maxLatency / 1000000);
+
+    } // getStatistics() ----------------------------------------------------
+
+
+
+    private void shown(Switch s)
+    {
+        current = null;
+        long latency = System.nanoTime() - s.started;
+        switched++;
+        lastLatency = latency;
+        totalLatency += latency;
+        maxLatency = Math.max(maxLatency, latency);
+        logger.debug("Checklist \"" + s.title + "\" displayed in " +
+                     (latency / 1000000) + " ms (prepared in " +
+                     (s.prepareTime / 1000000) + " ms), " + getStatistics());
+
+    } // shown() ------------------------------------------------------------
+
+
+
+    /**
+     * One switch, the table contents is prepared on a worker thread.
+     */
+    private final class Switch
+        extends SwingWorker<CheckListTableModel.Contents, Void>
+    {
+        private String title = null;
+
+        private long number = 0;
+
+        private Runnable whenShown = null;
+
+        private long started = System.nanoTime();
+
+        // nanoseconds spent on the worker thread
+        private volatile long prepareTime = 0;
+
+
+        Switch(String title, long number, Runnable whenShown)
+        {
+            this.title = title;
+            this.number = number;
+            this.whenShown = whenShown;
+        }
+
+
+        protected CheckListTableModel.Contents doInBackground()
+                                               throws CheckListException
+        {
+            long start = System.nanoTime();
+            try
+            {
+                if(index != null)
+                {
+                    // parsed on the first request, then kept in the store
+                    index.load(title, store);
+                }
+                // null if interrupted (cancelled)
+                return model.prepareContents(title);
+            }
+            finally
+            {
+                prepareTime = System.nanoTime() - start;
+            }
+        }
+
+
+        protected void done()
+        {
+            if(isCancelled() || number != sequence)
+            {
+                return; // superseded by a newer selection
+            }
+            CheckListTableModel.Contents contents = null;
+            try
+            {
+                contents = get();
+            }
+            catch(CancellationException ce)
+            {
+                return;
+            }
+            catch(InterruptedException ie)
+            {
+                return;
+            }
+            catch(ExecutionException ee)
+            {
+                current = null;
+                Throwable cause = ee.getCause();
+                CheckListException cle = cause instanceof CheckListException ?
+                    (CheckListException) cause :
+                    new CheckListException("Displaying checklist \"" + title +
+                                           "\" failed, reason: " + cause);
+                listener.checkListSwitchFailed(title, cle);
+                return;
+            }
+            if(contents == null)
+            {
+                return;
+            }
+
+            model.setContents(contents);
+            shown(this);
+            listener.checkListShown(title);
+            if(whenShown != null)
+            {
+                whenShown.run();
+            }
+        }
+
+    } // class Switch =======================================================
+
+} // class CheckListSwitcher ================================================
+
+
+
+/**
+ * Notified on the event-dispatching thread when the table shows the
+ * selected checklist or when displaying it failed.
+ */
+interface CheckListSwitcherListener
+{
+    void checkListShown(String title);
+
+    void checkListSwitchFailed(String title, CheckListException error);
+
+} // interface CheckListSwitcherListener ====================================
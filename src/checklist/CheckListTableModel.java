@@ -1,10 +1,10 @@
 package checklist;
 
-import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedHashMap;
+import java.util.LinkedList;
 
-import javax.swing.SwingUtilities;
 import javax.swing.table.AbstractTableModel;
 
 import mylogger.MyLogger;
@@ -25,10 +25,14 @@ public final class CheckListTableModel extends AbstractTableModel
     
     // reference to the main CheckList data store containing
     // contents of all checklists
-    private LinkedHashMap<String, CheckListData> store = null;
+    private CheckListStore store = null;
     
     private String activeCheckList = null; 
     
+    // data of the displayed checklist, from the store generation current
+    // when the table contents was prepared (null if not in the store)
+    private CheckListData activeData = null;
+    
     // definition of table header titles
     private static String[] header = {"CheckList instructions", "Check",
                                       "Comments", "Help" };
@@ -43,7 +47,10 @@ public final class CheckListTableModel extends AbstractTableModel
     
 
     // all table data currently displayed in the table
-    private ArrayList<CheckListRow> allRows = null;
+    private CheckListRows allRows = null;
+    
+    // rows of checklists switched away from, null if they are not kept
+    private SessionStateCache sessions = null;
     
     
     
@@ -52,91 +59,211 @@ public final class CheckListTableModel extends AbstractTableModel
      * @param dataStore
      * @param currentSelection - String title of the checklist to show
      */
-    public CheckListTableModel(LinkedHashMap<String, CheckListData> dataStore,
+    public CheckListTableModel(CheckListStore dataStore,
                         String checkListToShow) throws CheckListException
+    {
+        this(dataStore, checkListToShow, null);
+                
+    } // TableModel() -------------------------------------------------------
+    
+    
+    
+    /** 
+     * @param dataStore
+     * @param currentSelection - String title of the checklist to show
+     * @param sessions - keeps rows (user input) of checklists switched
+     *        away from, may be null
+     */
+    public CheckListTableModel(CheckListStore dataStore,
+                        String checkListToShow, SessionStateCache sessions)
+                        throws CheckListException
     {
         this.store = dataStore;
+        this.sessions = sessions;
         this.activeCheckList = checkListToShow;
-        this.allRows = prepareTableData();
+        Contents contents = prepareContents(checkListToShow);
+        this.activeData = contents.data;
+        this.allRows = contents.rows;
+        if(sessions != null)
+        {
+            sessions.remove(checkListToShow);
+        }
                 
     } // TableModel() -------------------------------------------------------
     
     
 
     /**
-     * Method called from GUI when user requires to display different
-     * CheckList
-     * 
-     * @param checkListToShow
-     * @throws CheckListException
+     * Table contents of one checklist, prepared off the event-dispatching
+     * thread by prepareContents() and put into the table by setContents().
      */
-    public void updateTableContents(String checkListToShow) 
-    throws CheckListException
+    static final class Contents
     {
-        this.activeCheckList = checkListToShow;
+        private final String title;
+        private final CheckListData data;
+        private final CheckListRows rows;
+        
+        
+        private Contents(String title, CheckListData data,
+                         CheckListRows rows)
+        {
+            this.title = title;
+            this.data = data;
+            this.rows = rows;
+        }
+        
         
-        final ArrayList<CheckListRow> newTableData = prepareTableData();
+        String getTitle()
+        {
+            return title;
+        }
+        
+    } // class Contents =====================================================
+    
+    
+    
+    /**
+     * Prepares table contents of the checklist from the current generation
+     * of the store, may be called on any thread (CheckListSwitcher).
+     * If the checklist was switched away from before, the rows as the user
+     * left them are restored (reused if the checklist hasn't changed
+     * meanwhile). Returns null if the calling thread was interrupted
+     * meanwhile (the preparation was cancelled).
+     */
+    Contents prepareContents(String checkListToShow)
+                             throws CheckListException
+    {
+        CheckListData data = getCheckListData(store, checkListToShow);
+        SessionStateCache.State state =
+            sessions != null ? sessions.get(checkListToShow) : null;
+        if(state != null && state.rows.getData() == data && data != null)
+        {
+            logger.debug("Checklist \"" + checkListToShow + "\" restored " +
+                         "from the session state.");
+            return new Contents(checkListToShow, data, state.rows);
+        }
+        
+        // the preparation is cancelled by a newer checklist selection
+        if(Thread.currentThread().isInterrupted())
+        {
+            return null;
+        }
+        CheckListRows rows = new CheckListRows(data);
+        if(state != null)
+        {
+            // the checklist has changed (or the state was saved)
+            keepUserInput(state.rows, rows);
+            logger.debug("Checklist \"" + checkListToShow + "\" user input " +
+                         "restored from the session state.");
+        }
+        return new Contents(checkListToShow, data, rows);
+        
+    } // prepareContents() --------------------------------------------------
+    
+    
+    
+    /**
+     * Puts the prepared contents into the table, called on the
+     * event-dispatching thread when user requires to display different
+     * CheckList or when the displayed checklist was reloaded. If it's the
+     * same checklist as displayed, checkbox values and comments entered
+     * for instructions which haven't changed are kept, otherwise the rows
+     * of the previous checklist are kept in the session state cache.
+     */
+    public void setContents(Contents contents)
+    {
+        if(contents.title.equals(this.activeCheckList))
+        {
+            keepUserInput(this.allRows, contents.rows);
+        }
+        else if(sessions != null)
+        {
+            sessions.put(this.activeCheckList, this.allRows);
+            sessions.remove(contents.title);
+        }
+        this.activeCheckList = contents.title;
+        this.activeData = contents.data;
+        this.allRows = contents.rows;
+        // now the GUI table updates
+        fireTableDataChanged();
+    
+    } // setContents() ------------------------------------------------------
+    
+    
+    
+    /**
+     * Copies checkbox values and comments from oldRows into newRows for
+     * instructions with the same text (i.e. instructions which were not
+     * changed). Instructions with the same text are matched in order.
+     */
+    private static void keepUserInput(CheckListRows oldRows,
+                                      CheckListRows newRows)
+    {
+        HashMap<String, LinkedList<Integer>> byText =
+            new HashMap<String, LinkedList<Integer>>();
+        for(int i = 0; i < oldRows.size(); i++)
+        {
+            LinkedList<Integer> l = byText.get(oldRows.getInstruction(i));
+            if(l == null)
+            {
+                l = new LinkedList<Integer>();
+                byText.put(oldRows.getInstruction(i), l);
+            }
+            l.add(i);
+        }
         
-        // table content changing via event-dispatching thread, thread safely
-        SwingUtilities.invokeLater(new Runnable()
+        for(int i = 0; i < newRows.size(); i++)
         {
-            public void run()
+            LinkedList<Integer> l = byText.get(newRows.getInstruction(i));
+            if(l != null && ! l.isEmpty())
             {
-                CheckListTableModel.this.allRows = newTableData;
-                // now the GUI table updates
-                CheckListTableModel.this.fireTableDataChanged();                
+                int old = l.removeFirst();
+                newRows.setChecked(i, oldRows.isChecked(old));
+                newRows.setComment(i, oldRows.getComment(old));
             }
-        });
-    
-    } // updateTableContents() ----------------------------------------------
+        }
+        
+    } // keepUserInput() ----------------------------------------------------
     
     
     
     /**
-     * Convert CheckList content from internal store into
-     * ArrayList<CheckListRow> required by the table data model.
-     * Relies that this.activeCheckList was appropriately set beforehand.
-     * 
+     * Looks up data of the checklist in the current generation of the
+     * store (which stays consistent even if the store is updated
+     * meanwhile), returns null if the checklist is not in the store.
      */
-    private ArrayList<CheckListRow> prepareTableData() throws CheckListException
+    private static CheckListData getCheckListData(CheckListStore store,
+                                                  String title)
+                                                  throws CheckListException
     {
-        ArrayList<CheckListRow> rows = new ArrayList<CheckListRow>();
-
         if(store == null)
         {
             throw new CheckListException("Fatal error: checklist data store is null.");
         }
 
+        CheckListData data = store.snapshot().get(title);
+        
         // is the required checklist title to be shown valid?
-        if(! store.containsKey(this.activeCheckList))
+        if(data == null)
         {
-            logger.error("Required checklist \"" + this.activeCheckList + "\" " +
+            logger.error("Required checklist \"" + title + "\" " +
                          "does not exist, showing empty table.");
-            return rows; // empty table
-        }
-
-        // it's ok, required checklist title is valid
-        CheckListData data = store.get(this.activeCheckList);
-                
-        ArrayList<Instruction> instructions = data.getInstructions();
-        for(Instruction i : instructions)
-        {
-            CheckListRow row = new CheckListRow();
-            row.setInstruction(i.getText());
-            // checkbox value will be preset accordingly if instructions is 
-            // meant to be only header
-            row.setCheckBox(new Boolean(i.isHeaderOnly()));
-            row.setHeaderOnly(i.isHeaderOnly());
-            row.setComment(i.getComment());
-            row.setHelpUrl(i.getHelpUrl());
-            
-            rows.add(row);
         }
-                
-        return rows;
+        return data;
         
-    } // prepareTableData() -------------------------------------------------
-
+    } // getCheckListData() -------------------------------------------------
+    
+    
+    
+    /**
+     * True if the row is a header only instruction (rendered in bold).
+     */
+    public boolean isHeaderOnly(int row)
+    {
+        return allRows.isHeaderOnly(row);
+        
+    } // isHeaderOnly() -----------------------------------------------------
+    
     
     
     public String getActiveCheckList()
@@ -147,11 +274,23 @@ public final class CheckListTableModel extends AbstractTableModel
     
     
         
-    public ArrayList<CheckListRow> getAllRows()
+    /**
+     * Data of the displayed checklist (the version the table rows were
+     * created from), null if the checklist doesn't exist.
+     */
+    public CheckListData getActiveCheckListData()
+    {
+        return this.activeData;
+        
+    } // getActiveCheckListData() -------------------------------------------
+    
+    
+        
+    public CheckListRows getRows()
     {
         return this.allRows;
         
-    } // getAllRows() -------------------------------------------------------
+    } // getRows() ----------------------------------------------------------
 
     
 
@@ -181,9 +320,7 @@ public final class CheckListTableModel extends AbstractTableModel
     
     public Object getValueAt(int row, int col)
     {
-        CheckListRow dataRow = allRows.get(row);
-        Object r = dataRow.get(col);
-        return r;
+        return allRows.get(row, col);
         
     } // getValueAt() -------------------------------------------------------
     
@@ -215,8 +352,7 @@ public final class CheckListTableModel extends AbstractTableModel
         logger.debug("Setting at row: " + row + " column: " + col +
                      " value: \"" + value.toString() + "\"");
 
-        CheckListRow dataRow = this.allRows.get(row);
-        dataRow.set(col, value);
+        this.allRows.set(row, col, value);
           
         fireTableCellUpdated(row, col);
         
@@ -250,37 +386,79 @@ public final class CheckListTableModel extends AbstractTableModel
 
 
 
-final class CheckListRow
+/**
+ * Rows of the table, i.e. instructions of the displayed checklist with the
+ * checkbox values and comments entered by the user. No object is created
+ * per row: texts, preset comments and help URLs are read from the
+ * (immutable) checklist data, checkbox values are bits and comments are
+ * kept only once some comment differs from the preset one. Opening a
+ * checklist with thousands of instructions thus costs a few bit sets.
+ */
+final class CheckListRows
 {    
-    private static MyLogger logger = MyLogger.getLogger(CheckListRow.class);
-
-    private String instruction = null;
-    private Boolean checkBox = null;
-    private String comment = null;
-    private String helpUrl = null;
-    // headerOnly means that default value of checkBox is true and
-    // instraction text is rendered in bold font
-    private boolean headerOnly = false;
+    private static MyLogger logger = MyLogger.getLogger(CheckListRows.class);
     
+    // rows of a checklist which doesn't exist (empty table)
+    private static final CheckListData NO_DATA = new CheckListData("");
+    static
+    {
+        NO_DATA.freeze();
+    }
     
-
-    public void set(int column, Object value)
+    private CheckListData data = null;
+    
+    // checkbox values, preset (true) for the instructions which are only
+    // header (CheckListData.isHeaderOnly())
+    private BitSet checked = null;
+    
+    // comments entered by the user (null for the preset comment), null
+    // until the first comment is changed
+    private String[] comments = null;
+    
+    // number of non-null comments
+    private int commentCount = 0;
+    
+    
+    
+    /**
+     * @param data - checklist data the rows are created from, null for
+     *        empty table
+     */
+    public CheckListRows(CheckListData data)
+    {
+        this.data = data != null ? data : NO_DATA;
+        // checkbox value is preset accordingly if instructions is meant to
+        // be only header
+        this.checked = new BitSet(this.data.size());
+        for(int i = 0; i < this.data.size(); i++)
+        {
+            if(this.data.isHeaderOnly(i))
+            {
+                this.checked.set(i);
+            }
+        }
+        
+    } // CheckListRows() ----------------------------------------------------
+    
+    
+    
+    public void set(int row, int column, Object value)
     {
     
         switch(column)
         {
         case 0:
-            logger.error("CheckListRow.set() column 0 - wrong, " +
+            logger.error("CheckListRows.set() column 0 - wrong, " +
                          "instruction is not editable.");
             break;
         case 1:
-            this.setCheckBox((Boolean) value);
+            this.setChecked(row, ((Boolean) value).booleanValue());
             break;
         case 2:
-            this.setComment((String) value);
+            this.setComment(row, (String) value);
             break;
         case 3:
-            //logger.error("CheckListRow.set() column 3 (help), " +
+            //logger.error("CheckListRows.set() column 3 (help), " +
             //              "should not have any effect.");
             break;
         }
@@ -289,79 +467,153 @@ final class CheckListRow
     
     
     
-    public Object get(int column)
+    public Object get(int row, int column)
     {
         Object r = null;
         
         switch(column)
         {
             case 0:
-                r = this.getInstruction();
+                r = this.getInstruction(row);
                 break;
             case 1:
-                r = this.getCheckBox();
+                r = Boolean.valueOf(this.isChecked(row));
                 break;
             case 2:
-                r = this.getComment();
+                r = this.getComment(row);
                 break;
             case 3:
-                r = this.getHelpUrl();
+                r = this.getHelpUrl(row);
                 break;
         }
         
         return r;
         
     } // get() --------------------------------------------------------------
-
     
     
-    public String getInstruction()
+    
+    /**
+     * Sets the comment, a comment equal to the preset one takes no memory.
+     */
+    public void setComment(int row, String comment)
     {
-        return instruction;
-    }
+        String preset = data.getComment(row);
+        boolean isPreset = preset == null ?
+                           comment == null || comment.length() == 0 :
+                           preset.equals(comment);
+        if(isPreset)
+        {
+            if(comments != null && comments[row] != null)
+            {
+                comments[row] = null;
+                commentCount--;
+            }
+            return;
+        }
+        if(comments == null)
+        {
+            comments = new String[data.size()];
+        }
+        if(comments[row] == null)
+        {
+            commentCount++;
+        }
+        comments[row] = comment;
+        
+    } // setComment() -------------------------------------------------------
+    
+    
     
-    public void setInstruction(String instruction)
+    /**
+     * True if any checkbox or comment differs from the checklist preset
+     * values.
+     */
+    public boolean hasUserInput()
     {
-        this.instruction = instruction;
-    }
+        if(commentCount > 0)
+        {
+            return true;
+        }
+        for(int i = 0; i < data.size(); i++)
+        {
+            if(checked.get(i) != data.isHeaderOnly(i))
+            {
+                return true;
+            }
+        }
+        return false;
+        
+    } // hasUserInput() -----------------------------------------------------
     
-    public Boolean getCheckBox()
+    
+    
+    /**
+     * Estimated memory of the user input (not of the checklist data).
+     */
+    public long getMemory()
     {
-        return checkBox;
+        // the checkbox bit set, 8 bytes per 64 rows
+        long bytes = 8 * (data.size() / 64 + 1);
+        if(comments != null)
+        {
+            bytes += 8 * comments.length;
+            for(String c : comments)
+            {
+                bytes += c != null ? 40 + 2 * c.length() : 0;
+            }
+        }
+        return bytes;
+        
+    } // getMemory() --------------------------------------------------------
+    
+    
+    
+    /**
+     * The checklist data the rows were created from.
+     */
+    public CheckListData getData()
+    {
+        return data;
     }
     
-    public void setCheckBox(Boolean checkBox)
+    public int size()
     {
-        this.checkBox = checkBox;
+        return data.size();
     }
     
-    public String getComment()
+    public String getInstruction(int row)
     {
-        return comment;
+        return data.getText(row);
     }
     
-    public void setComment(String comment)
+    public boolean isChecked(int row)
     {
-        this.comment = comment;
+        return checked.get(row);
     }
-    public String getHelpUrl()
+    
+    public void setChecked(int row, boolean value)
     {
-        return helpUrl;
+        checked.set(row, value);
     }
     
-    public void setHelpUrl(String helpUrl)
+    public String getComment(int row)
     {
-        this.helpUrl = helpUrl;
+        if(comments != null && comments[row] != null)
+        {
+            return comments[row];
+        }
+        return data.getComment(row);
     }
     
-    public boolean isHeaderOnly()
+    public String getHelpUrl(int row)
     {
-        return headerOnly;
+        return data.getHelpUrl(row);
     }
     
-    public void setHeaderOnly(boolean headerOnly)
+    public boolean isHeaderOnly(int row)
     {
-        this.headerOnly = headerOnly;
-    }    
+        return data.isHeaderOnly(row);
+    }
     
-} // class CheckListRow =====================================================
\ No newline at end of file
+} // class CheckListRows ====================================================
@@ -0,0 +1,306 @@
+package checklist;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import mylogger.MyLogger;
+
+
+
+/**
+ * Headless validation of all XML checklist files of a directory (--validate
+ * option) before they are deployed. Each file is parsed on its own by its
+ * own parser, the files are parsed concurrently. A file which fails to
+ * parse doesn't affect validation of the other files.
+ *
+ * Besides parsing, the parsed checklists are checked for:
+ *   empty-checklist     checklist without instructions
+ *   empty-helpurl       instruction with helpurl attribute set to ""
+ *   duplicate-title     checklist title defined more than once, only the
+ *                       last definition is kept in the store
+ *
+ * The report is printed in JSON, one object with per-file results
+ * (including parse time) and a summary with the total throughput.
+ *
+ * @author Zdenek Maxa
+ *
+ */
+final class CheckListValidator
+{
+    private static MyLogger logger = MyLogger.getLogger(CheckListValidator.class);
+
+    // directory with the XML checklist files
+    private String dirName = null;
+
+
+
+
+    public CheckListValidator(String dirName)
+    {
+        this.dirName = dirName;
+
+    } // CheckListValidator() -----------------------------------------------
+
+
+
+    /**
+     * Validates all *.xml files of the directory, prints the report into
+     * out and returns number of files which failed to parse or have issues.
+     */
+    public int validate(PrintStream out) throws CheckListException
+    {
+        File dir = new File(dirName);
+        File[] files = dir.listFiles(new FilenameFilter()
+        {
+            public boolean accept(File d, String name)
+            {
+                return name.endsWith(".xml");
+            }
+        });
+        if(files == null)
+        {
+            String m = "\"" + dirName + "\" is not a readable directory";
+            throw new CheckListException(m);
+        }
+        Arrays.sort(files);
+
+        int threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+
+        ArrayList<Future<FileReport>> futures =
+            new ArrayList<Future<FileReport>>();
+        for(final File f : files)
+        {
+            futures.add(executor.submit(new Callable<FileReport>()
+            {
+                public FileReport call()
+                {
+                    return validateFile(f);
+                }
+            }));
+        }
+
+        ArrayList<FileReport> reports = new ArrayList<FileReport>();
+        for(int i = 0; i < files.length; i++)
+        {
+            FileReport r = null;
+            try
+            {
+                r = futures.get(i).get();
+            }
+            catch(ExecutionException ee)
+            {
+                // unexpected failure of the parser, isolated to this file
+                r = new FileReport(files[i]);
+                r.error = String.valueOf(ee.getCause());
+            }
+            catch(InterruptedException ie)
+            {
+                r = new FileReport(files[i]);
+                r.error = "validation interrupted";
+            }
+            reports.add(r);
+        }
+        executor.shutdown();
+
+        long wallTime = System.nanoTime() - start;
+        printReport(out, reports, threads, wallTime);
+
+        int failures = 0;
+        for(FileReport r : reports)
+        {
+            if(r.error != null || ! r.issues.isEmpty())
+            {
+                failures++;
+            }
+        }
+        return failures;
+
+    } // validate() ---------------------------------------------------------
+
+
+
+    private static FileReport validateFile(File file)
+    {
+        FileReport r = new FileReport(file);
+        long start = System.nanoTime();
+        CheckListSource parser =
+            ParserEngine.getDefault().createSource(file.getPath());
+        try
+        {
+            parser.parse();
+        }
+        catch(CheckListException cle)
+        {
+            r.parseTime = System.nanoTime() - start;
+            r.error = cle.getMessage();
+            logger.debug("Validation of \"" + file + "\" failed: " + r.error);
+            return r;
+        }
+        r.parseTime = System.nanoTime() - start;
+
+        for(String title : parser.getDuplicateTitles())
+        {
+            r.addIssue("duplicate-title", title, "checklist title defined " +
+                       "more than once, earlier definition overwritten");
+        }
+
+        LinkedHashMap<String, CheckListData> store = parser.getCheckListStore();
+        for(CheckListData data : store.values())
+        {
+            r.checkLists++;
+            r.instructions += data.size();
+            if(data.size() == 0)
+            {
+                r.addIssue("empty-checklist", data.getTitle(),
+                           "checklist has no instructions");
+            }
+            for(int i = 0; i < data.size(); i++)
+            {
+                String url = data.getHelpUrl(i);
+                if(url != null && url.trim().length() == 0)
+                {
+                    r.addIssue("empty-helpurl", data.getTitle(),
+                               "instruction " + (i + 1) + " has empty helpurl");
+                }
+            }
+        }
+        return r;
+
+    } // validateFile() -----------------------------------------------------
+
+
+
+    private void printReport(PrintStream out, ArrayList<FileReport> reports,
+                             int threads, long wallTime)
+    {
+        long bytes = 0;
+        int failed = 0;
+        int issues = 0;
+        int instructions = 0;
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\n");
+        sb.append("  \"directory\": ").append(Json.quote(dirName));
+        sb.append(",\n");
+        sb.append("  \"engine\": ").append(
+            Json.quote(ParserEngine.getDefault().name())).append(",\n");
+        sb.append("  \"threads\": ").append(threads).append(",\n");
+        sb.append("  \"files\": [");
+        for(int i = 0; i < reports.size(); i++)
+        {
+            FileReport r = reports.get(i);
+            bytes += r.bytes;
+            instructions += r.instructions;
+            issues += r.issues.size();
+            if(r.error != null)
+            {
+                failed++;
+            }
+
+            sb.append(i == 0 ? "\n" : ",\n");
+            sb.append("    {\"file\": ").append(Json.quote(r.file.getName()));
+            sb.append(", \"status\": ").append(
+                Json.quote(r.error != null ? "failed" : "ok"));
+            sb.append(", \"bytes\": ").append(r.bytes);
+            sb.append(", \"parseTimeMs\": ").append(millis(r.parseTime));
+            sb.append(", \"checklists\": ").append(r.checkLists);
+            sb.append(", \"instructions\": ").append(r.instructions);
+            if(r.error != null)
+            {
+                sb.append(", \"error\": ").append(Json.quote(r.error));
+            }
+            sb.append(", \"issues\": [");
+            for(int j = 0; j < r.issues.size(); j++)
+            {
+                String[] issue = r.issues.get(j);
+                sb.append(j == 0 ? "\n" : ",\n");
+                sb.append("      {\"rule\": ").append(Json.quote(issue[0]));
+                sb.append(", \"checklist\": ").append(Json.quote(issue[1]));
+                sb.append(", \"message\": ").append(Json.quote(issue[2]));
+                sb.append("}");
+            }
+            sb.append(r.issues.isEmpty() ? "]}" : "\n    ]}");
+        }
+        sb.append(reports.isEmpty() ? "],\n" : "\n  ],\n");
+
+        double seconds = wallTime / 1e9;
+        sb.append("  \"summary\": {");
+        sb.append("\"files\": ").append(reports.size());
+        sb.append(", \"failed\": ").append(failed);
+        sb.append(", \"issues\": ").append(issues);
+        sb.append(", \"bytes\": ").append(bytes);
+        sb.append(", \"instructions\": ").append(instructions);
+        sb.append(", \"wallTimeMs\": ").append(millis(wallTime));
+        sb.append(", \"filesPerSecond\": ").append(
+            rate(reports.size(), seconds));
+        sb.append(", \"megabytesPerSecond\": ").append(
+            rate(bytes / (1024.0 * 1024.0), seconds));
+        sb.append("}\n");
+        sb.append("}");
+
+        out.println(sb);
+
+    } // printReport() ------------------------------------------------------
+
+
+
+    private static String millis(long nanos)
+    {
+        return String.valueOf(Math.round(nanos / 1e4) / 100.0);
+
+    } // millis() -----------------------------------------------------------
+
+
+
+    private static String rate(double amount, double seconds)
+    {
+        if(seconds <= 0)
+        {
+            return "0";
+        }
+        return String.valueOf(Math.round(100 * amount / seconds) / 100.0);
+
+    } // rate() -------------------------------------------------------------
+
+
+
+    /**
+     * Validation result of one file, issue is {rule, checklist, message}.
+     */
+    private static final class FileReport
+    {
+        File file = null;
+        long bytes = 0;
+        long parseTime = 0;
+        int checkLists = 0;
+        int instructions = 0;
+        String error = null;
+        ArrayList<String[]> issues = new ArrayList<String[]>();
+
+
+        FileReport(File file)
+        {
+            this.file = file;
+            this.bytes = file.length();
+        }
+
+
+        void addIssue(String rule, String title, String message)
+        {
+            issues.add(new String[] { rule, title, message });
+        }
+
+    } // class FileReport ===================================================
+
+} // class CheckListValidator ===============================================
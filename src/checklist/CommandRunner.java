@@ -0,0 +1,294 @@
+package checklist;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import mylogger.MyLogger;
+
+
+
+/**
+ * Runs an external command with a deadline. Its stdout and stderr are
+ * read (pumped) concurrently, so the command never blocks on a full pipe,
+ * and input (if any) is written to its stdin. A command still running at
+ * the deadline is killed (forcibly if it doesn't end after KILL_GRACE).
+ *
+ * After the command ended, the pumps are given at most KILL_GRACE to read
+ * the rest of the output, then the streams are closed and the pumps are
+ * cancelled - a child of the command (e.g. a daemon it started) may keep
+ * the pipes open, the output read until then is returned and the pump
+ * ends when the pipe is closed by the child.
+ *
+ * At most MAX_CAPTURE bytes of each output stream are kept in the result,
+ * the rest is read and discarded.
+ *
+ * @author Zdenek Maxa
+ *
+ */
+final class CommandRunner
+{
+    private static MyLogger logger = MyLogger.getLogger(CommandRunner.class);
+
+    private static final int MAX_CAPTURE = 64 * 1024;
+
+    // milliseconds the killed command is given to end
+    private static final long KILL_GRACE = 2000;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    // pumps streams of all running commands
+    private static ExecutorService pumps =
+        Executors.newCachedThreadPool(new ThreadFactory()
+    {
+        public Thread newThread(Runnable r)
+        {
+            Thread t = new Thread(r, "CommandRunnerPump");
+            t.setDaemon(true);
+            return t;
+        }
+    });
+
+    // milliseconds
+    private long timeout = 0;
+
+
+
+
+    public CommandRunner(long timeout)
+    {
+        this.timeout = timeout;
+
+    } // CommandRunner() ----------------------------------------------------
+
+
+
+    /**
+     * Runs the command, input is written to its stdin (null for none),
+     * returns when the command ended or was killed.
+     * Throws IOException if the command can't be started.
+     */
+    public Result run(String[] command, byte[] input)
+                      throws IOException, InterruptedException
+    {
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command).start();
+
+        Pump outPump = new Pump(process.getInputStream());
+        Pump errPump = new Pump(process.getErrorStream());
+        Future<?> stdout = pumps.submit(outPump);
+        Future<?> stderr = pumps.submit(errPump);
+        Future<?> stdin = pumps.submit(new Feeder(process.getOutputStream(),
+                                                  input));
+
+        Result r = new Result();
+        try
+        {
+            if(! process.waitFor(timeout, TimeUnit.MILLISECONDS))
+            {
+                r.timedOut = true;
+                logger.error("Command \"" + command[0] + "\" still running " +
+                             "after " + timeout + " ms, killing it.");
+                process.destroy();
+                if(! process.waitFor(KILL_GRACE, TimeUnit.MILLISECONDS))
+                {
+                    process.destroyForcibly().waitFor();
+                }
+            }
+        }
+        catch(InterruptedException ie)
+        {
+            process.destroyForcibly();
+            throw ie;
+        }
+        r.exitValue = process.exitValue();
+
+        // the pumps end once the pipes are closed by the ended process
+        // (unless its children keep them open, then the rest of the output
+        // is not waited for)
+        long end = System.currentTimeMillis() + KILL_GRACE;
+        r.stdout = collect(stdout, outPump, process.getInputStream(), end);
+        r.stderr = collect(stderr, errPump, process.getErrorStream(), end);
+        stdin.cancel(true);
+        r.duration = (System.nanoTime() - start) / 1000000;
+        return r;
+
+    } // run() --------------------------------------------------------------
+
+
+
+    /**
+     * Output read by the pump from the stream, waits for the pump to end
+     * at most until end (time in milliseconds). If the pump is still
+     * reading then (a child of the command keeps the pipe open), the
+     * stream is closed and the pump is cancelled, the output read so far
+     * is returned.
+     */
+    private static String collect(Future<?> future, Pump pump,
+                                  InputStream stream, long end)
+                                  throws InterruptedException
+    {
+        try
+        {
+            long wait = Math.max(end - System.currentTimeMillis(), 0);
+            future.get(wait, TimeUnit.MILLISECONDS);
+        }
+        catch(TimeoutException te)
+        {
+            logger.debug("Command output still open, not waiting for it.");
+            try
+            {
+                stream.close();
+            }
+            catch(IOException ioe)
+            {
+                logger.debug("Closing command output failed: " +
+                             ioe.getMessage());
+            }
+            future.cancel(true);
+        }
+        catch(ExecutionException ee)
+        {
+            // stream closed or failed, the output read until then is kept
+        }
+        return new String(pump.getCaptured(), UTF8);
+
+    } // collect() ----------------------------------------------------------
+
+
+
+    /**
+     * Outcome of a command.
+     */
+    static final class Result
+    {
+        int exitValue = 0;
+
+        // true if the command was killed at the deadline
+        boolean timedOut = false;
+
+        // captured output (at most MAX_CAPTURE bytes each)
+        String stdout = null;
+        String stderr = null;
+
+        // milliseconds
+        long duration = 0;
+
+
+        boolean isSuccess()
+        {
+            return ! timedOut && exitValue == 0;
+        }
+
+    } // class Result =======================================================
+
+
+
+    /**
+     * Reads the output stream of the process until its end, keeps the
+     * first MAX_CAPTURE bytes (available while reading).
+     */
+    private static final class Pump implements Callable<Void>
+    {
+        private InputStream in = null;
+        private ByteArrayOutputStream captured = new ByteArrayOutputStream();
+
+
+        Pump(InputStream in)
+        {
+            this.in = in;
+        }
+
+
+        public Void call() throws IOException
+        {
+            byte[] buf = new byte[4096];
+            try
+            {
+                int n = 0;
+                while((n = in.read(buf)) != -1)
+                {
+                    synchronized(captured)
+                    {
+                        int keep = Math.min(n, MAX_CAPTURE - captured.size());
+                        if(keep > 0)
+                        {
+                            captured.write(buf, 0, keep);
+                        }
+                    }
+                }
+            }
+            finally
+            {
+                in.close();
+            }
+            return null;
+        }
+
+
+        byte[] getCaptured()
+        {
+            synchronized(captured)
+            {
+                return captured.toByteArray();
+            }
+        }
+
+    } // class Pump =========================================================
+
+
+
+    /**
+     * Writes the input to the command's stdin and closes it.
+     */
+    private static final class Feeder implements Runnable
+    {
+        private OutputStream out = null;
+        private byte[] input = null;
+
+
+        Feeder(OutputStream out, byte[] input)
+        {
+            this.out = out;
+            this.input = input;
+        }
+
+
+        public void run()
+        {
+            try
+            {
+                if(input != null)
+                {
+                    out.write(input);
+                }
+            }
+            catch(IOException ioe)
+            {
+                // the command doesn't read its input or has ended
+            }
+            finally
+            {
+                try
+                {
+                    out.close();
+                }
+                catch(IOException ignored)
+                {
+                }
+            }
+        }
+
+    } // class Feeder =======================================================
+
+} // class CommandRunner ====================================================
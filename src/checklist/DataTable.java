@@ -1,18 +1,29 @@
 package checklist;
 
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import java.io.IOException;
 
 import java.awt.Color;
+import java.awt.Container;
 import java.awt.Dimension;
 import java.awt.Component;
 import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.Toolkit;
 import java.awt.FlowLayout;
 import java.awt.BorderLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 
+import javax.swing.JComponent;
 import javax.swing.JTable;
 import javax.swing.JOptionPane;
 import javax.swing.JScrollPane;
@@ -22,6 +33,14 @@ import javax.swing.DefaultCellEditor;
 import javax.swing.AbstractCellEditor;
 import javax.swing.JCheckBox;
 import javax.swing.JPanel;
+import javax.swing.JViewport;
+import javax.swing.SwingUtilities;
+import javax.swing.UIManager;
+import javax.swing.border.Border;
+import javax.swing.border.EmptyBorder;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import javax.swing.event.TableModelEvent;
 import javax.swing.table.JTableHeader;
 import javax.swing.table.TableColumn;
 import javax.swing.table.TableCellEditor;
@@ -49,6 +68,51 @@ public final class DataTable extends JTable
     private static final int PREFERRED_COMMENT_WIDTH = 300;
     private static final int PREFERRED_HELP_WIDTH = 55; 
     
+    // extra space below the instruction text of a row
+    private static final int ROW_HEIGHT_EXTRA = 10;
+    
+    // rows measured above and below the visible ones, so that scrolling
+    // by a few rows shows rows of their final heights
+    private static final int PREFETCH_ROWS = 32;
+    
+    // row backgrounds (alternating)
+    private static final Color EVEN_ROW_BACKGROUND = new Color(225, 249, 237);
+    private static final Color ODD_ROW_BACKGROUND = new Color(178, 212, 196);
+    
+    // wrapped texts of the cells (painted by CellRenderer), also used to
+    // compute row heights
+    private WrappedTextCache textCache = null;
+    
+    // instruction column width the row heights were computed for,
+    // -1 if they need to be computed
+    private int rowHeightsWidth = -1;
+    
+    // rows whose height was computed for rowHeightsWidth, the others have
+    // the default height (or a stale one after a column resize)
+    private BitSet measuredRows = new BitSet();
+    
+    // row heights update is already scheduled
+    private boolean rowHeightsUpdatePending = false;
+    
+    // the viewport the table is displayed in (rows coming into its view
+    // are measured), null if not in a viewport
+    private JViewport viewport = null;
+    
+    // rows are being measured (the view position is corrected meanwhile)
+    private boolean measuring = false;
+    
+    private ChangeListener viewportListener = new ChangeListener()
+    {
+        public void stateChanged(ChangeEvent e)
+        {
+            // scrolled or resized, a pending update covers the new view
+            if(! rowHeightsUpdatePending && ! measuring)
+            {
+                measureVisibleRows();
+            }
+        }
+    };
+    
     
     
     
@@ -83,23 +147,262 @@ public final class DataTable extends JTable
         columnComment.setPreferredWidth(PREFERRED_COMMENT_WIDTH);
         columnHelp.setPreferredWidth(PREFERRED_HELP_WIDTH);
         
-        columnInstruction.setCellRenderer(new CellRenderer());
+        // shared by the renderers and the row heights computation
+        textCache = new WrappedTextCache(new JTextArea().getFont(), this);
+        
+        columnInstruction.setCellRenderer(new CellRenderer(textCache));
         // columnInstruction is not editable, no editor necessary
         
-        columnComment.setCellRenderer(new CellRenderer());
+        columnComment.setCellRenderer(new CellRenderer(textCache));
         columnComment.setCellEditor(new CellEditor(PREFERRED_COMMENT_WIDTH,
                                                    PREFERRED_ROW_HEIGHT));
         
+        columnCheckBox.setCellRenderer(new CheckBoxRenderer());
+        
         columnHelp.setCellRenderer(new ButtonRenderer());
         // attaching event listener to ButtonRenderer doesn't work
         // no matter whether a column is editable or not, need editor ...
         columnHelp.setCellEditor(new ButtonEditor(new JCheckBox(), model));
         
+        scheduleRowHeightsUpdate(true);
         
     } // DataTable() --------------------------------------------------------
     
     
     
+    /**
+     * Row heights are computed again when the displayed checklist changed
+     * (row heights are reset by JTable then).
+     */
+    public void tableChanged(TableModelEvent e)
+    {
+        super.tableChanged(e);
+        // also called from the JTable constructor, before this is set up,
+        // updates of single cells (checkbox, comment) don't change heights
+        if(textCache != null &&
+           (e == null || e.getType() != TableModelEvent.UPDATE ||
+            e.getFirstRow() == TableModelEvent.HEADER_ROW ||
+            e.getLastRow() == Integer.MAX_VALUE))
+        {
+            scheduleRowHeightsUpdate(true);
+        }
+        
+    } // tableChanged() -----------------------------------------------------
+    
+    
+    
+    /**
+     * Row heights are computed again when the instruction column was
+     * resized.
+     */
+    public void columnMarginChanged(ChangeEvent e)
+    {
+        super.columnMarginChanged(e);
+        if(textCache != null &&
+           getColumnModel().getColumn(0).getWidth() -
+           getIntercellSpacing().width != rowHeightsWidth)
+        {
+            scheduleRowHeightsUpdate(false);
+        }
+        
+    } // columnMarginChanged() ----------------------------------------------
+    
+    
+    
+    /**
+     * Row heights are updated in one batch after the current event is
+     * processed (never while the table is painted), all changes until
+     * then are covered by the single update. force - rows changed, update
+     * even if the column width is the same.
+     */
+    private void scheduleRowHeightsUpdate(boolean force)
+    {
+        if(force)
+        {
+            rowHeightsWidth = -1;
+        }
+        if(rowHeightsUpdatePending)
+        {
+            return;
+        }
+        rowHeightsUpdatePending = true;
+        SwingUtilities.invokeLater(new Runnable()
+        {
+            public void run()
+            {
+                rowHeightsUpdatePending = false;
+                updateRowHeights();
+            }
+        });
+        
+    } // scheduleRowHeightsUpdate() -----------------------------------------
+    
+    
+    
+    /**
+     * Starts measuring rows for the current instruction column width, the
+     * rows in view are measured first, the others as they are scrolled
+     * into view.
+     */
+    private void updateRowHeights()
+    {
+        Container parent = getParent();
+        JViewport v = parent instanceof JViewport ? (JViewport) parent : null;
+        if(v != viewport)
+        {
+            if(viewport != null)
+            {
+                viewport.removeChangeListener(viewportListener);
+            }
+            viewport = v;
+            if(viewport != null)
+            {
+                viewport.addChangeListener(viewportListener);
+            }
+        }
+        measureVisibleRows();
+        
+    } // updateRowHeights() -------------------------------------------------
+    
+    
+    
+    /**
+     * Returns false if the instruction column has no width yet, forgets
+     * the measured rows if the width has changed.
+     */
+    private boolean checkRowHeightsWidth()
+    {
+        // text is painted within the cell, without the intercell spacing
+        int width = getColumnModel().getColumn(0).getWidth() -
+                    getIntercellSpacing().width;
+        if(width <= 0)
+        {
+            return false;
+        }
+        if(width != rowHeightsWidth)
+        {
+            measuredRows.clear();
+            rowHeightsWidth = width;
+        }
+        return true;
+        
+    } // checkRowHeightsWidth() ---------------------------------------------
+    
+    
+    
+    /**
+     * Measures the rows in view and PREFETCH_ROWS around them (all rows if
+     * the table is not in a viewport). Heights of rows above the first
+     * visible one may change, the view is moved by the difference so that
+     * the first visible row stays in place.
+     */
+    private void measureVisibleRows()
+    {
+        if(! checkRowHeightsWidth() || getRowCount() == 0)
+        {
+            return;
+        }
+        if(viewport == null)
+        {
+            measureRows(0, getRowCount() - 1);
+            return;
+        }
+        
+        Point position = viewport.getViewPosition();
+        int first = rowAtPoint(position);
+        int last = rowAtPoint(new Point(position.x, position.y +
+                                        viewport.getExtentSize().height - 1));
+        first = first < 0 ? 0 : first;
+        last = last < 0 ? getRowCount() - 1 : last;
+        
+        int firstY = getCellRect(first, 0, true).y;
+        int count = measureRows(first - PREFETCH_ROWS, last + PREFETCH_ROWS);
+        int shift = getCellRect(first, 0, true).y - firstY;
+        if(shift != 0)
+        {
+            measuring = true;
+            try
+            {
+                position.y += shift;
+                viewport.setViewPosition(position);
+            }
+            finally
+            {
+                measuring = false;
+            }
+        }
+        if(count > 0 && logger.isDebugEnabled())
+        {
+            logger.debug("Row heights measured for " + count + " rows (" +
+                         measuredRows.cardinality() + " of " + getRowCount() +
+                         "), column width " + rowHeightsWidth + ", " +
+                         textCache.getStatistics());
+        }
+        
+    } // measureVisibleRows() -----------------------------------------------
+    
+    
+    
+    /**
+     * Sets height of each row from..to (within the table) not measured yet
+     * so that its whole instruction is visible, heights are taken from the
+     * cache (measured only for instruction texts and widths not seen
+     * recently). Returns number of rows measured.
+     */
+    private int measureRows(int from, int to)
+    {
+        CheckListRows rows = ((CheckListTableModel) getModel()).getRows();
+        to = Math.min(to, rows.size() - 1);
+        int count = 0;
+        for(int i = measuredRows.nextClearBit(Math.max(from, 0)); i <= to;
+            i = measuredRows.nextClearBit(i + 1))
+        {
+            int textHeight = textCache.get(rows.getInstruction(i),
+                                           rows.isHeaderOnly(i),
+                                           rowHeightsWidth).getHeight();
+            int height = textHeight > PREFERRED_ROW_HEIGHT ?
+                         textHeight + ROW_HEIGHT_EXTRA : PREFERRED_ROW_HEIGHT;
+            // JTable revalidates and repaints once for all the changes
+            if(getRowHeight(i) != height)
+            {
+                setRowHeight(i, height);
+            }
+            measuredRows.set(i);
+            count++;
+        }
+        return count;
+        
+    } // measureRows() ------------------------------------------------------
+    
+    
+    
+    /**
+     * Selects the row and scrolls the table so that the row is visible
+     * (quick-find hit).
+     */
+    public void showRow(int row)
+    {
+        if(row < 0 || row >= getRowCount())
+        {
+            return;
+        }
+        // rows around are measured first, the row is scrolled to its
+        // final position
+        if(checkRowHeightsWidth())
+        {
+            measureRows(row - PREFETCH_ROWS, row + PREFETCH_ROWS);
+        }
+        setRowSelectionInterval(row, row);
+        scrollRectToVisible(getCellRect(row, 0, true));
+        
+    } // showRow() ----------------------------------------------------------
+    
+    
+    
+    /**
+     * Sets colours of a cell component, the colours are not allocated
+     * (called for each rendered cell).
+     */
     public static void setComponentColor(Component c, JTable table, 
                                          boolean isSelected, int row)
     {
@@ -110,16 +413,9 @@ public final class DataTable extends JTable
         } 
         else
         {
-            if(row % 2 == 0)
-            {
-                c.setForeground(table.getForeground());
-                c.setBackground(new Color(225, 249, 237));                
-            }
-            else
-            {
-                c.setForeground(table.getForeground());
-                c.setBackground(new Color(178, 212, 196));                
-            }
+            c.setForeground(table.getForeground());
+            c.setBackground(row % 2 == 0 ? EVEN_ROW_BACKGROUND :
+                                           ODD_ROW_BACKGROUND);
         }
         
     } // setComponentColor() ------------------------------------------------
@@ -129,14 +425,28 @@ public final class DataTable extends JTable
 
 
 
+/**
+ * Renders instruction and comment cells, texts are wrapped at word
+ * boundaries (as by JTextArea) and painted line by line from the
+ * WrappedTextCache. Preparing a cell doesn't allocate (unlike JTextArea,
+ * whose setText() rebuilds its document), header instructions are
+ * painted in bold. Text is painted with the desktop font rendering hints
+ * (antialiasing) as by the Swing text components.
+ */
 @SuppressWarnings("serial")
-class CellRenderer extends JTextArea implements TableCellRenderer
+class CellRenderer extends JComponent implements TableCellRenderer
 {
+    private WrappedTextCache textCache = null;
+    
+    private String text = "";
+    private boolean bold = false;
+    
+    
     
-    public CellRenderer()
+    public CellRenderer(WrappedTextCache textCache)
     {
-        this.setLineWrap(true); // do wrap lines
-        this.setWrapStyleWord(true); // wrap lines at word boundaries
+        this.textCache = textCache;
+        this.setOpaque(true);
         
     } // CellRenderer() -----------------------------------------------------
     
@@ -148,69 +458,330 @@ class CellRenderer extends JTextArea implements TableCellRenderer
                                                    boolean hasFocus,
                                                    int row, int column)
     {
-        String s = value != null ? value.toString() : "";
-        this.setText(s);
-
-        // table row height sizing issue, bug in JTable+TextArea returning
-        // correct preferred size, more on:
-        // http://bugs.sun.com/bugdatabase/view_bug.do?bug_id=4446522
-        // seems to be a bug still in Java 1.6
-        // these two lines set the size implicitly and remove the problem
-        // so that rows needing to accommodate longer instructions get
-        // resized
-        this.setSize(table.getColumnModel().getColumn(column).getWidth(), 0);
-        this.getUI().getRootView(this).setSize(this.getWidth(), 0f);        
-        
-        // check if it's the first column (Instructions)
-        if(column == 0)
-        {
-            // now getPreferredSize() should return correct values
-            int prefRowHeight = (int) this.getPreferredSize().getHeight();
-            int currRowHeight = table.getRowHeight(row);
-
-            // adjust height row height to display longer instruction
-            if(currRowHeight < prefRowHeight)
-            {
-                table.setRowHeight(row, prefRowHeight + 10); // plus some extra
-            }         
-        }
+        // values of the instruction and comment columns are strings
+        this.text = value != null ? value.toString() : "";
+
+        // row heights are not adjusted here (while painting), they are
+        // measured beforehand by DataTable.measureRows()
         
         DataTable.setComponentColor(this, table, isSelected, row);
         
-        // set tooltip for columns to display cell's contents if necessary
-        // String toolTip = value.toString();
-        // this.setToolTipText("row: " + row + " col: " +
-        //                     column + "  " + toolTip);        
-        // this.setToolTipText(toolTip);
-        
         // if the instruction is meant as header, render the instruction,
         // i.e. the first column, in bold font
         CheckListTableModel model = (CheckListTableModel) table.getModel();
-        ArrayList<CheckListRow> allRows = model.getAllRows();
-        boolean isHeader = allRows.get(row).isHeaderOnly();
-        if(column == 0 && isHeader)
+        this.bold = column == 0 && model.isHeaderOnly(row);
+        
+        return this;
+        
+    } // getTableCellRendererComponent() ------------------------------------
+    
+    
+    
+    protected void paintComponent(Graphics g)
+    {
+        g.setColor(getBackground());
+        g.fillRect(0, 0, getWidth(), getHeight());
+        
+        Map<?, ?> hints = (Map<?, ?>) Toolkit.getDefaultToolkit()
+                              .getDesktopProperty("awt.font.desktophints");
+        if(hints != null)
         {
-            Font f = this.getFont();
-            this.setFont(f.deriveFont(Font.BOLD));
+            ((Graphics2D) g).addRenderingHints(hints);
         }
-        else
+        
+        WrappedTextCache.WrappedText w = textCache.get(text, bold, getWidth());
+        g.setColor(getForeground());
+        g.setFont(w.font);
+        int y = w.ascent;
+        for(int i = 0; i < w.lines && y - w.ascent < getHeight(); i++)
         {
-            // need to check font for the other cells - since JTable reuses
-            // instances of cell renderers, once it's set to BOLD, it is BOLD
-            // for all the next to come
-            Font f = this.getFont();
-            this.setFont(f.deriveFont(Font.PLAIN));
+            g.drawChars(w.chars, w.start[i], w.end[i] - w.start[i], 0, y);
+            y += w.lineHeight;
         }
         
-        return this;
-        
-    } // getTableCellRendererComponent() ------------------------------------
+    } // paintComponent() ---------------------------------------------------
+    
+    
+    
+    // the renderer is only used for painting, property changes and
+    // layout requests are not needed (as DefaultTableCellRenderer)
+    
+    public void invalidate()
+    {
+    }
+    
+    public void validate()
+    {
+    }
+    
+    public void revalidate()
+    {
+    }
+    
+    public void repaint(long tm, int x, int y, int width, int height)
+    {
+    }
+    
+    public void repaint(Rectangle r)
+    {
+    }
+    
+    protected void firePropertyChange(String propertyName, Object oldValue,
+                                      Object newValue)
+    {
+    }
+    
+    public void firePropertyChange(String propertyName, boolean oldValue,
+                                   boolean newValue)
+    {
+    }
     
        
 } // class CellRenderer =====================================================
 
 
 
+/**
+ * Texts wrapped at word boundaries (as JTextArea with word wrapping does,
+ * a newline always breaks the line), keyed by the text, font style and
+ * width. Used for painting the cells and for their heights. The least
+ * recently used entries are dropped when MAX_ENTRIES is reached. Used on
+ * the event-dispatching thread only.
+ */
+class WrappedTextCache
+{
+    private static final int MAX_ENTRIES = 4096;
+    
+    private Font plainFont = null;
+    private Font boldFont = null;
+    
+    private FontMetrics plainMetrics = null;
+    private FontMetrics boldMetrics = null;
+    
+    @SuppressWarnings("serial")
+    private LinkedHashMap<Key, WrappedText> texts =
+        new LinkedHashMap<Key, WrappedText>(256, 0.75f, true)
+    {
+        protected boolean removeEldestEntry(Map.Entry<Key, WrappedText> eldest)
+        {
+            return size() > MAX_ENTRIES;
+        }
+    };
+    
+    // looked up without allocating a new key
+    private Key probe = new Key();
+    
+    private long hits = 0;
+    private long misses = 0;
+    
+    
+    
+    /**
+     * component - provides font metrics
+     */
+    public WrappedTextCache(Font font, JComponent component)
+    {
+        plainFont = font.deriveFont(Font.PLAIN);
+        boldFont = font.deriveFont(Font.BOLD);
+        plainMetrics = component.getFontMetrics(plainFont);
+        boldMetrics = component.getFontMetrics(boldFont);
+        
+    } // WrappedTextCache() -------------------------------------------------
+    
+    
+    
+    /**
+     * The text wrapped to width (header instructions are rendered in bold).
+     */
+    public WrappedText get(String text, boolean bold, int width)
+    {
+        probe.set(text, bold, width);
+        WrappedText w = texts.get(probe);
+        if(w != null)
+        {
+            hits++;
+            return w;
+        }
+        misses++;
+        
+        w = wrap(text, bold ? boldFont : plainFont,
+                 bold ? boldMetrics : plainMetrics, width);
+        Key key = new Key();
+        key.set(text, bold, width);
+        texts.put(key, w);
+        return w;
+        
+    } // get() --------------------------------------------------------------
+    
+    
+    
+    private static WrappedText wrap(String text, Font font, FontMetrics fm,
+                                    int width)
+    {
+        char[] c = text.toCharArray();
+        for(int i = 0; i < c.length; i++)
+        {
+            if(c[i] == '\t' || c[i] == '\r')
+            {
+                c[i] = ' ';
+            }
+        }
+        
+        int[] start = new int[8];
+        int[] end = new int[8];
+        int lines = 0;
+        int i = 0;
+        while(i <= c.length)
+        {
+            int lineStart = i;
+            int lineEnd = c.length;
+            int next = c.length + 1;
+            int x = 0;
+            // position after the last space on the line
+            int wordStart = -1;
+            // chars of the code point at j, a surrogate pair is measured
+            // (and never broken) as one character
+            int n = 1;
+            for(int j = i; j < c.length; j += n)
+            {
+                if(c[j] == '\n')
+                {
+                    lineEnd = j;
+                    next = j + 1;
+                    break;
+                }
+                n = Character.charCount(Character.codePointAt(c, j));
+                int cw = n == 1 ? fm.charWidth(c[j]) : fm.charsWidth(c, j, n);
+                if(x + cw > width && j > lineStart)
+                {
+                    if(c[j] == ' ')
+                    {
+                        // the space at the break is not painted
+                        lineEnd = j;
+                        next = j + 1;
+                    }
+                    else if(wordStart > lineStart)
+                    {
+                        lineEnd = wordStart;
+                        next = wordStart;
+                    }
+                    else
+                    {
+                        // word longer than the line is broken
+                        lineEnd = j;
+                        next = j;
+                    }
+                    break;
+                }
+                x += cw;
+                if(c[j] == ' ')
+                {
+                    wordStart = j + 1;
+                }
+            }
+            
+            if(lines == start.length)
+            {
+                start = Arrays.copyOf(start, lines * 2);
+                end = Arrays.copyOf(end, lines * 2);
+            }
+            start[lines] = lineStart;
+            end[lines] = lineEnd;
+            lines++;
+            i = next;
+        }
+        
+        return new WrappedText(c, start, end, lines, font, fm.getAscent(),
+                               fm.getHeight());
+        
+    } // wrap() -------------------------------------------------------------
+    
+    
+    
+    public String getStatistics()
+    {
+        return "wrapped text cache size: " + texts.size() + " hits: " +
+               hits + " misses: " + misses;
+        
+    } // getStatistics() ----------------------------------------------------
+    
+    
+    
+    /**
+     * Lines of a wrapped text, line i is chars[start[i]] .. chars[end[i]].
+     */
+    static final class WrappedText
+    {
+        final char[] chars;
+        final int[] start;
+        final int[] end;
+        final int lines;
+        final Font font;
+        final int ascent;
+        final int lineHeight;
+        
+        
+        WrappedText(char[] chars, int[] start, int[] end, int lines,
+                    Font font, int ascent, int lineHeight)
+        {
+            this.chars = chars;
+            this.start = start;
+            this.end = end;
+            this.lines = lines;
+            this.font = font;
+            this.ascent = ascent;
+            this.lineHeight = lineHeight;
+        }
+        
+        
+        int getHeight()
+        {
+            return lines * lineHeight;
+        }
+        
+    } // class WrappedText ==================================================
+    
+    
+    
+    private static final class Key
+    {
+        private String text = null;
+        private boolean bold = false;
+        private int width = 0;
+        private int hash = 0;
+        
+        
+        void set(String text, boolean bold, int width)
+        {
+            this.text = text;
+            this.bold = bold;
+            this.width = width;
+            this.hash = (text.hashCode() * 31 + width) * 2 + (bold ? 1 : 0);
+        }
+        
+        
+        public int hashCode()
+        {
+            return hash;
+        }
+        
+        
+        public boolean equals(Object o)
+        {
+            if(! (o instanceof Key))
+            {
+                return false;
+            }
+            Key k = (Key) o;
+            return width == k.width && bold == k.bold && text.equals(k.text);
+        }
+        
+    } // class Key ==========================================================
+    
+} // class WrappedTextCache =================================================
+
+
+
 @SuppressWarnings("serial")
 class CellEditor extends AbstractCellEditor implements TableCellEditor
 {
@@ -281,6 +852,76 @@ class CellEditor extends AbstractCellEditor implements TableCellEditor
 
 
 
+/**
+ * Renders the checkbox column. One checkbox for ticked and one for not
+ * ticked cells, so that rendering a cell doesn't change (and fire events
+ * of) the checkbox state as the JTable default Boolean renderer does.
+ */
+class CheckBoxRenderer implements TableCellRenderer
+{
+    private JCheckBox ticked = null;
+    private JCheckBox unticked = null;
+    
+    private Border noFocusBorder = new EmptyBorder(1, 1, 1, 1);
+    
+    
+    public CheckBoxRenderer()
+    {
+        ticked = createCheckBox(true);
+        unticked = createCheckBox(false);
+        
+    } // CheckBoxRenderer() -------------------------------------------------
+    
+    
+    
+    @SuppressWarnings("serial")
+    private static JCheckBox createCheckBox(boolean selected)
+    {
+        // property changes (colours) are not propagated to the checkbox
+        // UI, which would create an event for each cell
+        JCheckBox c = new JCheckBox()
+        {
+            protected void firePropertyChange(String propertyName,
+                                              Object oldValue,
+                                              Object newValue)
+            {
+            }
+            
+            public void revalidate()
+            {
+            }
+            
+            public void repaint(long tm, int x, int y, int width, int height)
+            {
+            }
+        };
+        c.setSelected(selected);
+        c.setHorizontalAlignment(JCheckBox.CENTER);
+        c.setBorderPainted(true);
+        return c;
+        
+    } // createCheckBox() ---------------------------------------------------
+    
+    
+    
+    public Component getTableCellRendererComponent(JTable table, Object value,
+                                                   boolean isSelected,
+                                                   boolean hasFocus,
+                                                   int row, int column)
+    {
+        JCheckBox c = Boolean.TRUE.equals(value) ? ticked : unticked;
+        DataTable.setComponentColor(c, table, isSelected, row);
+        c.setBorder(hasFocus ?
+                    UIManager.getBorder("Table.focusCellHighlightBorder") :
+                    noFocusBorder);
+        return c;
+        
+    } // getTableCellRendererComponent() ------------------------------------
+    
+} // class CheckBoxRenderer =================================================
+
+
+
 /**
  * Class is "used" to render a table cell (not when mouse is clicked in a
  * cell), used at columnHelp.setCellRenderer( ... )
@@ -290,6 +931,9 @@ class ButtonRenderer extends JPanel implements TableCellRenderer
 {
     private TableButton button = null;
     
+    // url the button points to, shown as tooltip
+    private String url = null;
+    
     
     public ButtonRenderer() 
     {
@@ -297,6 +941,9 @@ class ButtonRenderer extends JPanel implements TableCellRenderer
         
         button = new TableButton();        
         this.add(button);        
+        
+        // set the question mark on the button
+        button.setText("?");
                 
     } // ButtonRenderer() ---------------------------------------------------
   
@@ -309,18 +956,25 @@ class ButtonRenderer extends JPanel implements TableCellRenderer
     {
         
         DataTable.setComponentColor(this, table, isSelected, row);
- 
-        // set the question mark on the button
-        button.setText("?");
         
-        // setting tooltip - url the button points to (value)
+        // tooltip - url the button points to (value), JTable asks the
+        // renderer for it (setToolTipText() would register the renderer
+        // with the ToolTipManager for each cell)
         String s = value != null ? value.toString() : ""; 
-        this.setToolTipText("".equals(s) ? "<empty>" : s);
+        this.url = "".equals(s) ? "<empty>" : s;
         
         return this;
         
     } // getTableCellRendererComponent() ------------------------------------
     
+    
+    
+    public String getToolTipText()
+    {
+        return url;
+        
+    } // getToolTipText() ---------------------------------------------------
+    
 } // class ButtonRenderer ===================================================
 
 
@@ -387,8 +1041,7 @@ class ButtonEditor extends DefaultCellEditor
             try
             {
                 String currentCheckList = model.getActiveCheckList();
-                ArrayList<CheckListRow> allRows = model.getAllRows();
-                String urlToShow = allRows.get(buttonRow).getHelpUrl();
+                String urlToShow = model.getRows().getHelpUrl(buttonRow);
                 
                 if("".equals(urlToShow))
                 {
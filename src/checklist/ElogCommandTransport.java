@@ -0,0 +1,147 @@
+package checklist;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+import mylogger.MyLogger;
+
+
+
+/**
+ * Sends ATLOG submissions by executing the elog command line client
+ * (CheckList.createElogCommand()) via CommandRunner. The message is given
+ * to elog in a temporary file, the command is killed if it runs longer
+ * than TIMEOUT.
+ *
+ * @author Zdenek Maxa
+ *
+ */
+final class ElogCommandTransport implements ElogTransport
+{
+    private static MyLogger logger =
+        MyLogger.getLogger(ElogCommandTransport.class);
+
+    // milliseconds for one execution of the elog command
+    private static final long TIMEOUT = 30000;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+
+    private CommandRunner runner = new CommandRunner(TIMEOUT);
+
+    private ElogServer server = null;
+
+
+
+
+    public ElogCommandTransport(ElogServer server)
+    {
+        this.server = server;
+
+    } // ElogCommandTransport() ---------------------------------------------
+
+
+
+    public String submit(String message, String activeCheckList,
+                         String[] systemAffected)
+    {
+        File messageFile = null;
+        try
+        {
+            messageFile = File.createTempFile("checklist-elog-", ".txt");
+            OutputStream out = new FileOutputStream(messageFile);
+            try
+            {
+                out.write(message.getBytes(UTF8));
+            }
+            finally
+            {
+                out.close();
+            }
+            return execute(CheckList.createElogCommand(server,
+                               messageFile.getPath(),
+                               activeCheckList, systemAffected));
+        }
+        catch(IOException ioe)
+        {
+            return "Could not write elog message file, reason: " +
+                   ioe.getMessage();
+        }
+        finally
+        {
+            if(messageFile != null && ! messageFile.delete())
+            {
+                logger.warn("Could not delete elog message file \"" +
+                            messageFile + "\"");
+            }
+        }
+
+    } // submit() -----------------------------------------------------------
+
+
+
+    /**
+     * Executes the elog command, returns null on success, reason of
+     * the failure otherwise.
+     */
+    private String execute(String[] command)
+    {
+        logger.warn("Going to execute ATLOG (elog) inserting command ...");
+        CommandRunner.Result r = null;
+        try
+        {
+            r = runner.run(command, null);
+        }
+        catch(IOException ioe)
+        {
+            return "Error executing elog inserting command, reason: " +
+                   ioe.getMessage();
+        }
+        catch(InterruptedException ie)
+        {
+            Thread.currentThread().interrupt();
+            return "interrupted";
+        }
+
+        logOutput(r.stdout, false);
+        logOutput(r.stderr, true);
+        if(r.timedOut)
+        {
+            return "timed out after " + TIMEOUT + " ms";
+        }
+        if(r.exitValue != 0)
+        {
+            return "elog command exit value " + r.exitValue;
+        }
+        logger.warn("Executing elog inserting command finished in " +
+                    r.duration + " ms.");
+        return null;
+
+    } // execute() ----------------------------------------------------------
+
+
+
+    private static void logOutput(String output, boolean error)
+    {
+        for(String line : output.split("\n"))
+        {
+            if(line.trim().length() == 0)
+            {
+                continue;
+            }
+            if(error)
+            {
+                logger.error("elog: " + line);
+            }
+            else
+            {
+                logger.warn("elog: " + line);
+            }
+        }
+
+    } // logOutput() --------------------------------------------------------
+
+} // class ElogCommandTransport =============================================
@@ -0,0 +1,232 @@
+package checklist;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import mylogger.MyLogger;
+
+
+
+/**
+ * Sends ATLOG submissions to the elog server directly over HTTP, the same
+ * way the elog command line client does (POST of a multipart form to the
+ * logbook URL, the server answers by redirecting to the new message).
+ * No process is started per submission, the connection is kept alive and
+ * reused by the JDK HTTP connection cache (all bytes of each response are
+ * read for that).
+ *
+ * The attributes are the same as for the command line client
+ * (CheckList.createElogAttributes()).
+ *
+ * @author Zdenek Maxa
+ *
+ */
+final class ElogHttpTransport implements ElogTransport
+{
+    private static MyLogger logger =
+        MyLogger.getLogger(ElogHttpTransport.class);
+
+    // milliseconds
+    private static final int CONNECT_TIMEOUT = 10000;
+    private static final int READ_TIMEOUT = 30000;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    // URL of the logbook
+    private URL url = null;
+
+    private String logbook = null;
+
+    private Random random = new Random();
+
+
+
+
+    public ElogHttpTransport(ElogServer server)
+    {
+        this.logbook = server.logbook;
+        try
+        {
+            this.url = new URL("http", server.host, server.port,
+                               "/" + logbook.replace(" ", "+") + "/");
+        }
+        catch(MalformedURLException mue)
+        {
+            throw new IllegalArgumentException(mue.getMessage());
+        }
+
+    } // ElogHttpTransport() ------------------------------------------------
+
+
+
+    public String submit(String message, String activeCheckList,
+                         String[] systemAffected)
+    {
+        String password = encodePassword(ElogServer.PASSWORD);
+
+        LinkedHashMap<String, String> fields = new LinkedHashMap<String, String>();
+        fields.put("cmd", "Submit");
+        fields.put("exp", logbook);
+        fields.put("unm", ElogServer.USER);
+        fields.put("upwd", password);
+        // the form field name of an attribute has spaces replaced by
+        // underscores (elog client does the same)
+        for(Map.Entry<String, String> a :
+            CheckList.createElogAttributes(activeCheckList,
+                                           systemAffected).entrySet())
+        {
+            fields.put(a.getKey().replace(' ', '_'), a.getValue());
+        }
+        fields.put("Text", message);
+        fields.put("encoding", "plain");
+
+        String boundary = "---------------------------" +
+                          Long.toHexString(random.nextLong());
+        byte[] body = createForm(fields, boundary);
+
+        logger.warn("Sending ATLOG (elog) submission to " + url + " ...");
+        HttpURLConnection connection = null;
+        try
+        {
+            connection = (HttpURLConnection) url.openConnection();
+            connection.setInstanceFollowRedirects(false);
+            connection.setConnectTimeout(CONNECT_TIMEOUT);
+            connection.setReadTimeout(READ_TIMEOUT);
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(body.length);
+            connection.setRequestProperty("Content-Type",
+                           "multipart/form-data; boundary=" + boundary);
+            connection.setRequestProperty("Cookie", "unm=" +
+                           ElogServer.USER + "; upwd=" + password);
+
+            OutputStream out = connection.getOutputStream();
+            out.write(body);
+            out.close();
+
+            int code = connection.getResponseCode();
+            String location = connection.getHeaderField("Location");
+            String response = readResponse(connection);
+            return checkResponse(code, location, response);
+        }
+        catch(IOException ioe)
+        {
+            if(connection != null)
+            {
+                // broken connection is not reused
+                connection.disconnect();
+            }
+            return "Error sending elog submission, reason: " + ioe.getMessage();
+        }
+
+    } // submit() -----------------------------------------------------------
+
+
+
+    /**
+     * Returns null if the response means the message was accepted, the
+     * reason otherwise (as the elog command line client does).
+     */
+    private static String checkResponse(int code, String location,
+                                        String response)
+    {
+        if(location != null)
+        {
+            if(location.contains("has moved"))
+            {
+                return "logbook server has moved";
+            }
+            if(location.contains("fail"))
+            {
+                return "invalid user name or password";
+            }
+            String id = location.substring(location.lastIndexOf('/') + 1);
+            logger.warn("Message successfully transmitted, ID=" + id);
+            return null;
+        }
+        if(response.contains("form name=form1"))
+        {
+            return "missing or invalid elog attribute(s)";
+        }
+        if(response.contains("Error: Attribute"))
+        {
+            int i = response.indexOf("Error: Attribute");
+            int end = response.indexOf('<', i);
+            return response.substring(i, end > i ? end : response.length());
+        }
+        return "unexpected elog HTTP response " + code;
+
+    } // checkResponse() ----------------------------------------------------
+
+
+
+    /**
+     * Reads the whole response (needed for the connection to be reused).
+     */
+    private static String readResponse(HttpURLConnection connection)
+                                       throws IOException
+    {
+        InputStream in = connection.getResponseCode() >= 400 ?
+                         connection.getErrorStream() :
+                         connection.getInputStream();
+        if(in == null)
+        {
+            return "";
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buf = new byte[4096];
+        try
+        {
+            int n = 0;
+            while((n = in.read(buf)) > 0)
+            {
+                bytes.write(buf, 0, n);
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+        return new String(bytes.toByteArray(), UTF8);
+
+    } // readResponse() -----------------------------------------------------
+
+
+
+    private static byte[] createForm(Map<String, String> fields,
+                                     String boundary)
+    {
+        StringBuilder sb = new StringBuilder();
+        for(Map.Entry<String, String> f : fields.entrySet())
+        {
+            sb.append("--").append(boundary).append("\r\n");
+            sb.append("Content-Disposition: form-data; name=\"");
+            sb.append(f.getKey()).append("\"\r\n\r\n");
+            sb.append(f.getValue()).append("\r\n");
+        }
+        sb.append("--").append(boundary).append("--\r\n");
+        return sb.toString().getBytes(UTF8);
+
+    } // createForm() -------------------------------------------------------
+
+
+
+    /**
+     * Password as sent by the elog command line client (base64).
+     */
+    private static String encodePassword(String password)
+    {
+        return Base64.getEncoder().encodeToString(password.getBytes(UTF8));
+
+    } // encodePassword() ---------------------------------------------------
+
+} // class ElogHttpTransport ================================================
@@ -0,0 +1,651 @@
+package checklist;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Set;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+import mylogger.MyLogger;
+
+
+
+/**
+ * Write-ahead journal of ATLOG submissions (checklist results). A
+ * submission is appended (and synced to the disk) before it is queued for
+ * sending, each result sink which accepted it is acknowledged and the
+ * submission is completed when all sinks accepted it, so that a
+ * submission is not lost if a sink is not available or the application
+ * is killed meanwhile. Submissions not completed are sent again on the
+ * next start (ElogSubmitter.replay()), only to the sinks which didn't
+ * acknowledge them.
+ *
+ * Each submission has a unique key (idempotency key), acknowledging or
+ * replaying a submission twice has no effect. A submission may still be
+ * delivered twice to a sink if the application dies after the sink
+ * accepted it but before the acknowledgement was written.
+ *
+ * The journal only grows by appending, it's compacted (rewritten with
+ * the pending submissions only) once COMPACT_THRESHOLD submissions were
+ * completed or when no submission is pending.
+ *
+ * The journal is used by one process at a time, open() takes an exclusive
+ * lock (on the journal file name + ".lock", the journal itself is
+ * replaced when compacted) which is held until close(). If another
+ * CheckList instance holds it, open() fails and the submissions of this
+ * instance are not journaled - two instances sharing the journal would
+ * lose each other's submissions when compacting and replay them twice.
+ *
+ * Journal layout (all numbers big-endian), sequence of records:
+ *   int length of the record body, body, long crc32 of the body
+ * body:
+ *   byte type, string key
+ *   ENTRY only: long creation time, string title, int number of elog
+ *       systems affected (-1 for null), per system: string, string message
+ *   SINK_ACK only: string sink name
+ * string is int length of UTF-8 bytes (-1 for null) followed by the bytes
+ * A record which is incomplete or has wrong checksum (write interrupted
+ * by a crash) ends the journal, it's cut off when the journal is opened.
+ *
+ * @author Zdenek Maxa
+ *
+ */
+final class ElogOutbox
+{
+    private static MyLogger logger = MyLogger.getLogger(ElogOutbox.class);
+
+    private static final byte ENTRY = 1;
+    private static final byte ACK = 2;
+    private static final byte SINK_ACK = 3;
+
+    private static final int COMPACT_THRESHOLD = 64;
+
+    // sanity limit of a record length when reading
+    private static final int MAX_RECORD_LENGTH = 64 * 1024 * 1024;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    // default journal file
+    static final String DEFAULT_FILE_NAME =
+        System.getProperty("user.home") + File.separator + ".checklist" +
+        File.separator + "elog-outbox.journal";
+
+    // the journal file
+    private String journalFileName = null;
+
+    // appending to the journal, null if not open
+    private FileOutputStream out = null;
+
+    // lock files of the journals open in this process, closing another
+    // channel of a locked file would release the lock
+    private static final HashSet<String> LOCKED = new HashSet<String>();
+
+    // exclusive lock of the journal while it's open
+    private String lockFileName = null;
+    private FileChannel lockChannel = null;
+    private FileLock lock = null;
+
+    // submissions not acknowledged, key is the submission key
+    private LinkedHashMap<String, Entry> pending =
+        new LinkedHashMap<String, Entry>();
+
+    // sinks which acknowledged a pending submission, key is its key
+    private HashMap<String, HashSet<String>> sinkAcks =
+        new HashMap<String, HashSet<String>>();
+
+    // completed submissions still recorded in the journal
+    private int acknowledged = 0;
+
+
+
+
+    public ElogOutbox(String journalFileName)
+    {
+        this.journalFileName = journalFileName;
+
+    } // ElogOutbox() -------------------------------------------------------
+
+
+
+    /**
+     * Locks the journal, reads it (cutting off an incomplete last record)
+     * and opens it for appending, returns submissions which were not
+     * acknowledged. Fails if the journal is locked by another process.
+     */
+    public synchronized ArrayList<Entry> open() throws IOException
+    {
+        File file = new File(journalFileName);
+        File dir = file.getAbsoluteFile().getParentFile();
+        if(! dir.isDirectory() && ! dir.mkdirs())
+        {
+            throw new IOException("can't create directory " + dir);
+        }
+
+        lock();
+        try
+        {
+            load(file);
+        }
+        catch(IOException ioe)
+        {
+            close();
+            throw ioe;
+        }
+
+        logger.info("ATLOG outbox journal \"" + journalFileName + "\" " +
+                    "opened, " + pending.size() + " submission(s) pending.");
+        if(acknowledged > 0)
+        {
+            compact();
+        }
+        return new ArrayList<Entry>(pending.values());
+
+    } // open() -------------------------------------------------------------
+
+
+
+    private void lock() throws IOException
+    {
+        String name = new File(journalFileName + ".lock").getCanonicalPath();
+        synchronized(LOCKED)
+        {
+            if(! LOCKED.add(name))
+            {
+                throw new IOException("journal is already open");
+            }
+        }
+        lockFileName = name;
+        try
+        {
+            lockChannel = new RandomAccessFile(name, "rw").getChannel();
+            lock = lockChannel.tryLock();
+        }
+        catch(OverlappingFileLockException ofle)
+        {
+            lock = null;
+        }
+        finally
+        {
+            if(lock == null)
+            {
+                unlock();
+            }
+        }
+        if(lock == null)
+        {
+            throw new IOException("journal is used by another CheckList " +
+                                  "instance");
+        }
+
+    } // lock() -------------------------------------------------------------
+
+
+
+    private void unlock()
+    {
+        // closing the channel releases the lock
+        close(lockChannel);
+        lockChannel = null;
+        lock = null;
+        if(lockFileName != null)
+        {
+            synchronized(LOCKED)
+            {
+                LOCKED.remove(lockFileName);
+            }
+            lockFileName = null;
+        }
+
+    } // unlock() -----------------------------------------------------------
+
+
+
+    private void load(File file) throws IOException
+    {
+        pending.clear();
+        sinkAcks.clear();
+        acknowledged = 0;
+        long valid = 0;
+        if(file.exists())
+        {
+            valid = read(file);
+            if(valid < file.length())
+            {
+                logger.warn("ATLOG outbox journal \"" + journalFileName +
+                            "\" has incomplete last record (" +
+                            (file.length() - valid) + " bytes), cut off.");
+                truncate(file, valid);
+            }
+        }
+        out = new FileOutputStream(file, true);
+
+    } // load() -------------------------------------------------------------
+
+
+
+    /**
+     * Records a new submission (synced to the disk when this returns).
+     */
+    public synchronized Entry append(String message, String title,
+                                     String[] systemAffected)
+                                     throws IOException
+    {
+        checkOpen();
+        Entry e = new Entry(UUID.randomUUID().toString(),
+                            System.currentTimeMillis(), title,
+                            systemAffected, message);
+        writeRecord(out, encode(ENTRY, e));
+        out.getFD().sync();
+        pending.put(e.key, e);
+        return e;
+
+    } // append() -----------------------------------------------------------
+
+
+
+    /**
+     * Records the submission as delivered to the sink (sink name).
+     */
+    public synchronized void acknowledge(String key, String sink)
+                                         throws IOException
+    {
+        checkOpen();
+        if(! pending.containsKey(key) || ! addSinkAck(key, sink))
+        {
+            return; // unknown, completed or already acknowledged
+        }
+        writeRecord(out, encodeSinkAck(key, sink));
+        out.getFD().sync();
+
+    } // acknowledge() ------------------------------------------------------
+
+
+
+    /**
+     * Records the submission as delivered to all sinks, the journal is
+     * compacted when enough submissions were completed.
+     */
+    public synchronized void complete(String key) throws IOException
+    {
+        checkOpen();
+        Entry e = pending.remove(key);
+        if(e == null)
+        {
+            return; // unknown or already completed
+        }
+        sinkAcks.remove(key);
+        writeRecord(out, encode(ACK, e));
+        out.getFD().sync();
+        acknowledged++;
+
+        if(pending.isEmpty() || acknowledged >= COMPACT_THRESHOLD)
+        {
+            compact();
+        }
+
+    } // complete() ---------------------------------------------------------
+
+
+
+    /**
+     * Names of the sinks which acknowledged the pending submission.
+     */
+    public synchronized Set<String> getAcknowledgedSinks(String key)
+    {
+        HashSet<String> sinks = sinkAcks.get(key);
+        return sinks != null ? new HashSet<String>(sinks) :
+                               new HashSet<String>();
+
+    } // getAcknowledgedSinks() ---------------------------------------------
+
+
+
+    private boolean addSinkAck(String key, String sink)
+    {
+        HashSet<String> sinks = sinkAcks.get(key);
+        if(sinks == null)
+        {
+            sinks = new HashSet<String>();
+            sinkAcks.put(key, sinks);
+        }
+        return sinks.add(sink);
+
+    } // addSinkAck() -------------------------------------------------------
+
+
+
+    public synchronized int getPendingCount()
+    {
+        return pending.size();
+
+    } // getPendingCount() --------------------------------------------------
+
+
+
+    public synchronized void close()
+    {
+        close(out);
+        out = null;
+        unlock();
+
+    } // close() ------------------------------------------------------------
+
+
+
+    private void checkOpen() throws IOException
+    {
+        if(out == null)
+        {
+            throw new IOException("ATLOG outbox journal \"" +
+                                  journalFileName + "\" is not open");
+        }
+
+    } // checkOpen() --------------------------------------------------------
+
+
+
+    /**
+     * Rewrites the journal with the pending submissions only, the journal
+     * is replaced by the complete new one.
+     */
+    private void compact() throws IOException
+    {
+        File file = new File(journalFileName);
+        File tmpFile = new File(journalFileName + ".tmp");
+        FileOutputStream tmp = new FileOutputStream(tmpFile);
+        try
+        {
+            for(Entry e : pending.values())
+            {
+                writeRecord(tmp, encode(ENTRY, e));
+                for(String sink : getAcknowledgedSinks(e.key))
+                {
+                    writeRecord(tmp, encodeSinkAck(e.key, sink));
+                }
+            }
+            tmp.getFD().sync();
+        }
+        finally
+        {
+            close(tmp);
+        }
+
+        close(out);
+        try
+        {
+            // never leaves the journal missing or incomplete
+            Files.move(tmpFile.toPath(), file.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally
+        {
+            // keeps appending to the previous journal if the move failed
+            out = new FileOutputStream(file, true);
+        }
+        logger.debug("ATLOG outbox journal compacted, " + acknowledged +
+                     " completed submission(s) removed, " +
+                     pending.size() + " pending.");
+        acknowledged = 0;
+
+    } // compact() ----------------------------------------------------------
+
+
+
+    /**
+     * Reads all complete records, returns length of the valid part.
+     */
+    private long read(File file) throws IOException
+    {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                                 new FileInputStream(file)));
+        long valid = 0;
+        try
+        {
+            while(true)
+            {
+                int length = in.readInt();
+                if(length <= 0 || length > MAX_RECORD_LENGTH)
+                {
+                    break;
+                }
+                byte[] body = new byte[length];
+                in.readFully(body);
+                long crc = in.readLong();
+                CRC32 c = new CRC32();
+                c.update(body);
+                if(c.getValue() != crc)
+                {
+                    break;
+                }
+                apply(body);
+                valid += 4 + length + 8;
+            }
+        }
+        catch(EOFException eof)
+        {
+            // end of the journal or incomplete last record
+        }
+        finally
+        {
+            close(in);
+        }
+        return valid;
+
+    } // read() -------------------------------------------------------------
+
+
+
+    private void apply(byte[] body) throws IOException
+    {
+        DataInputStream in = new DataInputStream(
+                                 new ByteArrayInputStream(body));
+        byte type = in.readByte();
+        String key = readString(in);
+        if(type == ENTRY)
+        {
+            long created = in.readLong();
+            String title = readString(in);
+            int n = in.readInt();
+            String[] systems = n < 0 ? null : new String[n];
+            for(int i = 0; i < n; i++)
+            {
+                systems[i] = readString(in);
+            }
+            String message = readString(in);
+            pending.put(key, new Entry(key, created, title, systems, message));
+        }
+        else if(type == ACK)
+        {
+            if(pending.remove(key) != null)
+            {
+                sinkAcks.remove(key);
+                acknowledged++;
+            }
+        }
+        else if(type == SINK_ACK)
+        {
+            String sink = readString(in);
+            if(pending.containsKey(key))
+            {
+                addSinkAck(key, sink);
+            }
+        }
+
+    } // apply() ------------------------------------------------------------
+
+
+
+    private static byte[] encode(byte type, Entry e) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream d = new DataOutputStream(bytes);
+        d.writeByte(type);
+        writeString(d, e.key);
+        if(type == ENTRY)
+        {
+            d.writeLong(e.created);
+            writeString(d, e.title);
+            d.writeInt(e.systemAffected != null ? e.systemAffected.length : -1);
+            for(int i = 0; e.systemAffected != null &&
+                           i < e.systemAffected.length; i++)
+            {
+                writeString(d, e.systemAffected[i]);
+            }
+            writeString(d, e.message);
+        }
+        d.close();
+        return bytes.toByteArray();
+
+    } // encode() -----------------------------------------------------------
+
+
+
+    private static byte[] encodeSinkAck(String key, String sink)
+                                        throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream d = new DataOutputStream(bytes);
+        d.writeByte(SINK_ACK);
+        writeString(d, key);
+        writeString(d, sink);
+        d.close();
+        return bytes.toByteArray();
+
+    } // encodeSinkAck() ----------------------------------------------------
+
+
+
+    /**
+     * Writes the whole record with a single write.
+     */
+    private static void writeRecord(FileOutputStream out, byte[] body)
+                                    throws IOException
+    {
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(body.length + 12);
+        DataOutputStream d = new DataOutputStream(bytes);
+        d.writeInt(body.length);
+        d.write(body);
+        d.writeLong(crc.getValue());
+        d.close();
+        out.write(bytes.toByteArray());
+
+    } // writeRecord() ------------------------------------------------------
+
+
+
+    private static void truncate(File file, long length) throws IOException
+    {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try
+        {
+            raf.setLength(length);
+            raf.getFD().sync();
+        }
+        finally
+        {
+            close(raf);
+        }
+
+    } // truncate() ---------------------------------------------------------
+
+
+
+    private static void writeString(DataOutputStream out, String s)
+                                    throws IOException
+    {
+        if(s == null)
+        {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] b = s.getBytes(UTF8);
+        out.writeInt(b.length);
+        out.write(b);
+
+    } // writeString() ------------------------------------------------------
+
+
+
+    private static String readString(DataInputStream in) throws IOException
+    {
+        int len = in.readInt();
+        if(len < 0)
+        {
+            return null;
+        }
+        byte[] b = new byte[len];
+        in.readFully(b);
+        return new String(b, UTF8);
+
+    } // readString() -------------------------------------------------------
+
+
+
+    private static void close(Closeable c)
+    {
+        if(c == null)
+        {
+            return;
+        }
+        try
+        {
+            c.close();
+        }
+        catch(IOException ioe)
+        {
+            logger.warn("Could not close ATLOG outbox journal, reason: " +
+                        ioe.getMessage());
+        }
+
+    } // close() ------------------------------------------------------------
+
+
+
+    /**
+     * One submission (checklist result), immutable.
+     */
+    static final class Entry
+    {
+        final String key;
+        final long created;
+        final String title;
+        final String[] systemAffected;
+        final String message;
+
+
+        Entry(String key, long created, String title, String[] systemAffected,
+              String message)
+        {
+            this.key = key;
+            this.created = created;
+            this.title = title;
+            this.systemAffected = systemAffected;
+            this.message = message;
+        }
+
+    } // class Entry ========================================================
+
+} // class ElogOutbox =======================================================
@@ -0,0 +1,49 @@
+package checklist;
+
+
+
+/**
+ * ATLOG (elog) server and logbook the checklist output is submitted to.
+ *
+ * @author Zdenek Maxa
+ *
+ */
+final class ElogServer
+{
+    // production elog
+    static final ElogServer PRODUCTION =
+        new ElogServer("pc-atlas-www.cern.ch", 8100, "ATLAS");
+
+    // testing elog, web: https://pcatdwww.cern.ch/elog/ATLOG_TEST_W
+    static final ElogServer TEST =
+        new ElogServer("pc-atlas-www.cern.ch", 8096, "ATLOG_TEST");
+
+    // account the checklist entries are submitted with (both servers)
+    static final String USER = "reljicd";
+    static final String PASSWORD = "trrean18";
+
+
+    final String host;
+    final int port;
+    final String logbook;
+
+
+
+
+    ElogServer(String host, int port, String logbook)
+    {
+        this.host = host;
+        this.port = port;
+        this.logbook = logbook;
+
+    } // ElogServer() -------------------------------------------------------
+
+
+
+    public String toString()
+    {
+        return host + ":" + port + "/" + logbook;
+
+    } // toString() ---------------------------------------------------------
+
+} // class ElogServer =======================================================
@@ -0,0 +1,68 @@
+package checklist;
+
+import mylogger.MyLogger;
+
+
+
+/**
+ * Delivers results into an ATLOG (elog) logbook via the default
+ * ElogTransport (exec or HTTP). One submission at a time.
+ *
+ * @author Zdenek Maxa
+ *
+ */
+final class ElogSink implements ResultSink
+{
+    private static MyLogger logger = MyLogger.getLogger(ElogSink.class);
+
+    private String name = null;
+
+    private ElogServer server = null;
+
+    // created on the first delivery (the transport option is set by then)
+    private ElogTransport transport = null;
+
+
+
+
+    public ElogSink(String name, ElogServer server)
+    {
+        this.name = name;
+        this.server = server;
+
+    } // ElogSink() ---------------------------------------------------------
+
+
+
+    public String getName()
+    {
+        return name;
+
+    } // getName() ----------------------------------------------------------
+
+
+
+    public int getConcurrency()
+    {
+        // the elog server assigns message IDs in order
+        return 1;
+
+    } // getConcurrency() ---------------------------------------------------
+
+
+
+    public String deliver(ElogOutbox.Entry result)
+    {
+        if(transport == null)
+        {
+            ElogTransportType type = ElogTransportType.getDefault();
+            logger.info("ATLOG submissions to " + server + " sent via " +
+                        type + " transport.");
+            transport = type.createTransport(server);
+        }
+        return transport.submit(result.message, result.title,
+                                result.systemAffected);
+
+    } // deliver() ----------------------------------------------------------
+
+} // class ElogSink =========================================================
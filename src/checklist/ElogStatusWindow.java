@@ -0,0 +1,137 @@
+package checklist;
+
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JDialog;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
+
+
+
+/**
+ * Small non-modal window showing progress of ATLOG submissions (the
+ * checklist window is closed right after the submission is queued).
+ * The window hides itself when all submissions are finished, unless one
+ * of them failed - then the failure is shown until the window is closed.
+ *
+ * @author Zdenek Maxa
+ *
+ */
+@SuppressWarnings("serial")
+final class ElogStatusWindow extends JDialog implements ElogSubmitterListener
+{
+    private static ElogStatusWindow instance = null;
+
+    private JLabel label = null;
+
+    private JButton closeButton = null;
+
+    // the last failure shown, null if there was none since shown
+    private String failure = null;
+
+
+
+
+    private ElogStatusWindow()
+    {
+        super((JDialog) null, "CheckList ATLOG", false);
+        setDefaultCloseOperation(HIDE_ON_CLOSE);
+        setFocusableWindowState(false);
+
+        label = new JLabel(" ");
+        label.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        closeButton = new JButton("Close");
+        closeButton.setVisible(false);
+        closeButton.addActionListener(new ActionListener()
+        {
+            public void actionPerformed(ActionEvent e)
+            {
+                failure = null;
+                setVisible(false);
+            }
+        });
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
+        buttonPanel.add(closeButton);
+
+        getContentPane().add(label, BorderLayout.CENTER);
+        getContentPane().add(buttonPanel, BorderLayout.SOUTH);
+
+    } // ElogStatusWindow() -------------------------------------------------
+
+
+
+    /**
+     * Creates the window (listening to the ElogSubmitter) when called for
+     * the first time, must be called on the event-dispatching thread.
+     */
+    static void install()
+    {
+        if(instance == null)
+        {
+            instance = new ElogStatusWindow();
+            ElogSubmitter.getInstance().addListener(instance);
+        }
+
+    } // install() ----------------------------------------------------------
+
+
+
+    public void submissionsChanged(final int pending,
+                                   final String activeCheckList,
+                                   final String error)
+    {
+        SwingUtilities.invokeLater(new Runnable()
+        {
+            public void run()
+            {
+                update(pending, activeCheckList, error);
+            }
+        });
+
+    } // submissionsChanged() -----------------------------------------------
+
+
+
+    private void update(int pending, String activeCheckList, String error)
+    {
+        if(error != null)
+        {
+            failure = "Inserting \"" + activeCheckList + "\" into ATLOG " +
+                      "failed: " + error;
+        }
+
+        if(pending == 0 && failure == null)
+        {
+            setVisible(false);
+            return;
+        }
+
+        StringBuilder text = new StringBuilder("<html>");
+        if(pending > 0)
+        {
+            text.append("Inserting checklist output into ATLOG, ");
+            text.append(pending).append(" pending ...");
+        }
+        if(failure != null)
+        {
+            text.append(pending > 0 ? "<br>" : "");
+            text.append(failure.replace("&", "&amp;").replace("<", "&lt;"));
+        }
+        label.setText(text.append("</html>").toString());
+        closeButton.setVisible(failure != null);
+        pack();
+        if(! isVisible())
+        {
+            setLocationRelativeTo(null);
+            setVisible(true);
+        }
+
+    } // update() -----------------------------------------------------------
+
+} // class ElogStatusWindow =================================================
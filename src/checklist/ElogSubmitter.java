@@ -0,0 +1,560 @@
+package checklist;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import mylogger.MyLogger;
+
+
+
+/**
+ * Submits checklist results into ATLOG (elog) and the other configured
+ * result sinks (ResultSinkType) in the background. The GUI
+ * (event-dispatching thread) only queues the submission and closes the
+ * window, the submission is delivered by the sink worker threads.
+ *
+ * Each submission is fanned out to all sinks in parallel, every sink has
+ * its own SinkWorker (bounded queue, concurrency limit, retries), so a
+ * slow or failing sink doesn't delay the others. A submission is finished
+ * when all sinks are done with it.
+ *
+ * Submissions are recorded in the ElogOutbox journal before they are
+ * queued, each sink which delivered a submission is acknowledged in the
+ * journal and the submission is completed when all sinks delivered it.
+ * A submission which failed for some sinks is queued again to those
+ * sinks only after REDRAIN_DELAY, unsent ones are replayed on the next
+ * start. A journaled submission which no sink queue accepted (all full)
+ * is queued for retry after REDRAIN_DELAY the same way, one which is not
+ * journaled is rejected.
+ *
+ * Number of pending submissions and submission latency (queued until
+ * finished by all sinks) are available for monitoring (getStatistics(),
+ * with statistics of each sink), listeners are notified when a
+ * submission is queued or finished.
+ *
+ * @author Zdenek Maxa
+ *
+ */
+final class ElogSubmitter
+{
+    private static MyLogger logger = MyLogger.getLogger(ElogSubmitter.class);
+
+    // milliseconds before a failed journaled submission is queued again
+    private static final long REDRAIN_DELAY = 300000;
+
+    private static ElogSubmitter instance = new ElogSubmitter();
+
+
+    // one per result sink, created when used for the first time
+    private SinkWorker[] workers = null;
+
+    // journal of submissions not yet sent, null if not available
+    private volatile ElogOutbox outbox = null;
+
+    private boolean outboxOpened = false;
+
+    // queues failed submissions again
+    private ScheduledExecutorService watchdog = null;
+
+    private CopyOnWriteArrayList<ElogSubmitterListener> listeners =
+        new CopyOnWriteArrayList<ElogSubmitterListener>();
+
+    // submissions queued or being sent
+    private AtomicInteger pending = new AtomicInteger();
+
+    private AtomicLong submitted = new AtomicLong();
+    private AtomicLong succeeded = new AtomicLong();
+    private AtomicLong failed = new AtomicLong();
+    private AtomicLong rejected = new AtomicLong();
+    private AtomicLong deferred = new AtomicLong();
+
+    // nanoseconds, queued until finished, of finished submissions
+    private AtomicLong totalLatency = new AtomicLong();
+    private AtomicLong maxLatency = new AtomicLong();
+    private volatile long lastLatency = 0;
+
+
+
+
+    private ElogSubmitter()
+    {
+        watchdog = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+        {
+            public Thread newThread(Runnable r)
+            {
+                Thread t = new Thread(r, "ElogSubmitter");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+
+    } // ElogSubmitter() ----------------------------------------------------
+
+
+
+    static ElogSubmitter getInstance()
+    {
+        return instance;
+
+    } // getInstance() ------------------------------------------------------
+
+
+
+    void addListener(ElogSubmitterListener listener)
+    {
+        listeners.add(listener);
+
+    } // addListener() ------------------------------------------------------
+
+
+
+    void removeListener(ElogSubmitterListener listener)
+    {
+        listeners.remove(listener);
+
+    } // removeListener() ---------------------------------------------------
+
+
+
+    /**
+     * Opens the outbox journal (when called for the first time) and queues
+     * submissions left in it unsent by the previous run.
+     */
+    void replay()
+    {
+        getOutbox();
+
+    } // replay() -----------------------------------------------------------
+
+
+
+    /**
+     * The outbox journal, opened when called for the first time, null if
+     * it can't be opened (submissions are then not journaled).
+     */
+    private ElogOutbox getOutbox()
+    {
+        ArrayList<ElogOutbox.Entry> unsent = null;
+        synchronized(this)
+        {
+            if(outboxOpened)
+            {
+                return outbox;
+            }
+            outboxOpened = true;
+            ElogOutbox o = new ElogOutbox(ElogOutbox.DEFAULT_FILE_NAME);
+            try
+            {
+                unsent = o.open();
+                outbox = o;
+            }
+            catch(IOException ioe)
+            {
+                logger.error("Could not open ATLOG outbox journal \"" +
+                             ElogOutbox.DEFAULT_FILE_NAME + "\", " +
+                             "submissions are not journaled, reason: " +
+                             ioe.getMessage());
+                return null;
+            }
+        }
+
+        for(ElogOutbox.Entry e : unsent)
+        {
+            logger.warn("Replaying ATLOG submission of \"" + e.title +
+                        "\" from " + new Date(e.created));
+            queue(e, outbox.getAcknowledgedSinks(e.key), true);
+        }
+        return outbox;
+
+    } // getOutbox() --------------------------------------------------------
+
+
+
+    /**
+     * Sink workers, created when called for the first time (the sinks
+     * option is set by then).
+     */
+    private synchronized SinkWorker[] getWorkers()
+    {
+        if(workers == null)
+        {
+            ResultSinkType[] types = ResultSinkType.getDefaults();
+            workers = new SinkWorker[types.length];
+            StringBuilder names = new StringBuilder();
+            for(int i = 0; i < types.length; i++)
+            {
+                workers[i] = new SinkWorker(types[i].createSink());
+                names.append(i > 0 ? ", " : "").append(types[i].getName());
+            }
+            logger.info("Checklist results delivered to: " + names);
+        }
+        return workers;
+
+    } // getWorkers() -------------------------------------------------------
+
+
+
+    /**
+     * Records the submission in the outbox journal and queues it to all
+     * sinks. If the queues of all sinks are full, the submission is queued
+     * for retry if it's journaled, rejected otherwise. Arguments as
+     * CheckList.createElogAttributes().
+     */
+    Outcome submit(String message, String activeCheckList,
+                   String[] systemAffected)
+    {
+        ElogOutbox o = getOutbox();
+        ElogOutbox.Entry entry = null;
+        if(o != null)
+        {
+            try
+            {
+                entry = o.append(message, activeCheckList, systemAffected);
+            }
+            catch(IOException ioe)
+            {
+                logger.error("Could not record ATLOG submission in the " +
+                             "outbox journal, reason: " + ioe.getMessage());
+            }
+        }
+        boolean journaled = entry != null;
+        if(entry == null)
+        {
+            // not journaled, sent only while the application runs
+            entry = new ElogOutbox.Entry(UUID.randomUUID().toString(),
+                                         System.currentTimeMillis(),
+                                         activeCheckList, systemAffected,
+                                         message);
+        }
+        return queue(entry, Collections.<String>emptySet(), journaled);
+
+    } // submit() -----------------------------------------------------------
+
+
+
+    /**
+     * Queues the submission to all sinks but the ones which already
+     * delivered it (done, sink names). Each call is counted once -
+     * submitted, deferred (queued for retry) or rejected.
+     */
+    private Outcome queue(ElogOutbox.Entry entry, Set<String> done,
+                          boolean journaled)
+    {
+        ArrayList<SinkWorker> targets = new ArrayList<SinkWorker>();
+        for(SinkWorker w : getWorkers())
+        {
+            if(! done.contains(w.getName()))
+            {
+                targets.add(w);
+            }
+        }
+        if(targets.isEmpty())
+        {
+            // delivered by all sinks before the previous run ended
+            complete(entry);
+            return Outcome.QUEUED;
+        }
+
+        pending.incrementAndGet();
+        // before a sink may report it finished
+        notifyListeners(entry.title, null);
+        Delivery delivery = new Delivery(entry, targets.size());
+        ArrayList<SinkWorker> full = new ArrayList<SinkWorker>();
+        for(SinkWorker w : targets)
+        {
+            if(! w.deliver(entry, delivery))
+            {
+                full.add(w);
+            }
+        }
+
+        if(full.size() == targets.size())
+        {
+            // nothing queued, the delivery never finishes
+            pending.decrementAndGet();
+            if(journaled)
+            {
+                deferred.incrementAndGet();
+                logger.warn("All result sink queues full, submission of \"" +
+                            entry.title + "\" queued for retry.");
+                notifyListeners(entry.title, null);
+                redrain(entry);
+                return Outcome.RETRY;
+            }
+            rejected.incrementAndGet();
+            logger.error("All result sink queues full, submission of \"" +
+                         entry.title + "\" rejected.");
+            notifyListeners(entry.title, "all result sink queues full");
+            return Outcome.REJECTED;
+        }
+
+        submitted.incrementAndGet();
+        // failed for these sinks, finishes the delivery as failed
+        for(SinkWorker w : full)
+        {
+            delivery.delivered(w, entry, "queue full");
+        }
+        return Outcome.QUEUED;
+
+    } // queue() ------------------------------------------------------------
+
+
+
+    /**
+     * Queues the journaled submission again after REDRAIN_DELAY to the
+     * sinks which haven't acknowledged it.
+     */
+    private void redrain(final ElogOutbox.Entry entry)
+    {
+        final ElogOutbox o = outbox;
+        watchdog.schedule(new Runnable()
+        {
+            public void run()
+            {
+                queue(entry, o.getAcknowledgedSinks(entry.key), true);
+            }
+        }, REDRAIN_DELAY, TimeUnit.MILLISECONDS);
+
+    } // redrain() ----------------------------------------------------------
+
+
+
+    /**
+     * Called when all sinks finished the submission, errors is null if
+     * all of them delivered it.
+     */
+    private void finished(ElogOutbox.Entry entry, long queued,
+                          String errors)
+    {
+        if(errors == null)
+        {
+            complete(entry);
+        }
+
+        long latency = System.nanoTime() - queued;
+        lastLatency = latency;
+        totalLatency.addAndGet(latency);
+        long max = maxLatency.get();
+        while(latency > max && ! maxLatency.compareAndSet(max, latency))
+        {
+            max = maxLatency.get();
+        }
+        if(errors == null)
+        {
+            succeeded.incrementAndGet();
+        }
+        else
+        {
+            failed.incrementAndGet();
+        }
+        pending.decrementAndGet();
+        logger.info("ATLOG submission of \"" + entry.title + "\" " +
+                    (errors == null ? "finished" : "failed") + " in " +
+                    (latency / 1000000) + " ms, " + getStatistics());
+        notifyListeners(entry.title, errors);
+
+        if(errors != null && outbox != null)
+        {
+            // kept in the journal, sent again later (or on the next start)
+            // to the sinks which failed
+            redrain(entry);
+        }
+
+    } // finished() ---------------------------------------------------------
+
+
+
+    private void complete(ElogOutbox.Entry entry)
+    {
+        ElogOutbox o = outbox;
+        if(o == null)
+        {
+            return;
+        }
+        try
+        {
+            o.complete(entry.key);
+        }
+        catch(IOException ioe)
+        {
+            // sent once more on the next start
+            logger.error("Could not complete ATLOG submission in " +
+                         "the outbox journal, reason: " + ioe.getMessage());
+        }
+
+    } // complete() ---------------------------------------------------------
+
+
+
+    private void notifyListeners(String activeCheckList, String error)
+    {
+        int p = pending.get();
+        for(ElogSubmitterListener l : listeners)
+        {
+            l.submissionsChanged(p, activeCheckList, error);
+        }
+
+    } // notifyListeners() --------------------------------------------------
+
+
+
+    /**
+     * Number of submissions queued or being sent.
+     */
+    int getPending()
+    {
+        return pending.get();
+
+    } // getPending() -------------------------------------------------------
+
+
+
+    /**
+     * Waits until all queued submissions are finished or the timeout
+     * (milliseconds) elapses, returns true if nothing is pending.
+     */
+    boolean awaitIdle(long timeout) throws InterruptedException
+    {
+        long end = System.currentTimeMillis() + timeout;
+        while(pending.get() > 0)
+        {
+            long left = end - System.currentTimeMillis();
+            if(left <= 0)
+            {
+                return false;
+            }
+            Thread.sleep(Math.min(left, 100));
+        }
+        return true;
+
+    } // awaitIdle() --------------------------------------------------------
+
+
+
+    String getStatistics()
+    {
+        long finished = succeeded.get() + failed.get();
+        long mean = finished > 0 ? totalLatency.get() / finished : 0;
+        StringBuilder sb = new StringBuilder();
+        sb.append("ATLOG submissions pending: ").append(pending.get());
+        sb.append(" submitted: ").append(submitted.get());
+        sb.append(" succeeded: ").append(succeeded.get());
+        sb.append(" failed: ").append(failed.get());
+        sb.append(" rejected: ").append(rejected.get());
+        sb.append(" deferred: ").append(deferred.get());
+        sb.append(" latency [ms] last: ").append(lastLatency / 1000000);
+        sb.append(" mean: ").append(mean / 1000000);
+        sb.append(" max: ").append(maxLatency.get() / 1000000);
+        sb.append(", sinks:");
+        for(SinkWorker w : getWorkers())
+        {
+            sb.append(' ').append(w.getStatistics());
+        }
+        return sb.toString();
+
+    } // getStatistics() ----------------------------------------------------
+
+
+
+    /**
+     * Tracks delivery of one submission to the sinks, called on the sink
+     * worker threads (or the queueing thread if a sink queue was full).
+     */
+    private final class Delivery implements SinkCallback
+    {
+        private ElogOutbox.Entry entry = null;
+
+        private long queued = System.nanoTime();
+
+        // sinks not finished yet
+        private AtomicInteger remaining = null;
+
+        // failures of the finished sinks
+        private StringBuffer errors = new StringBuffer();
+
+
+        Delivery(ElogOutbox.Entry entry, int sinks)
+        {
+            this.entry = entry;
+            this.remaining = new AtomicInteger(sinks);
+        }
+
+
+        public void delivered(SinkWorker worker, ElogOutbox.Entry result,
+                              String error)
+        {
+            ElogOutbox o = outbox;
+            if(error == null && o != null)
+            {
+                try
+                {
+                    o.acknowledge(entry.key, worker.getName());
+                }
+                catch(IOException ioe)
+                {
+                    // delivered to this sink once more on the next start
+                    logger.error("Could not acknowledge ATLOG submission " +
+                                 "in the outbox journal, reason: " +
+                                 ioe.getMessage());
+                }
+            }
+            else if(error != null)
+            {
+                synchronized(errors)
+                {
+                    errors.append(errors.length() > 0 ? "; " : "");
+                    errors.append(worker.getName()).append(": ").append(error);
+                }
+            }
+            if(remaining.decrementAndGet() == 0)
+            {
+                finished(entry, queued,
+                         errors.length() > 0 ? errors.toString() : null);
+            }
+        }
+
+    } // class Delivery =====================================================
+
+
+
+    /**
+     * What happened to a submission when it was queued.
+     */
+    enum Outcome
+    {
+        // queued to at least one sink
+        QUEUED,
+
+        // all sink queues full, journaled and queued again later
+        RETRY,
+
+        // all sink queues full, not journaled - not sent
+        REJECTED
+
+    } // enum Outcome =======================================================
+
+} // class ElogSubmitter ====================================================
+
+
+
+/**
+ * Notified (on a sink worker thread or the thread queueing a submission)
+ * whenever a submission is queued or finished, error is null unless the
+ * finished submission failed (for at least one sink).
+ */
+interface ElogSubmitterListener
+{
+    void submissionsChanged(int pending, String activeCheckList, String error);
+
+} // interface ElogSubmitterListener ========================================
@@ -0,0 +1,88 @@
+package checklist;
+
+
+
+/**
+ * Delivers one ATLOG submission to elog, implementations are created by
+ * ElogTransportType. Called from one thread at a time (ElogSink).
+ *
+ * @author Zdenek Maxa
+ *
+ */
+interface ElogTransport
+{
+    /**
+     * Sends the submission, returns null on success, reason of the failure
+     * otherwise. Arguments as CheckList.createElogAttributes().
+     */
+    String submit(String message, String activeCheckList,
+                  String[] systemAffected);
+
+} // interface ElogTransport ================================================
+
+
+
+/**
+ * Available elog transports, the one used by default is set from the
+ * command line (--elog-transport) or the checklist.elog.transport system
+ * property.
+ */
+enum ElogTransportType
+{
+    // elog command line client executed for each submission
+    EXEC
+    {
+        ElogTransport createTransport(ElogServer server)
+        {
+            return new ElogCommandTransport(server);
+        }
+    },
+
+    // elog web protocol spoken directly over HTTP
+    HTTP
+    {
+        ElogTransport createTransport(ElogServer server)
+        {
+            return new ElogHttpTransport(server);
+        }
+    };
+
+
+    private static ElogTransportType defaultType = EXEC;
+
+
+
+    abstract ElogTransport createTransport(ElogServer server);
+
+
+
+    static ElogTransportType getDefault()
+    {
+        return defaultType;
+    }
+
+
+    static void setDefault(ElogTransportType type)
+    {
+        defaultType = type;
+    }
+
+
+
+    /**
+     * Transport by its (case insensitive) name as given on the command line.
+     */
+    static ElogTransportType forName(String name) throws CheckListException
+    {
+        for(ElogTransportType t : values())
+        {
+            if(t.name().equalsIgnoreCase(name))
+            {
+                return t;
+            }
+        }
+        throw new CheckListException("Unknown elog transport: \"" + name + "\"");
+
+    } // forName() ----------------------------------------------------------
+
+} // enum ElogTransportType =================================================
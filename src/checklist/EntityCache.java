@@ -0,0 +1,241 @@
+package checklist;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import mylogger.MyLogger;
+
+
+
+/**
+ * Process-wide cache of the content of resolved entities - the DTD and the
+ * included checklist files. The XML checklist files are usually on a NFS
+ * mounted directory where opening a file costs a round trip, the files are
+ * read once and then served from memory as long as their size and
+ * modification time are the same (one stat of the file per resolving).
+ *
+ * The cache is bounded by the total size of the cached content, least
+ * recently used entries are evicted first. Files bigger than
+ * MAX_ENTRY_SIZE are read but not cached.
+ *
+ * Files are always read at once and closed before the content is handed
+ * to the parser, no file handle is kept open by a parser.
+ *
+ * @author Zdenek Maxa
+ *
+ */
+final class EntityCache
+{
+    private static MyLogger logger = MyLogger.getLogger(EntityCache.class);
+
+    private static final long DEFAULT_MAX_SIZE = 16 * 1024 * 1024;
+
+    private static final long MAX_ENTRY_SIZE = 2 * 1024 * 1024;
+
+    private static EntityCache instance = new EntityCache();
+
+
+    // key: canonical file name, in access order (LRU)
+    private LinkedHashMap<String, Entry> cache = null;
+
+    // total size of the cached content (bytes)
+    private long size = 0;
+
+    private long maxSize = DEFAULT_MAX_SIZE;
+
+    private AtomicLong hits = new AtomicLong();
+    private AtomicLong misses = new AtomicLong();
+    private AtomicLong bytesServed = new AtomicLong();
+
+
+
+
+    private EntityCache()
+    {
+        cache = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+    } // EntityCache() ------------------------------------------------------
+
+
+
+    static EntityCache getInstance()
+    {
+        return instance;
+
+    } // getInstance() ------------------------------------------------------
+
+
+
+    /**
+     * Returns stream with the content of the file, from memory if the file
+     * hasn't been modified since it was cached.
+     */
+    InputStream open(String fileName) throws IOException
+    {
+        File file = new File(fileName);
+        String key = file.getCanonicalPath();
+        long length = file.length();
+        long lastModified = file.lastModified();
+
+        synchronized(cache)
+        {
+            Entry entry = cache.get(key);
+            if(entry != null && entry.length == length &&
+               entry.lastModified == lastModified)
+            {
+                hits.incrementAndGet();
+                bytesServed.addAndGet(length);
+                return new ByteArrayInputStream(entry.content);
+            }
+        }
+
+        misses.incrementAndGet();
+        byte[] content = readFile(file, length);
+        bytesServed.addAndGet(content.length);
+
+        // length may differ if the file was being written, don't cache
+        if(content.length == length && length <= MAX_ENTRY_SIZE)
+        {
+            Entry entry = new Entry();
+            entry.length = length;
+            entry.lastModified = lastModified;
+            entry.content = content;
+            put(key, entry);
+        }
+
+        return new ByteArrayInputStream(content);
+
+    } // open() -------------------------------------------------------------
+
+
+
+    private void put(String key, Entry entry)
+    {
+        synchronized(cache)
+        {
+            Entry previous = cache.put(key, entry);
+            if(previous != null)
+            {
+                size -= previous.length;
+            }
+            size += entry.length;
+
+            Iterator<Map.Entry<String, Entry>> it =
+                cache.entrySet().iterator();
+            while(size > maxSize && it.hasNext())
+            {
+                Map.Entry<String, Entry> eldest = it.next();
+                size -= eldest.getValue().length;
+                it.remove();
+                logger.debug("Entity \"" + eldest.getKey() + "\" evicted " +
+                             "from the entity cache.");
+            }
+        }
+
+    } // put() --------------------------------------------------------------
+
+
+
+    private static byte[] readFile(File file, long length) throws IOException
+    {
+        InputStream in = new FileInputStream(file);
+        try
+        {
+            ByteArrayOutputStream out =
+                new ByteArrayOutputStream((int) length + 1);
+            byte[] buf = new byte[8192];
+            int n = 0;
+            while((n = in.read(buf)) != -1)
+            {
+                out.write(buf, 0, n);
+            }
+            return out.toByteArray();
+        }
+        finally
+        {
+            in.close();
+        }
+
+    } // readFile() ---------------------------------------------------------
+
+
+
+    void setMaxSize(long maxSize)
+    {
+        synchronized(cache)
+        {
+            this.maxSize = maxSize;
+        }
+
+    } // setMaxSize() -------------------------------------------------------
+
+
+
+    void clear()
+    {
+        synchronized(cache)
+        {
+            cache.clear();
+            size = 0;
+        }
+
+    } // clear() ------------------------------------------------------------
+
+
+
+    long getHits()
+    {
+        return hits.get();
+    }
+
+
+    long getMisses()
+    {
+        return misses.get();
+    }
+
+
+    long getBytesServed()
+    {
+        return bytesServed.get();
+    }
+
+
+
+    String getStatistics()
+    {
+        int entries = 0;
+        long cachedBytes = 0;
+        synchronized(cache)
+        {
+            entries = cache.size();
+            cachedBytes = size;
+        }
+        long h = getHits();
+        long total = h + getMisses();
+        int ratio = total == 0 ? 0 : (int) (100 * h / total);
+        return "cached entities: " + entries + " (" + cachedBytes +
+               " bytes) hit ratio: " + ratio + "% (" + h + "/" + total +
+               ") bytes served: " + getBytesServed();
+
+    } // getStatistics() ----------------------------------------------------
+
+
+
+    private static final class Entry
+    {
+        long length = 0;
+        long lastModified = 0;
+        byte[] content = null;
+
+    } // class Entry ========================================================
+
+} // class EntityCache ======================================================
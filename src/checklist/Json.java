@@ -0,0 +1,67 @@
+package checklist;
+
+
+
+/**
+ * JSON string literals for the JSON output of CheckList - the validation
+ * report (CheckListValidator), spooled results (JsonSpoolSink) and
+ * ResultFormat.JSON.
+ *
+ * @author Zdenek Maxa
+ *
+ */
+final class Json
+{
+    private Json()
+    {
+        // static methods only
+
+    } // Json() -------------------------------------------------------------
+
+
+
+    /**
+     * JSON string literal of s.
+     */
+    static String quote(String s)
+    {
+        StringBuilder sb = new StringBuilder(s.length() + 2);
+        quote(sb, s);
+        return sb.toString();
+
+    } // quote() ------------------------------------------------------------
+
+
+
+    /**
+     * Appends JSON string literal of s to sb.
+     */
+    static void quote(StringBuilder sb, String s)
+    {
+        sb.append('"');
+        for(int i = 0; i < s.length(); i++)
+        {
+            char c = s.charAt(i);
+            switch(c)
+            {
+                case '"':  sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if(c < 0x20)
+                    {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    }
+                    else
+                    {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append('"');
+
+    } // quote() ------------------------------------------------------------
+
+} // class Json =============================================================
@@ -0,0 +1,144 @@
+package checklist;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+
+import mylogger.MyLogger;
+
+
+
+/**
+ * Writes each result as a JSON document into a spool directory, read
+ * (and removed) by the dashboards. The file is named by the result's
+ * creation time and key, written under a temporary name and renamed when
+ * complete, so a reader never sees a partial file and a result delivered
+ * twice replaces its own file.
+ *
+ * Document: {"key", "created" (ISO 8601, UTC), "checklist",
+ *            "systemAffected" (array or null), "message"}
+ *
+ * @author Zdenek Maxa
+ *
+ */
+final class JsonSpoolSink implements ResultSink
+{
+    private static MyLogger logger = MyLogger.getLogger(JsonSpoolSink.class);
+
+    static final String DEFAULT_DIR =
+        System.getProperty("user.home") + File.separator + ".checklist" +
+        File.separator + "spool";
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private String name = null;
+
+    private File dir = null;
+
+
+
+
+    public JsonSpoolSink(String name, String dir)
+    {
+        this.name = name;
+        this.dir = new File(dir);
+
+    } // JsonSpoolSink() ----------------------------------------------------
+
+
+
+    public String getName()
+    {
+        return name;
+
+    } // getName() ----------------------------------------------------------
+
+
+
+    public int getConcurrency()
+    {
+        // each result has its own file
+        return 2;
+
+    } // getConcurrency() ---------------------------------------------------
+
+
+
+    public String deliver(ElogOutbox.Entry result)
+    {
+        String fileName = result.created + "-" + result.key + ".json";
+        File file = new File(dir, fileName);
+        File tmpFile = new File(dir, "." + fileName + ".tmp");
+        try
+        {
+            if(! dir.isDirectory() && ! dir.mkdirs())
+            {
+                return "can't create spool directory " + dir;
+            }
+            FileOutputStream out = new FileOutputStream(tmpFile);
+            try
+            {
+                out.write(toJson(result).getBytes(UTF8));
+                out.getFD().sync();
+            }
+            finally
+            {
+                out.close();
+            }
+            Files.move(tmpFile.toPath(), file.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch(IOException ioe)
+        {
+            tmpFile.delete();
+            return "can't write spool file " + file + ", reason: " +
+                   ioe.getMessage();
+        }
+        logger.debug("Result of \"" + result.title + "\" spooled in " + file);
+        return null;
+
+    } // deliver() ----------------------------------------------------------
+
+
+
+    private static String toJson(ElogOutbox.Entry result)
+    {
+        SimpleDateFormat iso = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
+        iso.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+        StringBuilder sb = new StringBuilder(result.message.length() + 256);
+        sb.append("{\n");
+        sb.append("  \"key\": ").append(Json.quote(result.key));
+        sb.append(",\n  \"created\": ");
+        sb.append(Json.quote(iso.format(new Date(result.created))));
+        sb.append(",\n  \"checklist\": ");
+        sb.append(Json.quote(result.title));
+        sb.append(",\n  \"systemAffected\": ");
+        if(result.systemAffected == null)
+        {
+            sb.append("null");
+        }
+        else
+        {
+            sb.append('[');
+            for(int i = 0; i < result.systemAffected.length; i++)
+            {
+                sb.append(i > 0 ? ", " : "");
+                sb.append(Json.quote(result.systemAffected[i]));
+            }
+            sb.append(']');
+        }
+        sb.append(",\n  \"message\": ");
+        sb.append(Json.quote(result.message)).append("\n}\n");
+        return sb.toString();
+
+    } // toJson() -----------------------------------------------------------
+
+} // class JsonSpoolSink ====================================================
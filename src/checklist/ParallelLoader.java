@@ -0,0 +1,299 @@
+package checklist;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import mylogger.MyLogger;
+
+
+
+/**
+ * Loads all checklists of the main XML checklist file (CheckList.xml) by
+ * parsing the checklist files it includes (via external entities) in
+ * parallel on a fork-join pool. Each included file is parsed by its own
+ * XMLParser into its own store, the stores are then merged into the
+ * resulting LinkedHashMap in the order in which the files are referenced
+ * from the main file - the result is the same as if the main file was
+ * parsed sequentially by a single XMLParser (MenuBar relies on the order).
+ * The included files are parsed without the DTD of the main file, the
+ * parsers don't depend on it (whitespace between elements is never taken
+ * into the instruction text).
+ *
+ * Checklists defined directly in the main file (not via an entity) are
+ * taken from the first pass over the main file and keep their position.
+ *
+ * @author Zdenek Maxa
+ *
+ */
+final class ParallelLoader
+{
+    private static MyLogger logger = MyLogger.getLogger(ParallelLoader.class);
+
+    // main XML file
+    private String xmlFileName = null;
+
+    // files the loaded store was built from
+    private ArrayList<String> sourceFiles = null;
+
+
+
+
+    public ParallelLoader(String xmlFileName)
+    {
+        this.xmlFileName = xmlFileName;
+
+    } // ParallelLoader() ---------------------------------------------------
+
+
+
+    public LinkedHashMap<String, CheckListData> load()
+                                throws CheckListException
+    {
+        long start = System.currentTimeMillis();
+
+        // first pass - main file only, included files are not read
+        ArrayList<LoadUnit> units = new ArrayList<LoadUnit>();
+        XMLParser mainParser = new XMLParser(xmlFileName);
+        mainParser.collectIncludedFiles(units);
+        mainParser.parse(); // throws CheckListException
+        LinkedHashMap<String, CheckListData> inline =
+            mainParser.getCheckListStore();
+        sourceFiles = new ArrayList<String>(mainParser.getSourceFiles());
+
+        // each included file is parsed only once even if referenced
+        // several times
+        ArrayList<String> files = new ArrayList<String>();
+        for(LoadUnit u : units)
+        {
+            if(u.getFileName() != null && ! files.contains(u.getFileName()))
+            {
+                files.add(u.getFileName());
+            }
+        }
+        logger.info("Main checklist file includes " + files.size() +
+                    " checklist file(s), parsing them in parallel ...");
+
+        ArrayList<ParseResult> results = null;
+        ForkJoinPool pool = new ForkJoinPool();
+        try
+        {
+            results = pool.invoke(new ParseTask(files, 0, files.size()));
+        }
+        catch(ParseFailure pf)
+        {
+            throw pf.getCheckListException();
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+
+        // merge in the order of appearance in the main file
+        LinkedHashMap<String, CheckListData> store =
+            new LinkedHashMap<String, CheckListData>();
+        long parseTime = 0;
+        for(ParseResult r : results)
+        {
+            parseTime += r.time;
+            for(String f : r.sourceFiles)
+            {
+                if(! sourceFiles.contains(f))
+                {
+                    sourceFiles.add(f);
+                }
+            }
+        }
+        for(LoadUnit u : units)
+        {
+            if(u.getFileName() != null)
+            {
+                ParseResult r = results.get(files.indexOf(u.getFileName()));
+                store.putAll(r.store);
+            }
+            else
+            {
+                String title = u.getInlineTitle();
+                store.put(title, inline.get(title));
+            }
+        }
+
+        // parse time is the sum of times the individual parsers took on
+        // the pool threads (not the time of a sequential parse), the
+        // speedup over the sequential parse is measured by "ant speedup"
+        // (LoadSpeedup)
+        long wallTime = System.currentTimeMillis() - start;
+        logger.info("Parallel loading of " + store.size() + " checklist(s) " +
+                    "from " + files.size() + " file(s) took " + wallTime +
+                    " ms, parse time of the files: " + parseTime +
+                    " ms (parallelism: " + pool.getParallelism() + ")");
+
+        return store;
+
+    } // load() -------------------------------------------------------------
+
+
+
+    /**
+     * Returns names of all files the last loaded store was built from.
+     */
+    public ArrayList<String> getSourceFiles()
+    {
+        return sourceFiles;
+
+    } // getSourceFiles() ---------------------------------------------------
+
+
+
+    /**
+     * Splits the range of files into halves until a single file remains
+     * which is then parsed. Results are returned in the order of files.
+     */
+    @SuppressWarnings("serial")
+    private static final class ParseTask
+                         extends RecursiveTask<ArrayList<ParseResult>>
+    {
+        private ArrayList<String> files = null;
+        private int from = 0;
+        private int to = 0;
+
+
+
+        ParseTask(ArrayList<String> files, int from, int to)
+        {
+            this.files = files;
+            this.from = from;
+            this.to = to;
+
+        } // ParseTask() ----------------------------------------------------
+
+
+
+        protected ArrayList<ParseResult> compute()
+        {
+            ArrayList<ParseResult> r = new ArrayList<ParseResult>();
+            if(to - from == 1)
+            {
+                r.add(parse(files.get(from)));
+            }
+            else if(to - from > 1)
+            {
+                int middle = (from + to) / 2;
+                ParseTask left = new ParseTask(files, from, middle);
+                ParseTask right = new ParseTask(files, middle, to);
+                left.fork();
+                r.addAll(right.compute());
+                r.addAll(0, left.join());
+            }
+            return r;
+
+        } // compute() ------------------------------------------------------
+
+
+
+        private ParseResult parse(String fileName)
+        {
+            long start = System.currentTimeMillis();
+            CheckListSource parser =
+                ParserEngine.getDefault().createSource(fileName);
+            try
+            {
+                parser.parse();
+            }
+            catch(CheckListException cle)
+            {
+                throw new ParseFailure(cle);
+            }
+            ParseResult r = new ParseResult();
+            r.store = parser.getCheckListStore();
+            r.sourceFiles = parser.getSourceFiles();
+            r.time = System.currentTimeMillis() - start;
+            logger.debug("Parsed \"" + fileName + "\" in " + r.time + " ms");
+            return r;
+
+        } // parse() --------------------------------------------------------
+
+    } // class ParseTask ====================================================
+
+
+
+    private static final class ParseResult
+    {
+        LinkedHashMap<String, CheckListData> store = null;
+        ArrayList<String> sourceFiles = null;
+        long time = 0;
+
+    } // class ParseResult ==================================================
+
+
+
+    /**
+     * Carries CheckListException out of the fork-join pool.
+     */
+    @SuppressWarnings("serial")
+    private static final class ParseFailure extends RuntimeException
+    {
+        ParseFailure(CheckListException cause)
+        {
+            super(cause);
+
+        } // ParseFailure() -------------------------------------------------
+
+
+
+        CheckListException getCheckListException()
+        {
+            return (CheckListException) getCause();
+
+        } // getCheckListException() ----------------------------------------
+
+    } // class ParseFailure =================================================
+
+} // class ParallelLoader ===================================================
+
+
+
+/**
+ * Part of the main XML checklist file - either a checklist file included
+ * via an external entity or a checklist defined directly in the main file.
+ */
+final class LoadUnit
+{
+    private String fileName = null;
+    private String inlineTitle = null;
+
+
+
+    static LoadUnit forFile(String fileName)
+    {
+        LoadUnit u = new LoadUnit();
+        u.fileName = fileName;
+        return u;
+
+    } // forFile() ----------------------------------------------------------
+
+
+
+    static LoadUnit forInline(String title)
+    {
+        LoadUnit u = new LoadUnit();
+        u.inlineTitle = title;
+        return u;
+
+    } // forInline() --------------------------------------------------------
+
+
+
+    public String getFileName()
+    {
+        return fileName;
+    }
+
+
+    public String getInlineTitle()
+    {
+        return inlineTitle;
+    }
+
+} // class LoadUnit =========================================================
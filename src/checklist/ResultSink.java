@@ -0,0 +1,175 @@
+package checklist;
+
+import java.util.ArrayList;
+
+
+
+/**
+ * Destination of checklist results (completed checklists), e.g. ATLOG or
+ * a local archive. Each sink is driven by its own SinkWorker (queue,
+ * concurrency limit, retries), so a slow or broken sink doesn't delay the
+ * others. Sinks are created by ResultSinkType.
+ *
+ * @author Zdenek Maxa
+ *
+ */
+interface ResultSink
+{
+    /**
+     * Name of the sink as given on the command line (it's also the key
+     * of the per-sink acknowledgement in the ElogOutbox journal).
+     */
+    String getName();
+
+
+    /**
+     * Maximum number of results delivered concurrently, deliver() must be
+     * thread-safe if more than 1.
+     */
+    int getConcurrency();
+
+
+    /**
+     * Delivers the result, returns null on success, reason of the failure
+     * otherwise. Delivering the same result (key) again must be harmless
+     * as far as the sink allows, results are delivered at least once.
+     */
+    String deliver(ElogOutbox.Entry result);
+
+} // interface ResultSink ===================================================
+
+
+
+/**
+ * Available result sinks, the ones used are set from the command line
+ * (--result-sinks) or the checklist.sinks system property, comma
+ * separated list of names, e.g. "elog,archive,json".
+ */
+enum ResultSinkType
+{
+    // production ATLOG
+    ELOG("elog")
+    {
+        ResultSink createSink()
+        {
+            return new ElogSink(getName(), ElogServer.PRODUCTION);
+        }
+    },
+
+    // testing ATLOG (ATLOG_TEST logbook)
+    ELOG_TEST("elog-test")
+    {
+        ResultSink createSink()
+        {
+            return new ElogSink(getName(), ElogServer.TEST);
+        }
+    },
+
+    // monthly text files in ~/.checklist/archive
+    ARCHIVE("archive")
+    {
+        ResultSink createSink()
+        {
+            return new ArchiveSink(getName(), ArchiveSink.DEFAULT_DIR);
+        }
+    },
+
+    // one line summary sent to the local syslog (UDP)
+    SYSLOG("syslog")
+    {
+        ResultSink createSink()
+        {
+            return new SyslogSink(getName(), SyslogSink.DEFAULT_HOST,
+                                  SyslogSink.DEFAULT_PORT);
+        }
+    },
+
+    // JSON file per result in ~/.checklist/spool (read by dashboards)
+    JSON("json")
+    {
+        ResultSink createSink()
+        {
+            return new JsonSpoolSink(getName(), JsonSpoolSink.DEFAULT_DIR);
+        }
+    };
+
+
+    private static ResultSinkType[] defaultTypes = { ELOG };
+
+
+    private String name = null;
+
+
+
+    private ResultSinkType(String name)
+    {
+        this.name = name;
+    }
+
+
+
+    abstract ResultSink createSink();
+
+
+
+    String getName()
+    {
+        return name;
+    }
+
+
+
+    static ResultSinkType[] getDefaults()
+    {
+        return defaultTypes.clone();
+    }
+
+
+    static void setDefaults(ResultSinkType[] types)
+    {
+        defaultTypes = types.clone();
+    }
+
+
+
+    /**
+     * Sink by its (case insensitive) name as given on the command line.
+     */
+    static ResultSinkType forName(String name) throws CheckListException
+    {
+        for(ResultSinkType t : values())
+        {
+            if(t.name.equalsIgnoreCase(name.trim()))
+            {
+                return t;
+            }
+        }
+        throw new CheckListException("Unknown result sink: \"" + name + "\"");
+
+    } // forName() ----------------------------------------------------------
+
+
+
+    /**
+     * Sinks from a comma separated list of names (duplicates ignored).
+     */
+    static ResultSinkType[] forNames(String names) throws CheckListException
+    {
+        ArrayList<ResultSinkType> types = new ArrayList<ResultSinkType>();
+        for(String name : names.split(","))
+        {
+            ResultSinkType t = forName(name);
+            if(! types.contains(t))
+            {
+                types.add(t);
+            }
+        }
+        if(types.isEmpty())
+        {
+            throw new CheckListException("No result sink given");
+        }
+        return types.toArray(new ResultSinkType[types.size()]);
+
+    } // forNames() ---------------------------------------------------------
+
+} // enum ResultSinkType ====================================================
@@ -0,0 +1,574 @@
+package checklist;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+
+import mylogger.MyLogger;
+
+
+
+/**
+ * Rows (checkbox values and comments entered by the user) of checklists
+ * which are not displayed at the moment, so that switching back to a
+ * half-done checklist restores them. The table model puts the rows of the
+ * checklist being switched away from here and takes them back when it's
+ * displayed again (CheckListTableModel.prepareContents()).
+ *
+ * Least recently displayed checklists are evicted when the estimated
+ * memory of the cached rows exceeds the limit (--session-memory or the
+ * checklist.session.memory system property, kilobytes). An evicted state
+ * with any user input is saved into the session directory (by a
+ * background thread) and read from there when the checklist is displayed
+ * again.
+ *
+ * The states are kept only while the application runs - ticks left from
+ * a previous run must not appear as if the checklist was done now. The
+ * session directory is locked (.lock file, held for the process
+ * lifetime) and its session files are deleted on start. If another
+ * CheckList instance holds the lock, nothing is saved, evicted states are
+ * dropped.
+ *
+ * Session file layout (all numbers big-endian):
+ *   int magic, int version, string title,
+ *   int number of rows, per row: string instruction, byte checkbox,
+ *       string comment
+ * string is int length of UTF-8 bytes (-1 for null) followed by the bytes
+ *
+ * Methods may be called from any thread.
+ *
+ * @author Zdenek Maxa
+ *
+ */
+final class SessionStateCache
+{
+    private static MyLogger logger = MyLogger.getLogger(SessionStateCache.class);
+
+    private static final int MAGIC = 0x434b5353; // "CKSS"
+    private static final int VERSION = 1;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    static final String DEFAULT_DIR =
+        System.getProperty("user.home") + File.separator + ".checklist" +
+        File.separator + "session";
+
+    // kilobytes
+    private static final long DEFAULT_MEMORY_LIMIT = 4096;
+
+    private static long defaultMemoryLimit = DEFAULT_MEMORY_LIMIT;
+
+    private File dir = null;
+
+    // false if the session directory can't be used, evicted states are
+    // then dropped
+    private boolean saveEvicted = false;
+
+    // lock of the session directory, held while the application runs
+    // (the reference keeps its channel open)
+    private FileLock lock = null;
+
+    // bytes
+    private long memoryLimit = 0;
+
+    private long memoryUsed = 0;
+
+    // title -> state, least recently displayed first
+    private LinkedHashMap<String, State> states =
+        new LinkedHashMap<String, State>(16, 0.75f, true);
+
+    // evicted states not written yet (restored from here meanwhile)
+    private HashMap<String, State> saving = new HashMap<String, State>();
+
+    private ExecutorService writer = null;
+
+
+
+
+    /**
+     * @param dir - session directory
+     * @param memoryLimit - kilobytes, 0 keeps no state in memory (each
+     *        state with user input is saved)
+     */
+    public SessionStateCache(String dir, long memoryLimit)
+    {
+        this.dir = new File(dir);
+        this.memoryLimit = memoryLimit * 1024;
+
+        ThreadFactory daemons = new ThreadFactory()
+        {
+            public Thread newThread(Runnable r)
+            {
+                Thread t = new Thread(r, "SessionStateCache");
+                t.setDaemon(true);
+                return t;
+            }
+        };
+        writer = Executors.newSingleThreadExecutor(daemons);
+
+        saveEvicted = lockAndClear();
+
+    } // SessionStateCache() ------------------------------------------------
+
+
+
+    /**
+     * Locks the session directory and deletes session files left by a
+     * previous run, returns false if the directory can't be used.
+     */
+    private boolean lockAndClear()
+    {
+        FileChannel channel = null;
+        try
+        {
+            if(! dir.isDirectory() && ! dir.mkdirs())
+            {
+                throw new IOException("can't create directory " + dir);
+            }
+            channel = new RandomAccessFile(new File(dir, ".lock"),
+                                           "rw").getChannel();
+            lock = channel.tryLock();
+        }
+        catch(OverlappingFileLockException ofle)
+        {
+            // locked by another cache of this process, the channel is
+            // left open - closing it would release that lock
+            logger.warn("Session directory \"" + dir + "\" is already " +
+                        "used, session states are not saved.");
+            return false;
+        }
+        catch(IOException ioe)
+        {
+            logger.warn("Session directory \"" + dir + "\" can't be used, " +
+                        "session states are not saved, reason: " +
+                        ioe.getMessage());
+            close(channel);
+            return false;
+        }
+        if(lock == null)
+        {
+            logger.warn("Session directory \"" + dir + "\" is used by " +
+                        "another CheckList instance, session states are " +
+                        "not saved.");
+            close(channel);
+            return false;
+        }
+
+        int deleted = 0;
+        File[] files = dir.listFiles();
+        for(int i = 0; files != null && i < files.length; i++)
+        {
+            String name = files[i].getName();
+            if((name.endsWith(".session") || name.endsWith(".tmp")) &&
+               files[i].delete())
+            {
+                deleted++;
+            }
+        }
+        if(deleted > 0)
+        {
+            logger.info("Deleted " + deleted + " session file(s) of a " +
+                        "previous run from \"" + dir + "\"");
+        }
+        return true;
+
+    } // lockAndClear() -----------------------------------------------------
+
+
+
+    /**
+     * Keeps the rows of the checklist which is not displayed any more.
+     */
+    public synchronized void put(String title, CheckListRows rows)
+    {
+        if(rows.size() == 0)
+        {
+            return;
+        }
+        State state = new State(title, rows);
+        State old = states.put(title, state);
+        if(old != null)
+        {
+            memoryUsed -= old.bytes;
+        }
+        memoryUsed += state.bytes;
+
+        Iterator<State> i = states.values().iterator();
+        while(memoryUsed > memoryLimit && i.hasNext())
+        {
+            State evicted = i.next();
+            i.remove();
+            memoryUsed -= evicted.bytes;
+            evict(evicted);
+        }
+
+    } // put() --------------------------------------------------------------
+
+
+
+    /**
+     * State of the checklist as it was left (from memory or the session
+     * directory), null if there is none. The state stays cached until
+     * remove() is called (the checklist is displayed).
+     */
+    public State get(String title)
+    {
+        synchronized(this)
+        {
+            State state = states.get(title);
+            if(state == null)
+            {
+                state = saving.get(title);
+            }
+            if(state != null || ! saveEvicted)
+            {
+                return state;
+            }
+        }
+        return read(title);
+
+    } // get() --------------------------------------------------------------
+
+
+
+    /**
+     * Forgets the state of the checklist (it's displayed now, the table
+     * has the rows), deletes also its session file.
+     */
+    public void remove(final String title)
+    {
+        synchronized(this)
+        {
+            State state = states.remove(title);
+            if(state != null)
+            {
+                memoryUsed -= state.bytes;
+            }
+            if(! saveEvicted)
+            {
+                return;
+            }
+        }
+        // after a save of the same checklist possibly queued before
+        writer.execute(new Runnable()
+        {
+            public void run()
+            {
+                File file = getFile(title);
+                if(file.exists() && ! file.delete())
+                {
+                    logger.warn("Could not delete session file \"" + file +
+                                "\"");
+                }
+            }
+        });
+
+    } // remove() -----------------------------------------------------------
+
+
+
+    public synchronized String getStatistics()
+    {
+        return "session states: " + states.size() + " memory [kB]: " +
+               (memoryUsed / 1024) + " of " + (memoryLimit / 1024) +
+               " saving: " + saving.size();
+
+    } // getStatistics() ----------------------------------------------------
+
+
+
+    /**
+     * Called synchronized on this, the state is saved by the writer thread
+     * if it has any user input, dropped otherwise.
+     */
+    private void evict(final State state)
+    {
+        if(! state.rows.hasUserInput())
+        {
+            logger.debug("Session state of \"" + state.title + "\" evicted, " +
+                         "no user input.");
+            return;
+        }
+        if(! saveEvicted)
+        {
+            logger.warn("Session state of \"" + state.title + "\" evicted " +
+                        "and dropped, ticks and comments are lost.");
+            return;
+        }
+        saving.put(state.title, state);
+        writer.execute(new Runnable()
+        {
+            public void run()
+            {
+                write(state);
+                synchronized(SessionStateCache.this)
+                {
+                    if(saving.get(state.title) == state)
+                    {
+                        saving.remove(state.title);
+                    }
+                }
+            }
+        });
+
+    } // evict() ------------------------------------------------------------
+
+
+
+    private File getFile(String title)
+    {
+        // readable part of the title and checksum of the whole title
+        CRC32 crc = new CRC32();
+        crc.update(title.getBytes(UTF8));
+        String name = title.replaceAll("[^A-Za-z0-9._-]", "_");
+        if(name.length() > 64)
+        {
+            name = name.substring(0, 64);
+        }
+        return new File(dir, name + "-" + Long.toHexString(crc.getValue()) +
+                             ".session");
+
+    } // getFile() ----------------------------------------------------------
+
+
+
+    private void write(State state)
+    {
+        File file = getFile(state.title);
+        File tmpFile = new File(dir, "." + file.getName() + ".tmp");
+        DataOutputStream out = null;
+        try
+        {
+            if(! dir.isDirectory() && ! dir.mkdirs())
+            {
+                throw new IOException("can't create directory " + dir);
+            }
+            out = new DataOutputStream(new BufferedOutputStream(
+                                       new FileOutputStream(tmpFile)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeString(out, state.title);
+            CheckListRows rows = state.rows;
+            out.writeInt(rows.size());
+            for(int i = 0; i < rows.size(); i++)
+            {
+                writeString(out, rows.getInstruction(i));
+                out.writeByte(rows.isChecked(i) ? 1 : 0);
+                writeString(out, rows.getComment(i));
+            }
+            out.close();
+            out = null;
+            Files.move(tmpFile.toPath(), file.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+            logger.debug("Session state of \"" + state.title + "\" saved " +
+                         "into \"" + file + "\"");
+        }
+        catch(IOException ioe)
+        {
+            logger.warn("Could not save session state of \"" + state.title +
+                        "\", reason: " + ioe.getMessage());
+            close(out);
+            tmpFile.delete();
+        }
+
+    } // write() ------------------------------------------------------------
+
+
+
+    /**
+     * Reads the saved state, null if there is none or it can't be read.
+     */
+    private State read(String title)
+    {
+        File file = getFile(title);
+        if(! file.exists())
+        {
+            return null;
+        }
+        DataInputStream in = null;
+        try
+        {
+            in = new DataInputStream(new BufferedInputStream(
+                                     new FileInputStream(file)));
+            if(in.readInt() != MAGIC || in.readInt() != VERSION ||
+               ! title.equals(readString(in)))
+            {
+                logger.warn("Session file \"" + file + "\" has unknown " +
+                            "format, ignored.");
+                return null;
+            }
+            // the saved comments become the preset ones of the rows
+            CheckListData saved = new CheckListData(title);
+            int n = in.readInt();
+            BitSet checked = new BitSet(n);
+            for(int i = 0; i < n; i++)
+            {
+                String instruction = readString(in);
+                checked.set(i, in.readByte() != 0);
+                saved.addInstruction(instruction, readString(in), null, false);
+            }
+            saved.freeze();
+            CheckListRows rows = new CheckListRows(saved);
+            for(int i = checked.nextSetBit(0); i >= 0;
+                i = checked.nextSetBit(i + 1))
+            {
+                rows.setChecked(i, true);
+            }
+            logger.debug("Session state of \"" + title + "\" read from \"" +
+                         file + "\"");
+            return new State(title, rows);
+        }
+        catch(EOFException eofe)
+        {
+            logger.warn("Session file \"" + file + "\" is truncated, ignored.");
+        }
+        catch(IOException ioe)
+        {
+            logger.warn("Could not read session file \"" + file + "\", " +
+                        "reason: " + ioe.getMessage());
+        }
+        finally
+        {
+            close(in);
+        }
+        return null;
+
+    } // read() -------------------------------------------------------------
+
+
+
+    private static void writeString(DataOutputStream out, String s)
+                                    throws IOException
+    {
+        if(s == null)
+        {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] b = s.getBytes(UTF8);
+        out.writeInt(b.length);
+        out.write(b);
+
+    } // writeString() ------------------------------------------------------
+
+
+
+    private static String readString(DataInputStream in) throws IOException
+    {
+        int len = in.readInt();
+        if(len < 0)
+        {
+            return null;
+        }
+        byte[] b = new byte[len];
+        in.readFully(b);
+        return new String(b, UTF8);
+
+    } // readString() -------------------------------------------------------
+
+
+
+    private static void close(Closeable c)
+    {
+        if(c == null)
+        {
+            return;
+        }
+        try
+        {
+            c.close();
+        }
+        catch(IOException ioe)
+        {
+            logger.debug("Closing failed: " + ioe.getMessage());
+        }
+
+    } // close() ------------------------------------------------------------
+
+
+
+    static long getDefaultMemoryLimit()
+    {
+        return defaultMemoryLimit;
+    }
+
+
+    static void setDefaultMemoryLimit(long kilobytes)
+    {
+        defaultMemoryLimit = kilobytes;
+    }
+
+
+
+    /**
+     * Memory limit in kilobytes as given on the command line.
+     */
+    static long parseMemoryLimit(String limit) throws CheckListException
+    {
+        try
+        {
+            long kilobytes = Long.parseLong(limit.trim());
+            if(kilobytes >= 0)
+            {
+                return kilobytes;
+            }
+        }
+        catch(NumberFormatException nfe)
+        {
+            // reported below
+        }
+        throw new CheckListException("Invalid session memory limit: \"" +
+                                     limit + "\" (kilobytes expected)");
+
+    } // parseMemoryLimit() -------------------------------------------------
+
+
+
+    /**
+     * Rows of a checklist as the user left them.
+     */
+    static final class State
+    {
+        final String title;
+
+        // if read from the session file, the rows are created from the
+        // saved instructions and comments (not from the store's data)
+        final CheckListRows rows;
+
+        // estimated memory
+        final long bytes;
+
+
+        State(String title, CheckListRows rows)
+        {
+            this.title = title;
+            this.rows = rows;
+            this.bytes = rows.getMemory();
+        }
+
+    } // class State ========================================================
+
+} // class SessionStateCache ================================================
@@ -0,0 +1,223 @@
+package checklist;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import mylogger.MyLogger;
+
+
+
+/**
+ * Delivers results to one ResultSink from its own bounded queue
+ * (QUEUE_CAPACITY) by at most sink.getConcurrency() threads, so that each
+ * sink is isolated from the others - a slow or failing sink only fills
+ * its own queue. A failed delivery is retried (MAX_ATTEMPTS in total)
+ * after a delay doubling from RETRY_DELAY, the outcome is reported to
+ * the SinkCallback (on the worker thread).
+ *
+ * @author Zdenek Maxa
+ *
+ */
+final class SinkWorker
+{
+    private static MyLogger logger = MyLogger.getLogger(SinkWorker.class);
+
+    private static final int QUEUE_CAPACITY = 32;
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    // milliseconds before the first retry, doubled for each next one
+    private static final long RETRY_DELAY = 2000;
+
+    // seconds an idle worker thread is kept
+    private static final long KEEP_ALIVE = 60;
+
+
+    private ResultSink sink = null;
+
+    private ThreadPoolExecutor executor = null;
+
+    // results queued or being delivered
+    private AtomicInteger pending = new AtomicInteger();
+
+    private AtomicLong delivered = new AtomicLong();
+    private AtomicLong failed = new AtomicLong();
+    private AtomicLong rejected = new AtomicLong();
+    private AtomicLong retries = new AtomicLong();
+
+    // nanoseconds, queued until finished, of finished deliveries
+    private AtomicLong totalLatency = new AtomicLong();
+    private AtomicLong maxLatency = new AtomicLong();
+
+
+
+
+    public SinkWorker(ResultSink sink)
+    {
+        this.sink = sink;
+        final String threadName = "ResultSink-" + sink.getName();
+        ThreadFactory factory = new ThreadFactory()
+        {
+            public Thread newThread(Runnable r)
+            {
+                Thread t = new Thread(r, threadName);
+                t.setDaemon(true);
+                return t;
+            }
+        };
+        int threads = Math.max(1, sink.getConcurrency());
+        executor = new ThreadPoolExecutor(threads, threads,
+                       KEEP_ALIVE, TimeUnit.SECONDS,
+                       new ArrayBlockingQueue<Runnable>(QUEUE_CAPACITY),
+                       factory);
+        executor.allowCoreThreadTimeOut(true);
+
+    } // SinkWorker() -------------------------------------------------------
+
+
+
+    String getName()
+    {
+        return sink.getName();
+
+    } // getName() ----------------------------------------------------------
+
+
+
+    /**
+     * Queues the result for delivery, returns false (callback is not
+     * called) if the queue of this sink is full.
+     */
+    boolean deliver(final ElogOutbox.Entry result, final SinkCallback callback)
+    {
+        final long queued = System.nanoTime();
+        pending.incrementAndGet();
+        try
+        {
+            executor.execute(new Runnable()
+            {
+                public void run()
+                {
+                    String error = send(result);
+                    finished(queued, error);
+                    callback.delivered(SinkWorker.this, result, error);
+                }
+            });
+        }
+        catch(RejectedExecutionException ree)
+        {
+            pending.decrementAndGet();
+            rejected.incrementAndGet();
+            logger.error("Result sink \"" + getName() + "\" queue full (" +
+                         QUEUE_CAPACITY + "), result of \"" + result.title +
+                         "\" rejected.");
+            return false;
+        }
+        return true;
+
+    } // deliver() ----------------------------------------------------------
+
+
+
+    /**
+     * Executed by the worker thread, returns null if delivered.
+     */
+    private String send(ElogOutbox.Entry result)
+    {
+        String error = null;
+        long delay = RETRY_DELAY;
+        for(int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++)
+        {
+            try
+            {
+                error = sink.deliver(result);
+            }
+            catch(RuntimeException re)
+            {
+                // don't lose track of the pending result
+                error = re.toString();
+            }
+            if(error == null)
+            {
+                break;
+            }
+            logger.error("Result of \"" + result.title + "\" to sink \"" +
+                         getName() + "\", attempt " + attempt + " of " +
+                         MAX_ATTEMPTS + " failed, reason: " + error);
+            if(attempt == MAX_ATTEMPTS)
+            {
+                break;
+            }
+            retries.incrementAndGet();
+            try
+            {
+                Thread.sleep(delay);
+            }
+            catch(InterruptedException ie)
+            {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            delay *= 2;
+        }
+        return error;
+
+    } // send() -------------------------------------------------------------
+
+
+
+    private void finished(long queued, String error)
+    {
+        long latency = System.nanoTime() - queued;
+        totalLatency.addAndGet(latency);
+        long max = maxLatency.get();
+        while(latency > max && ! maxLatency.compareAndSet(max, latency))
+        {
+            max = maxLatency.get();
+        }
+        if(error == null)
+        {
+            delivered.incrementAndGet();
+        }
+        else
+        {
+            failed.incrementAndGet();
+        }
+        pending.decrementAndGet();
+
+    } // finished() ---------------------------------------------------------
+
+
+
+    String getStatistics()
+    {
+        long finished = delivered.get() + failed.get();
+        long mean = finished > 0 ? totalLatency.get() / finished : 0;
+        return getName() + " [pending: " + pending.get() +
+               " delivered: " + delivered.get() +
+               " failed: " + failed.get() +
+               " rejected: " + rejected.get() +
+               " retries: " + retries.get() +
+               " latency [ms] mean: " + (mean / 1000000) +
+               " max: " + (maxLatency.get() / 1000000) + "]";
+
+    } // getStatistics() ----------------------------------------------------
+
+} // class SinkWorker =======================================================
+
+
+
+/**
+ * Notified on the SinkWorker thread when delivery of a result to the sink
+ * finished, error is null if it was delivered.
+ */
+interface SinkCallback
+{
+    void delivered(SinkWorker worker, ElogOutbox.Entry result, String error);
+
+} // interface SinkCallback =================================================
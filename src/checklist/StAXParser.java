@@ -0,0 +1,373 @@
+package checklist;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLResolver;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import mylogger.MyLogger;
+
+
+
+/**
+ * StAXParser - reads XML checklist file(s) into a CheckList data storage
+ * using the javax.xml.stream pull parser. Alternative to the SAX based
+ * XMLParser producing the same store (--engine stax).
+ *
+ * Being a pull parser, elements which are of no interest inside
+ * a <checklist> element are skipped as whole subtrees - neither their
+ * attributes nor their text is looked at.
+ *
+ * Entities (DTD, included checklist files) are resolved the same way as
+ * by XMLParser.resolveEntity() - looked up in the directory of the main
+ * XML file and read via the EntityCache.
+ *
+ * @author Zdenek Maxa
+ *
+ */
+final class StAXParser implements CheckListSource, XMLResolver
+{
+    private static MyLogger logger = MyLogger.getLogger(StAXParser.class);
+
+    // factory is thread safe once configured
+    private static XMLInputFactory factory = null;
+
+
+    // main store with all data, CheckList title is key in the store
+    private LinkedHashMap<String, CheckListData> store = null;
+
+    // source XML file the checklists are parsed and loaded from
+    private String xmlFileName = null;
+
+    // all files the store was built from
+    private ArrayList<String> sourceFiles = null;
+
+    // titles of checklists which replaced an earlier checklist of the same
+    // title in the store
+    private ArrayList<String> duplicateTitles = new ArrayList<String>();
+
+    // equal attribute values and systems affected share one instance
+    private HashMap<String, String> internTable = new HashMap<String, String>();
+
+    // reused for all instructions / systems affected of the document
+    private StringBuilder text = new StringBuilder();
+
+
+
+
+    public StAXParser(String xmlFileName)
+    {
+        this.xmlFileName = xmlFileName;
+        store = new LinkedHashMap<String, CheckListData>();
+        sourceFiles = new ArrayList<String>();
+        sourceFiles.add(xmlFileName);
+
+    } // StAXParser() -------------------------------------------------------
+
+
+
+    private static synchronized XMLInputFactory getFactory()
+    {
+        if(factory == null)
+        {
+            factory = XMLInputFactory.newInstance();
+            factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE,
+                                Boolean.TRUE);
+            factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.TRUE);
+            factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES,
+                                Boolean.TRUE);
+            factory.setProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES,
+                                Boolean.TRUE);
+        }
+        return factory;
+
+    } // getFactory() -------------------------------------------------------
+
+
+
+    public void parse() throws CheckListException
+    {
+        logger.debug("Going to parse document (StAX): " + xmlFileName);
+
+        XMLStreamReader reader = null;
+        InputStream in = null;
+        try
+        {
+            in = new FileInputStream(xmlFileName);
+            XMLInputFactory f = getFactory();
+            // resolver is per parsing, the factory is shared
+            synchronized(f)
+            {
+                f.setXMLResolver(this);
+                reader = f.createXMLStreamReader(xmlFileName, in);
+            }
+            parseDocument(reader);
+        }
+        catch(XMLStreamException xse)
+        {
+            String m = "Error while parsing document: " + xse.getMessage();
+            throw new CheckListException(m);
+        }
+        catch(IOException ioe)
+        {
+            String m = "I/O error while reading document: " + ioe.getMessage();
+            throw new CheckListException(m);
+        }
+        finally
+        {
+            if(reader != null)
+            {
+                try
+                {
+                    reader.close();
+                }
+                catch(XMLStreamException xse)
+                {
+                    logger.debug("Closing reader failed: " + xse.getMessage());
+                }
+            }
+            if(in != null)
+            {
+                try
+                {
+                    in.close();
+                }
+                catch(IOException ioe)
+                {
+                    logger.debug("Closing failed: " + ioe.getMessage());
+                }
+            }
+        }
+
+    } // parse() ------------------------------------------------------------
+
+
+
+    private void parseDocument(XMLStreamReader reader)
+                               throws XMLStreamException, CheckListException
+    {
+        while(reader.hasNext())
+        {
+            if(reader.next() != XMLStreamConstants.START_ELEMENT)
+            {
+                continue;
+            }
+            if("checklist".equals(reader.getLocalName()))
+            {
+                parseCheckList(reader);
+            }
+            // other elements (root, containers) - descend into them
+        }
+
+    } // parseDocument() ----------------------------------------------------
+
+
+
+    /**
+     * Reader is at <checklist> start, returns at its end.
+     */
+    private void parseCheckList(XMLStreamReader reader)
+                                throws XMLStreamException, CheckListException
+    {
+        String title = reader.getAttributeValue(null, "title");
+        if(title == null)
+        {
+            String m = "checklist element without title attribute, line: " +
+                       reader.getLocation().getLineNumber();
+            throw new CheckListException(m);
+        }
+        logger.info("checklist title: \"" + title + "\"");
+        CheckListData checkList = new CheckListData(title);
+
+        while(true)
+        {
+            int event = reader.next();
+            if(event == XMLStreamConstants.END_ELEMENT)
+            {
+                break; // </checklist>
+            }
+            if(event != XMLStreamConstants.START_ELEMENT)
+            {
+                continue; // whitespace, comments between elements
+            }
+
+            String name = reader.getLocalName();
+            if("instruction".equals(name))
+            {
+                String comment = null;
+                String helpUrl = null;
+                boolean headerOnly = false;
+                for(int i = 0; i < reader.getAttributeCount(); i++)
+                {
+                    String aName = reader.getAttributeLocalName(i);
+                    if("PresetComment".equals(aName))
+                    {
+                        comment = intern(reader.getAttributeValue(i));
+                    }
+                    else if("helpurl".equals(aName))
+                    {
+                        helpUrl = intern(reader.getAttributeValue(i));
+                    }
+                    else if("headerOnly".equals(aName))
+                    {
+                        String s = reader.getAttributeValue(i);
+                        headerOnly = Boolean.parseBoolean(s);
+                    }
+                }
+                String s = readText(reader);
+                checkList.addInstruction(s, comment, helpUrl, headerOnly);
+            }
+            else if("ElogSystemAffected".equals(name))
+            {
+                String s = intern(readText(reader).trim());
+                checkList.addElogAffectedSystem(s);
+            }
+            else
+            {
+                skipElement(reader);
+            }
+        }
+
+        checkList.freeze();
+        if(store.put(title, checkList) != null)
+        {
+            duplicateTitles.add(title);
+        }
+
+    } // parseCheckList() ---------------------------------------------------
+
+
+
+    /**
+     * Text content of the current element (child elements are skipped),
+     * reader returns at the end of the element.
+     */
+    private String readText(XMLStreamReader reader) throws XMLStreamException
+    {
+        text.setLength(0);
+        while(true)
+        {
+            int event = reader.next();
+            switch(event)
+            {
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    text.append(reader.getTextCharacters(),
+                                reader.getTextStart(), reader.getTextLength());
+                    break;
+                case XMLStreamConstants.START_ELEMENT:
+                    skipElement(reader);
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    return text.toString();
+            }
+        }
+
+    } // readText() ---------------------------------------------------------
+
+
+
+    /**
+     * Skips the whole subtree of the current element.
+     */
+    private static void skipElement(XMLStreamReader reader)
+                                    throws XMLStreamException
+    {
+        int depth = 1;
+        while(depth > 0)
+        {
+            int event = reader.next();
+            if(event == XMLStreamConstants.START_ELEMENT)
+            {
+                depth++;
+            }
+            else if(event == XMLStreamConstants.END_ELEMENT)
+            {
+                depth--;
+            }
+        }
+
+    } // skipElement() ------------------------------------------------------
+
+
+
+    /**
+     * Called by the StAX parser for the DTD and included entities, same
+     * semantics as XMLParser.resolveEntity().
+     */
+    public Object resolveEntity(String publicId, String systemId,
+                                String baseURI, String namespace)
+    {
+        logger.debug("Called resolveEntity() systemId: " + systemId);
+        String fileName = XMLParser.getEntityFileName(xmlFileName, systemId);
+        logger.debug("Resolved file: " + fileName);
+        if(! sourceFiles.contains(fileName))
+        {
+            sourceFiles.add(fileName);
+        }
+
+        try
+        {
+            return EntityCache.getInstance().open(fileName);
+        }
+        catch(IOException io)
+        {
+            logger.error("I/O error while reading: " + fileName + " " +
+                         "reason: " + io.getMessage());
+        }
+        return null;
+
+    } // resolveEntity() ----------------------------------------------------
+
+
+
+    private String intern(String s)
+    {
+        if(s == null)
+        {
+            return null;
+        }
+        String r = internTable.get(s);
+        if(r == null)
+        {
+            internTable.put(s, s);
+            r = s;
+        }
+        return r;
+
+    } // intern() -----------------------------------------------------------
+
+
+
+    public LinkedHashMap<String, CheckListData> getCheckListStore()
+    {
+        return store;
+
+    } // getCheckListStore() ------------------------------------------------
+
+
+
+    public ArrayList<String> getSourceFiles()
+    {
+        return sourceFiles;
+
+    } // getSourceFiles() ---------------------------------------------------
+
+
+
+    public ArrayList<String> getDuplicateTitles()
+    {
+        return duplicateTitles;
+
+    } // getDuplicateTitles() -----------------------------------------------
+
+} // class StAXParser =======================================================
@@ -0,0 +1,451 @@
+package checklist;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import mylogger.MyLogger;
+
+
+
+/**
+ * Compact binary snapshot of the parsed checklist store. Parsing all
+ * XML checklist files on each start is unnecessary since they change
+ * rarely - the snapshot is written after a successful parse and read
+ * (memory-mapped) on the next start instead of running XMLParser.
+ *
+ * The snapshot records all files the store was built from (path, size,
+ * last modification time and CRC32 of the content), the snapshot is used
+ * only if all of them are unchanged. The files are described (stamp())
+ * before they are parsed, a file modified during parsing makes the
+ * snapshot stale rather than describing content which was not parsed.
+ *
+ * Snapshot layout (all numbers big-endian):
+ *   int magic, int version,
+ *   int number of source files, per file: string path, long size,
+ *       long mtime, long crc32
+ *   int number of checklists, per checklist: string title,
+ *       int number of instructions, per instruction: byte headerOnly,
+ *           string text, string comment, string helpUrl
+ *       int number of elog systems affected, per system: string
+ * string is int length of UTF-8 bytes (-1 for null) followed by the bytes
+ *
+ * @author Zdenek Maxa
+ *
+ */
+final class StoreSnapshot
+{
+    private static MyLogger logger = MyLogger.getLogger(StoreSnapshot.class);
+
+    private static final int MAGIC = 0x434b4c53; // "CKLS"
+    // 2: whitespace between elements is not part of the instruction text
+    private static final int VERSION = 2;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    // default directory for snapshot files
+    private static final String DEFAULT_DIR =
+        System.getProperty("user.home") + File.separator + ".checklist";
+
+    // the snapshot file
+    private String snapshotFileName = null;
+
+    // files of the main file described before parsing, null if not done
+    private ArrayList<FileStamp> stamps = null;
+
+
+
+
+    public StoreSnapshot(String snapshotFileName)
+    {
+        this.snapshotFileName = snapshotFileName;
+
+    } // StoreSnapshot() ----------------------------------------------------
+
+
+
+    /**
+     * Returns snapshot file name in the default directory for the main XML
+     * file xmlFileName (each main file has its own snapshot).
+     */
+    public static String getDefaultFileName(String xmlFileName)
+    {
+        String path = new File(xmlFileName).getAbsolutePath();
+        CRC32 crc = new CRC32();
+        crc.update(path.getBytes(UTF8));
+        String name = new File(xmlFileName).getName() + "-" +
+                      Long.toHexString(crc.getValue()) + ".snapshot";
+        return DEFAULT_DIR + File.separator + name;
+
+    } // getDefaultFileName() -----------------------------------------------
+
+
+
+    /**
+     * Reads the store from the snapshot. Returns null if there is no
+     * snapshot, it can't be read or any of its source files has changed.
+     */
+    public LinkedHashMap<String, CheckListData> read()
+    {
+        File file = new File(snapshotFileName);
+        if(! file.exists())
+        {
+            logger.info("No checklist store snapshot \"" + snapshotFileName +
+                        "\" available.");
+            return null;
+        }
+
+        RandomAccessFile raf = null;
+        try
+        {
+            raf = new RandomAccessFile(file, "r");
+            FileChannel channel = raf.getChannel();
+            MappedByteBuffer buf =
+                channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if(buf.getInt() != MAGIC || buf.getInt() != VERSION)
+            {
+                logger.warn("Checklist store snapshot \"" + snapshotFileName +
+                            "\" has unknown format, ignored.");
+                return null;
+            }
+
+            int numFiles = buf.getInt();
+            for(int i = 0; i < numFiles; i++)
+            {
+                String path = readString(buf);
+                long size = buf.getLong();
+                long mtime = buf.getLong();
+                long crc = buf.getLong();
+                if(! isUnchanged(path, size, mtime, crc))
+                {
+                    logger.info("Checklist store snapshot is stale, \"" +
+                                path + "\" has changed.");
+                    return null;
+                }
+            }
+
+            LinkedHashMap<String, CheckListData> store =
+                new LinkedHashMap<String, CheckListData>();
+            int numCheckLists = buf.getInt();
+            for(int i = 0; i < numCheckLists; i++)
+            {
+                CheckListData data = new CheckListData(readString(buf));
+                int numInstructions = buf.getInt();
+                for(int j = 0; j < numInstructions; j++)
+                {
+                    boolean headerOnly = buf.get() != 0;
+                    String text = readString(buf);
+                    String comment = readString(buf);
+                    String helpUrl = readString(buf);
+                    data.addInstruction(text, comment, helpUrl, headerOnly);
+                }
+                int numSystems = buf.getInt();
+                for(int j = 0; j < numSystems; j++)
+                {
+                    data.addElogAffectedSystem(readString(buf));
+                }
+                data.freeze();
+                store.put(data.getTitle(), data);
+            }
+
+            logger.info("Checklist store (" + store.size() + " checklists) " +
+                        "read from snapshot \"" + snapshotFileName + "\"");
+            return store;
+        }
+        catch(IOException ioe)
+        {
+            logger.warn("Could not read checklist store snapshot \"" +
+                        snapshotFileName + "\", reason: " + ioe.getMessage());
+        }
+        catch(BufferUnderflowException bue)
+        {
+            logger.warn("Checklist store snapshot \"" + snapshotFileName +
+                        "\" is truncated, ignored.");
+        }
+        finally
+        {
+            close(raf);
+        }
+
+        return null;
+
+    } // read() -------------------------------------------------------------
+
+
+
+    /**
+     * Describes the files of the main XML file xmlFileName, has to be
+     * called before the main file is parsed. Only the structure of the
+     * main file is read to find the files, included files are not parsed.
+     * Failing is not fatal, the snapshot is just not written.
+     */
+    public void stamp(String xmlFileName)
+    {
+        stamps = null;
+        try
+        {
+            XMLParser structure = new XMLParser(xmlFileName);
+            structure.collectIncludedFiles(new ArrayList<LoadUnit>());
+            structure.parse(); // throws CheckListException
+
+            ArrayList<FileStamp> s = new ArrayList<FileStamp>();
+            for(String path : structure.getSourceFiles())
+            {
+                File f = new File(path);
+                FileStamp stamp = new FileStamp();
+                stamp.path = path;
+                stamp.size = f.length();
+                stamp.mtime = f.lastModified();
+                stamp.crc = computeChecksum(f);
+                s.add(stamp);
+            }
+            stamps = s;
+        }
+        catch(CheckListException cle)
+        {
+            logger.warn("Could not describe checklist files for the " +
+                        "snapshot, reason: " + cle.getMessage());
+        }
+        catch(IOException ioe)
+        {
+            logger.warn("Could not describe checklist files for the " +
+                        "snapshot, reason: " + ioe.getMessage());
+        }
+
+    } // stamp() ------------------------------------------------------------
+
+
+
+    /**
+     * Writes the store into the snapshot together with the description
+     * of the files it was built from (taken by stamp() before parsing).
+     * The snapshot is not written if the files are not described, the
+     * store was built from other files (main file modified meanwhile) or
+     * any of the files has been modified since it was described. Failing
+     * to write the snapshot is not fatal, it will be just parsed again
+     * next time.
+     */
+    public void write(LinkedHashMap<String, CheckListData> store,
+                      List<String> sourceFiles)
+    {
+        if(! isStamped(sourceFiles))
+        {
+            logger.info("Checklist files modified while loading, snapshot " +
+                        "\"" + snapshotFileName + "\" not written.");
+            return;
+        }
+
+        File file = new File(snapshotFileName);
+        File tmpFile = new File(snapshotFileName + ".tmp");
+        DataOutputStream out = null;
+        try
+        {
+            File dir = file.getAbsoluteFile().getParentFile();
+            if(! dir.isDirectory() && ! dir.mkdirs())
+            {
+                throw new IOException("can't create directory " + dir);
+            }
+
+            out = new DataOutputStream(new BufferedOutputStream(
+                                       new FileOutputStream(tmpFile)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+
+            out.writeInt(stamps.size());
+            for(FileStamp stamp : stamps)
+            {
+                writeString(out, stamp.path);
+                out.writeLong(stamp.size);
+                out.writeLong(stamp.mtime);
+                out.writeLong(stamp.crc);
+            }
+
+            out.writeInt(store.size());
+            for(CheckListData data : store.values())
+            {
+                writeString(out, data.getTitle());
+                out.writeInt(data.size());
+                for(int i = 0; i < data.size(); i++)
+                {
+                    out.writeByte(data.isHeaderOnly(i) ? 1 : 0);
+                    writeString(out, data.getText(i));
+                    writeString(out, data.getComment(i));
+                    writeString(out, data.getHelpUrl(i));
+                }
+                String[] systems = data.getElogAffectedSystem();
+                out.writeInt(systems != null ? systems.length : 0);
+                for(int i = 0; systems != null && i < systems.length; i++)
+                {
+                    writeString(out, systems[i]);
+                }
+            }
+            out.close();
+            out = null;
+
+            // replace the previous snapshot only with a complete one
+            if(file.exists() && ! file.delete())
+            {
+                throw new IOException("can't delete previous snapshot");
+            }
+            if(! tmpFile.renameTo(file))
+            {
+                throw new IOException("can't rename " + tmpFile);
+            }
+            logger.info("Checklist store snapshot written: \"" +
+                        snapshotFileName + "\"");
+        }
+        catch(IOException ioe)
+        {
+            logger.warn("Could not write checklist store snapshot \"" +
+                        snapshotFileName + "\", reason: " + ioe.getMessage());
+            close(out);
+            tmpFile.delete();
+        }
+
+    } // write() ------------------------------------------------------------
+
+
+
+    /**
+     * True if the files were described before parsing, they are the files
+     * the store was built from and none of them has been modified since.
+     */
+    private boolean isStamped(List<String> sourceFiles)
+    {
+        if(stamps == null || stamps.size() != sourceFiles.size())
+        {
+            return false;
+        }
+        for(FileStamp stamp : stamps)
+        {
+            File f = new File(stamp.path);
+            if(! sourceFiles.contains(stamp.path) ||
+               f.length() != stamp.size || f.lastModified() != stamp.mtime)
+            {
+                return false;
+            }
+        }
+        return true;
+
+    } // isStamped() --------------------------------------------------------
+
+
+
+    private static boolean isUnchanged(String path, long size, long mtime,
+                                       long crc) throws IOException
+    {
+        File f = new File(path);
+        if(! f.isFile() || f.length() != size || f.lastModified() != mtime)
+        {
+            return false;
+        }
+        return computeChecksum(f) == crc;
+
+    } // isUnchanged() ------------------------------------------------------
+
+
+
+    private static long computeChecksum(File f) throws IOException
+    {
+        CRC32 crc = new CRC32();
+        FileInputStream in = new FileInputStream(f);
+        try
+        {
+            byte[] b = new byte[8192];
+            int n = 0;
+            while((n = in.read(b)) != -1)
+            {
+                crc.update(b, 0, n);
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+        return crc.getValue();
+
+    } // computeChecksum() --------------------------------------------------
+
+
+
+    private static void writeString(DataOutputStream out, String s)
+                                    throws IOException
+    {
+        if(s == null)
+        {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] b = s.getBytes(UTF8);
+        out.writeInt(b.length);
+        out.write(b);
+
+    } // writeString() ------------------------------------------------------
+
+
+
+    private static String readString(MappedByteBuffer buf)
+    {
+        int len = buf.getInt();
+        if(len < 0)
+        {
+            return null;
+        }
+        if(len > buf.remaining())
+        {
+            throw new BufferUnderflowException();
+        }
+        byte[] b = new byte[len];
+        buf.get(b);
+        return new String(b, UTF8);
+
+    } // readString() -------------------------------------------------------
+
+
+
+    private static void close(Closeable c)
+    {
+        if(c == null)
+        {
+            return;
+        }
+        try
+        {
+            c.close();
+        }
+        catch(IOException ioe)
+        {
+            logger.debug("Closing failed: " + ioe.getMessage());
+        }
+
+    } // close() ------------------------------------------------------------
+
+
+
+    /**
+     * Description of a source file of the store.
+     */
+    private static final class FileStamp
+    {
+        String path = null;
+        long size = 0;
+        long mtime = 0;
+        long crc = 0;
+
+    } // class FileStamp ====================================================
+
+} // class StoreSnapshot ====================================================
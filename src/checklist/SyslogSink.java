@@ -0,0 +1,158 @@
+package checklist;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Locale;
+
+import mylogger.MyLogger;
+
+
+
+/**
+ * Sends a one line summary of each result to syslog (BSD syslog protocol,
+ * RFC 3164, over UDP), facility user, severity notice. The checklist
+ * output itself is not sent (syslog messages are limited in length).
+ * UDP delivery is not confirmed, only a local failure is reported.
+ *
+ * @author Zdenek Maxa
+ *
+ */
+final class SyslogSink implements ResultSink
+{
+    private static MyLogger logger = MyLogger.getLogger(SyslogSink.class);
+
+    static final String DEFAULT_HOST = "localhost";
+    static final int DEFAULT_PORT = 514;
+
+    // facility user (1) * 8 + severity notice (5)
+    private static final int PRIORITY = 13;
+
+    // maximum packet length by RFC 3164
+    private static final int MAX_LENGTH = 1024;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private String name = null;
+
+    private String host = null;
+    private int port = 0;
+
+    // thread-safe, created on the first delivery
+    private volatile DatagramSocket socket = null;
+
+    private String localHostName = null;
+
+
+
+
+    public SyslogSink(String name, String host, int port)
+    {
+        this.name = name;
+        this.host = host;
+        this.port = port;
+
+    } // SyslogSink() -------------------------------------------------------
+
+
+
+    public String getName()
+    {
+        return name;
+
+    } // getName() ----------------------------------------------------------
+
+
+
+    public int getConcurrency()
+    {
+        return 2;
+
+    } // getConcurrency() ---------------------------------------------------
+
+
+
+    public String deliver(ElogOutbox.Entry result)
+    {
+        byte[] packet = createMessage(result).getBytes(UTF8);
+        int length = Math.min(packet.length, MAX_LENGTH);
+        try
+        {
+            getSocket().send(new DatagramPacket(packet, length,
+                                 InetAddress.getByName(host), port));
+        }
+        catch(IOException ioe)
+        {
+            return "can't send to syslog at " + host + ":" + port +
+                   ", reason: " + ioe.getMessage();
+        }
+        return null;
+
+    } // deliver() ----------------------------------------------------------
+
+
+
+    private String createMessage(ElogOutbox.Entry result)
+    {
+        StringBuilder sb = new StringBuilder(256);
+        // <PRI>Mmm dd hh:mm:ss HOSTNAME TAG: CONTENT
+        sb.append('<').append(PRIORITY).append('>');
+        sb.append(String.format(Locale.US, "%1$tb %1$2te %1$tT",
+                                new Date(result.created)));
+        sb.append(' ').append(getLocalHostName()).append(" checklist: ");
+        sb.append("checklist \"").append(result.title).append("\" completed");
+        if(result.systemAffected != null)
+        {
+            String s = Arrays.toString(result.systemAffected);
+            sb.append(", system affected: ").append(s.substring(1, s.length() - 1));
+        }
+        sb.append(", key ").append(result.key);
+        return sb.toString();
+
+    } // createMessage() ----------------------------------------------------
+
+
+
+    private DatagramSocket getSocket() throws IOException
+    {
+        if(socket == null)
+        {
+            synchronized(this)
+            {
+                if(socket == null)
+                {
+                    socket = new DatagramSocket();
+                }
+            }
+        }
+        return socket;
+
+    } // getSocket() --------------------------------------------------------
+
+
+
+    private synchronized String getLocalHostName()
+    {
+        if(localHostName == null)
+        {
+            try
+            {
+                localHostName = InetAddress.getLocalHost().getHostName();
+            }
+            catch(UnknownHostException uhe)
+            {
+                logger.warn("Local host name not known, reason: " +
+                            uhe.getMessage());
+                localHostName = "localhost";
+            }
+        }
+        return localHostName;
+
+    } // getLocalHostName() -------------------------------------------------
+
+} // class SyslogSink =======================================================
@@ -15,7 +15,11 @@ import javax.xml.parsers.ParserConfigurationException;
 import java.io.IOException;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.StringReader;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 
 import mylogger.MyLogger;
@@ -34,7 +38,7 @@ import mylogger.MyLogger;
  * @author Zdenek Maxa
  *
  */
-public final class XMLParser extends DefaultHandler
+public final class XMLParser extends DefaultHandler implements CheckListSource
 {
 	private static MyLogger logger = MyLogger.getLogger(XMLParser.class);
 	
@@ -47,17 +51,70 @@ public final class XMLParser extends DefaultHandler
 	private String xmlFileName = null;
 
 
+	// codes of elements and attributes of interest, an attribute is
+	// dispatched by the sum of its element and attribute code
+	private static final int OTHER = 0;
+	private static final int CHECKLIST = 1;
+	private static final int INSTRUCTION = 2;
+	private static final int ELOG_SYSTEM_AFFECTED = 3;
+	private static final int TITLE = 10;
+	private static final int PRESET_COMMENT = 20;
+	private static final int HELP_URL = 30;
+	private static final int HEADER_ONLY = 40;
+	
+	private static final HashMap<String, Integer> ELEMENTS =
+	    new HashMap<String, Integer>();
+	private static final HashMap<String, Integer> ATTRIBUTES =
+	    new HashMap<String, Integer>();
+	static
+	{
+	    ELEMENTS.put("checklist", CHECKLIST);
+	    ELEMENTS.put("instruction", INSTRUCTION);
+	    ELEMENTS.put("ElogSystemAffected", ELOG_SYSTEM_AFFECTED);
+	    ATTRIBUTES.put("title", TITLE);
+	    ATTRIBUTES.put("PresetComment", PRESET_COMMENT);
+	    ATTRIBUTES.put("helpurl", HELP_URL);
+	    ATTRIBUTES.put("headerOnly", HEADER_ONLY);
+	}
+	
 	// helper variables for intermediated saving when parsing XML document
 	private CheckListData tmpCheckList = null;
-	private Instruction tmpInstruction = null;
-	// perhaps could remove following twoo ...?
-	private StringBuffer tmpInstructionText = null; // instruction text	
-	private StringBuffer tmpElogSystemAffected = null;
+	// attributes of the current instruction
+	private String tmpComment = null;
+	private String tmpHelpUrl = null;
+	private boolean tmpHeaderOnly = false;
+	// reused for all instructions / systems affected of the document
+	private StringBuilder tmpInstructionText = new StringBuilder(); // instruction text	
+	private StringBuilder tmpElogSystemAffected = new StringBuilder();
 	
+	// equal attribute values and systems affected share one instance
+	// (only within one parsing)
+	private HashMap<String, String> internTable = new HashMap<String, String>();
 
-	// current element name - helps to distinguish in the characters() method
-	// in which tag we are
-	private String currentElement = null;
+	// code of the current element - helps to distinguish in the characters()
+	// method in which tag we are
+	private int currentElement = OTHER;
+	
+	// if set (see collectIncludedFiles()), checklist files included via
+	// external entities are not parsed, only recorded in the order in which
+	// they are referenced, checklists defined directly in the parsed file
+	// are recorded by their title
+	private ArrayList<LoadUnit> includedUnits = null;
+	
+	// entities resolved before the root element are DTD related, only
+	// entities referenced from within the document are included checklists
+	private boolean rootElementSeen = false;
+	
+	// all files the store was built from - the parsed file itself, DTD and
+	// included files (whether parsed or only collected)
+	private ArrayList<String> sourceFiles = null;
+	
+	// SAX parser to use, if null (default), a new one is created for parsing
+	private SAXParser saxParser = null;
+	
+	// titles of checklists which replaced an earlier checklist of the same
+	// title in the store
+	private ArrayList<String> duplicateTitles = new ArrayList<String>();
 	
 	
 	
@@ -67,6 +124,21 @@ public final class XMLParser extends DefaultHandler
 		super();
 		this.xmlFileName = xmlFileName;
 		store = new LinkedHashMap<String, CheckListData>();
+		sourceFiles = new ArrayList<String>();
+		sourceFiles.add(xmlFileName);
+		
+	} // XMLParser() --------------------------------------------------------
+
+	
+	
+	/**
+	 * Parser using an already created SAX parser (which must be namespace
+	 * aware), used by CheckListEngine which pools SAX parsers.
+	 */
+	public XMLParser(String xmlFileName, SAXParser saxParser)
+	{
+		this(xmlFileName);
+		this.saxParser = saxParser;
 		
 	} // XMLParser() --------------------------------------------------------
 
@@ -77,10 +149,11 @@ public final class XMLParser extends DefaultHandler
     	logger.debug("Parser initialisation ... ");
     	try
     	{
-    		SAXParserFactory spf = SAXParserFactory.newInstance();
-    		// localName will be equal to qName
-    		spf.setNamespaceAware(true);
-    		SAXParser saxLevel1 = spf.newSAXParser();
+    		SAXParser saxLevel1 = saxParser;
+    		if(saxLevel1 == null)
+    		{
+    		    saxLevel1 = createSAXParser();
+    		}
     		XMLReader parser = saxLevel1.getXMLReader();
     		XMLParserErrorHandler errorHandler = new XMLParserErrorHandler();
     		parser.setErrorHandler(errorHandler);
@@ -96,8 +169,15 @@ public final class XMLParser extends DefaultHandler
     		// parsing from input stream
     		// resolveEntity() is also called behind the scenes
     		FileInputStream fis = new FileInputStream(xmlFileName);
-    		InputSource is = new InputSource(fis);
-    		parser.parse(is);
+    		try
+    		{
+    		    InputSource is = new InputSource(fis);
+    		    parser.parse(is);
+    		}
+    		finally
+    		{
+    		    fis.close();
+    		}
     		
     	}
     	catch(ParserConfigurationException pce)
@@ -119,6 +199,35 @@ public final class XMLParser extends DefaultHandler
     } // parse() ------------------------------------------------------------
 
     
+    
+    /**
+     * Creates SAX parser the way XMLParser needs it.
+     */
+    static SAXParser createSAXParser()
+                   throws ParserConfigurationException, SAXException
+    {
+        SAXParserFactory spf = SAXParserFactory.newInstance();
+        // localName will be equal to qName
+        spf.setNamespaceAware(true);
+        return spf.newSAXParser();
+        
+    } // createSAXParser() --------------------------------------------------
+
+    
+    
+    /**
+     * Switches the parser to only record the structure of the (main) XML
+     * file - included checklist files are not read, units is filled in
+     * with included file names and titles of the inline checklists in the
+     * order they appear in the document. Used by ParallelLoader.
+     */
+    void collectIncludedFiles(ArrayList<LoadUnit> units)
+    {
+        this.includedUnits = units;
+        
+    } // collectIncludedFiles() ---------------------------------------------
+
+    
 
     /**
      * When reading from stream (parser.parse(stream)), it's necessary to
@@ -130,22 +239,34 @@ public final class XMLParser extends DefaultHandler
      * it's necessary to set: parser.setEntityResolver(this)
      * This method assumes that all included entities are located in
      * the same directory as the main XML file xmlFileName.
+     * The entity content comes from the EntityCache.
      */
     public InputSource resolveEntity(String publicId, String systemId)
     {
         logger.debug("Called resolveEntity() systemId: " + systemId);
         
         InputSource inputSource = null;
-        String fileSep = System.getProperty("file.separator");
-        String correctPath = new File(xmlFileName).getParent();        
-        String requestedFile = new File(systemId).getName();
-        String correctFullPath = correctPath + fileSep + requestedFile;
+        String correctFullPath = getEntityFileName(xmlFileName, systemId);
         
         logger.debug("Resolved file: " + correctFullPath);
+        if(! sourceFiles.contains(correctFullPath))
+        {
+            sourceFiles.add(correctFullPath);
+        }
+        
+        if(includedUnits != null && rootElementSeen)
+        {
+            // included checklist file, just remember it, will be parsed
+            // separately
+            includedUnits.add(LoadUnit.forFile(correctFullPath));
+            return new InputSource(new StringReader(""));
+        }
 
         try
         {
-            FileInputStream is = new FileInputStream(correctFullPath);
+            // content is read at once (or served from memory), no file
+            // handle is left open
+            InputStream is = EntityCache.getInstance().open(correctFullPath);
             inputSource = new InputSource(is);
         }
         catch(IOException io)
@@ -158,6 +279,22 @@ public final class XMLParser extends DefaultHandler
 
     } // resolveEntity() ----------------------------------------------------    
     
+    
+    
+    /**
+     * Full file name of an entity (DTD, included checklist file) referenced
+     * as systemId from xmlFileName - it's looked up in the directory of
+     * xmlFileName. Used by all CheckListSource implementations.
+     */
+    static String getEntityFileName(String xmlFileName, String systemId)
+    {
+        String fileSep = System.getProperty("file.separator");
+        String correctPath = new File(xmlFileName).getParent();        
+        String requestedFile = new File(systemId).getName();
+        return correctPath + fileSep + requestedFile;
+        
+    } // getEntityFileName() ------------------------------------------------
+    
 
     
     public void startDocument() throws SAXException
@@ -178,76 +315,76 @@ public final class XMLParser extends DefaultHandler
     
     /**
      * startElement() and endElement() are the most important parsing methods.
+     * Element and attribute names are dispatched via ELEMENTS and
+     * ATTRIBUTES tables rather than comparing the names one by one.
      */
     public void startElement(String namespaceURI, String localName, String qName,
     		                 Attributes attrs) throws SAXException
 	{        
     	// check that local name (localName) is equal to qualified name (qName)
-    	if(! localName.equals(qName))
+    	// (the names are usually the very same instance, no need to compare)
+    	if(localName != qName && ! localName.equals(qName))
     	{
         	logger.error("Parsing, start element: localName: " +
         			     localName + "  qName: " + qName + " local " +
         			     "name and qualified name are not equal, error.");
     	}
     	
+    	int element = getCode(ELEMENTS, localName);
+    	
 		if(attrs != null)
 		{
 			for(int i = 0; i < attrs.getLength(); i++)
 			{
+				// use attribute's qualified name
+				String aName = attrs.getQName(i);
+				
 				// check that attribute's local name is equal to qualified name
-				if(! attrs.getLocalName(i).equals(attrs.getQName(i)))
+				String aLocalName = attrs.getLocalName(i);
+				if(aLocalName != aName && ! aLocalName.equals(aName))
 				{
 					logger.error("Parsing attributes attrs.getLocalName(): " +
-							     attrs.getLocalName(i) + "  attrs.getQName(): " +
-							     attrs.getQName(i) + "  attribute's local " +
+							     aLocalName + "  attrs.getQName(): " +
+							     aName + "  attribute's local " +
 							     "name and qualified name are not equal, error.");
 				}
 				
-				// use attribute's qualified name
-				String aName = attrs.getQName(i);
-				
-				if("checklist".equals(localName) && "title".equals(aName))
-				{
-					// start parsing <checklist> element
-				    // e.g. <checklist title="signin-DAQ">
-					String title = attrs.getValue(i);
-					logger.info("checklist title: \"" + title + "\"");
-					tmpCheckList = new CheckListData(title);
-					tmpInstruction = new Instruction();
-					tmpInstructionText = new StringBuffer();
-					tmpElogSystemAffected = new StringBuffer();
-				}
-				if("instruction".equals(localName) && "PresetComment".equals(aName))
-				{
-					// parsing <instruction> element, PresetComment attribute
-					String comment = attrs.getValue(i);
-					tmpInstruction.setComment(comment);
-				}
-				if("instruction".equals(localName) && "helpurl".equals(aName))
+				switch(element + getCode(ATTRIBUTES, aName))
 				{
-					// parsing <instruction> element, helpurl attribute
-					String url = attrs.getValue(i);
-					tmpInstruction.setHelpUrl(url);
-				}
-				if("instruction".equals(localName) && "headerOnly".equals(aName))
-				{
-				    // parsing <instruction> element, headerOnly attribute
-				    String s = attrs.getValue(i);
-				    boolean headerOnly = Boolean.parseBoolean(s);
-				    tmpInstruction.setHeaderOnly(headerOnly);
+				    case CHECKLIST + TITLE:
+				        // start parsing <checklist> element
+				        // e.g. <checklist title="signin-DAQ">
+				        String title = attrs.getValue(i);
+				        logger.info("checklist title: \"" + title + "\"");
+				        tmpCheckList = new CheckListData(title);
+				        resetInstruction();
+				        tmpElogSystemAffected.setLength(0);
+				        break;
+				    case INSTRUCTION + PRESET_COMMENT:
+				        // parsing <instruction> element, PresetComment attribute
+				        tmpComment = intern(attrs.getValue(i));
+				        break;
+				    case INSTRUCTION + HELP_URL:
+				        // parsing <instruction> element, helpurl attribute
+				        tmpHelpUrl = intern(attrs.getValue(i));
+				        break;
+				    case INSTRUCTION + HEADER_ONLY:
+				        // parsing <instruction> element, headerOnly attribute
+				        String s = attrs.getValue(i);
+				        tmpHeaderOnly = Boolean.parseBoolean(s);
+				        break;
 				}
 			}
 		}
 
 		// this element doesn't have any attributes
-		// tmpElogSystemAffected if this variable doesn't exist, could
-		// perhaps remove the whole block
-        if("ElogSystemAffected".equals(localName))
+        if(element == ELOG_SYSTEM_AFFECTED)
         {
-            tmpElogSystemAffected = new StringBuffer();
+            tmpElogSystemAffected.setLength(0);
         }
 		
-		currentElement = localName;
+		currentElement = element;
+		rootElementSeen = true;
 	
 	} // startElement() -----------------------------------------------------
 
@@ -256,60 +393,123 @@ public final class XMLParser extends DefaultHandler
 	public void endElement(String namespaceURI, String localName,
 			               String qName) throws SAXException
 	{
-    
-		if("checklist".equals(localName))
-		{
-		    // parsing reached </checklist>
-			store.put(tmpCheckList.getTitle(), tmpCheckList);
-			tmpCheckList = null;
-			tmpInstruction = null;
-		}
-		if("instruction".equals(localName))
-		{
-		    // parsing reached </instruction>
-		    tmpInstruction.setText(tmpInstructionText.toString());
-			tmpCheckList.addInstruction(tmpInstruction);
-			tmpInstructionText.setLength(0); // erase previous instruction content
-			tmpInstruction = new Instruction(); // prepare for the one that follow
-		}
-		if("ElogSystemAffected".equals(localName))
+		switch(getCode(ELEMENTS, localName))
 		{
-		    // parsing reached </ElogSystemAffected>
-		    // should be one item of system affected
-		    String s = tmpElogSystemAffected.toString().trim();
-		    tmpCheckList.addElogAffectedSystem(s);
-		    logger.debug("Elog SystemAffected for this checklist: \"" + s + "\"");
-		    tmpElogSystemAffected.setLength(0); // erase previous elog systemaffected
+		    case CHECKLIST:
+		        // parsing reached </checklist>
+		        tmpCheckList.freeze();
+		        if(store.put(tmpCheckList.getTitle(), tmpCheckList) != null)
+		        {
+		            duplicateTitles.add(tmpCheckList.getTitle());
+		        }
+		        if(includedUnits != null)
+		        {
+		            includedUnits.add(LoadUnit.forInline(tmpCheckList.getTitle()));
+		        }
+		        tmpCheckList = null;
+		        break;
+		    case INSTRUCTION:
+		        // parsing reached </instruction>
+		        tmpCheckList.addInstruction(tmpInstructionText.toString(),
+		                                    tmpComment, tmpHelpUrl,
+		                                    tmpHeaderOnly);
+		        resetInstruction(); // prepare for the one that follow
+		        break;
+		    case ELOG_SYSTEM_AFFECTED:
+		        // parsing reached </ElogSystemAffected>
+		        // should be one item of system affected
+		        String s = intern(tmpElogSystemAffected.toString().trim());
+		        tmpCheckList.addElogAffectedSystem(s);
+		        if(logger.isDebugEnabled())
+		        {
+		            logger.debug("Elog SystemAffected for this checklist: \"" +
+		                         s + "\"");
+		        }
+		        tmpElogSystemAffected.setLength(0); // erase previous elog systemaffected
+		        break;
 		}
 		
+		// whitespace between elements is reported via characters() if the
+		// DTD isn't read (an included checklist file parsed on its own),
+		// it must not be collected into the following instruction
+		currentElement = OTHER;
+		
 	} // endElement() -------------------------------------------------------
 
 	
 
+	/**
+	 * Erases text and attributes of the previous instruction.
+	 */
+	private void resetInstruction()
+	{
+	    tmpInstructionText.setLength(0);
+	    tmpComment = null;
+	    tmpHelpUrl = null;
+	    tmpHeaderOnly = false;
+	    
+	} // resetInstruction() -------------------------------------------------
+	
+	
+
 	/**
 	 * This method reads in the content within the tags, i.e. not attributes
-	 * of an element.
+	 * of an element. The characters are appended directly into the reused
+	 * buffers.
 	 */
     public void characters(char buf[], int offset, int len) throws SAXException
     {
         // need to have currentElement to be able to distinguish in which
         // element we are in
         
-        String s = new String(buf, offset, len);
-        
-        if("instruction".equals(currentElement))
+        if(currentElement == INSTRUCTION)
         {    
-            tmpInstructionText.append(s);            
+            tmpInstructionText.append(buf, offset, len);
         }
-        if("ElogSystemAffected".equals(currentElement))
+        else if(currentElement == ELOG_SYSTEM_AFFECTED)
         {
-            tmpElogSystemAffected.append(s);
+            tmpElogSystemAffected.append(buf, offset, len);
         }
         
     } // characters() -------------------------------------------------------    
 
     
 
+    /**
+     * Returns code of the element / attribute name from the table, OTHER
+     * for names not of interest.
+     */
+    private static int getCode(HashMap<String, Integer> table, String name)
+    {
+        Integer code = table.get(name);
+        return code != null ? code.intValue() : OTHER;
+        
+    } // getCode() ----------------------------------------------------------
+    
+    
+    
+    /**
+     * Returns the same instance for equal strings within one parsing - preset
+     * comments, help URLs and elog systems repeat a lot.
+     */
+    private String intern(String s)
+    {
+        if(s == null)
+        {
+            return null;
+        }
+        String r = internTable.get(s);
+        if(r == null)
+        {
+            internTable.put(s, s);
+            r = s;
+        }
+        return r;
+        
+    } // intern() -----------------------------------------------------------
+
+    
+
     public LinkedHashMap<String, CheckListData> getCheckListStore()
     {
     	return store;
@@ -317,6 +517,26 @@ public final class XMLParser extends DefaultHandler
     } // getCheckListStore() ------------------------------------------------
 
     
+    
+    /**
+     * Returns names of all files the store was built from (including
+     * DTD and included checklist files).
+     */
+    public ArrayList<String> getSourceFiles()
+    {
+        return sourceFiles;
+        
+    } // getSourceFiles() ---------------------------------------------------
+
+    
+    
+    public ArrayList<String> getDuplicateTitles()
+    {
+        return duplicateTitles;
+        
+    } // getDuplicateTitles() -----------------------------------------------
+
+    
 } // class XMLParser ========================================================
 
 